@@ -0,0 +1,164 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * SampleWriter writing little-endian binary records through a buffered FileChannel.
+ * File layout:
+ * header: "SAMP"(4 bytes), version(int32), header length in bytes(int32), record length in bytes(int32; 0 if
+ * records have variable length), schema length(int32), schema(UTF-8)
+ * records: number of values(int32) followed by the values(float64); a record holds the same columns, in the same
+ * order, as the text line of the sample. Records written by this class have variable length since number of PUs,
+ * SUs and sensors may change from sample to sample; PreallocatedSampleFile pads them to a fixed length.
+ * Values are written with full precision; text files round them to 3 decimals.
+ * When compressed, only records are compressed(whole records per GZIP member); the header stays uncompressed so it can
+ * be read, or skipped when files are merged, without decompressing.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class BinarySampleWriter implements SampleWriter {
+    public static final byte[] MAGIC = {'S', 'A', 'M', 'P'};
+    public static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;     // bytes buffered before a channel write
+
+    private final FileChannel channel;
+    private final WritableByteChannel out;              // records go here; channel or a compressing channel over it
+    private ByteBuffer buffer;                          // direct buffer; grows if a record does not fit
+    private final int flushSize;                        // buffered bytes written at once; at most a GZIP member
+    private final SampleRecord record = new SampleRecord();     // reused for every sample
+
+    /**
+     * BinarySampleWriter constructor; writes the header.
+     * @param path file to be created(overwritten)
+     * @param schema description of the columns
+     * @throws IOException if the file cannot be created
+     * @since 1.0*/
+    public BinarySampleWriter(Path path, String schema) throws IOException {
+        this(path, schema, Compression.NONE, 0);
+    }
+
+    /**
+     * BinarySampleWriter constructor with compressed records; writes the header.
+     * @param path file to be created(overwritten)
+     * @param schema description of the columns
+     * @param compression compression of the records
+     * @param blockSize uncompressed bytes of a GZIP member(at least)
+     * @throws IOException if the file cannot be created
+     * @since 1.0*/
+    public BinarySampleWriter(Path path, String schema, Compression compression, int blockSize) throws IOException {
+        super();
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = header(schema, 0);
+        while (header.hasRemaining())
+            this.channel.write(header);
+        this.out = SampleWriter.compressed(this.channel, compression, blockSize);
+        this.flushSize = compression == Compression.NONE ? BUFFER_SIZE : Math.min(BUFFER_SIZE, blockSize);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Header of a binary sample file.
+     * @param schema description of the columns
+     * @param recordLength length of each record in bytes; 0 if records have variable length
+     * @return header ready to be written
+     * @since 1.0*/
+    public static ByteBuffer header(String schema, int recordLength){
+        byte[] schemaBytes = schema.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(20 + schemaBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC).putInt(VERSION).putInt(header.capacity()).putInt(recordLength).putInt(schemaBytes.length)
+                .put(schemaBytes);
+        return header.flip();
+    }
+
+    /**
+     * Put a record(number of values and values) into buffer; buffer should have 4 + 8 * record.size() bytes left.
+     * @since 1.0*/
+    public static void put(ByteBuffer buffer, SampleRecord record){
+        buffer.putInt(record.size());
+        double[] values = record.getValues();
+        for (int i = 0; i < record.size(); i++)
+            buffer.putDouble(values[i]);
+    }
+
+    @Override
+    public void write(Supplier<String> line, Consumer<SampleRecord> record) throws IOException {
+        record.accept(this.record.clear());
+        write(this.record);
+    }
+
+    /**
+     * Write one record.
+     * @throws IOException if writing fails
+     * @since 1.0*/
+    public void write(SampleRecord record) throws IOException {
+        ensureRemaining(4 + 8 * record.size());
+        put(this.buffer, record);
+        if (this.buffer.position() >= this.flushSize)
+            flush();
+    }
+
+    @Override
+    public Format getFormat() { return Format.BINARY; }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        }
+        finally {
+            this.out.close();       // closes channel too
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Read header length of a binary(or quantized) sample file; records start at this offset.
+     * @param path binary or quantized sample file
+     * @return header length in bytes
+     * @throws IOException if the file is not a binary sample file
+     * @since 1.0*/
+    public static int headerLength(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0);
+            header.flip();
+            if (header.remaining() < 12)
+                throw new IOException("Not a binary sample file: " + path);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC) && !Arrays.equals(magic, QuantizedSampleWriter.MAGIC))
+                throw new IOException("Not a binary sample file: " + path);
+            header.getInt();    // version
+            return header.getInt();
+        }
+    }
+
+    // make room for bytes more bytes; flushes the buffer and grows it if needed
+    private void ensureRemaining(int bytes) throws IOException {
+        if (this.buffer.remaining() >= bytes)
+            return;
+        flush();
+        if (this.buffer.capacity() < bytes)
+            this.buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(bytes) << 1).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // write buffered bytes(whole records) to the channel
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining())
+            this.out.write(this.buffer);
+        this.buffer.clear();
+    }
+}
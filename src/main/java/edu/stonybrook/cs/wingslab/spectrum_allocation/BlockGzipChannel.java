@@ -0,0 +1,105 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Channel compressing what is written to it as a series of independent GZIP members of at least blockSize
+ * uncompressed bytes. Concatenated members are a valid GZIP file(any GZIP reader decompresses the whole file) and a
+ * member can also be decompressed on its own, so files can be split for parallel reads.
+ * A member only ends between two write calls; sample writers write whole samples per call, so no sample is split
+ * between members.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class BlockGzipChannel implements WritableByteChannel {
+    // GZIP member header: magic, deflate, no flags, no modification time, no extra flags, unknown OS
+    private static final byte[] MEMBER_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final WritableByteChannel channel;      // compressed bytes go here
+    private final int blockSize;                    // uncompressed bytes of a member(at least)
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);    // raw deflate; reused
+    private final CRC32 crc = new CRC32();
+    private byte[] block;                           // uncompressed bytes of the current member
+    private int size = 0;                           // number of bytes in block
+    private final ByteBuffer compressed;            // deflater's output
+    private boolean open = true;
+
+    /**
+     * BlockGzipChannel constructor.
+     * @param channel channel compressed members are written to; closed when this channel is closed
+     * @param blockSize uncompressed bytes of a member(at least)
+     * @since 1.0*/
+    public BlockGzipChannel(WritableByteChannel channel, int blockSize){
+        super();
+        if (blockSize < 1)
+            throw new IllegalArgumentException("Block size should be positive.");
+        this.channel = channel;
+        this.blockSize = blockSize;
+        this.block = new byte[Math.min(blockSize, 1 << 20) + 1024];
+        this.compressed = ByteBuffer.allocate(1 << 16);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!this.open)
+            throw new IOException("Channel is closed.");
+        int length = src.remaining();
+        if (this.size + length > this.block.length)
+            this.block = Arrays.copyOf(this.block, Math.max(this.block.length * 2, this.size + length));
+        src.get(this.block, this.size, length);
+        this.size += length;
+        if (this.size >= this.blockSize)
+            writeMember();
+        return length;
+    }
+
+    @Override
+    public boolean isOpen() { return this.open; }
+
+    @Override
+    public void close() throws IOException {
+        if (!this.open)
+            return;
+        try {
+            writeMember();
+        }
+        finally {
+            this.open = false;
+            this.deflater.end();
+            this.channel.close();
+        }
+    }
+
+    // compress buffered bytes as one member
+    private void writeMember() throws IOException {
+        if (this.size == 0)
+            return;
+        writeFully(ByteBuffer.wrap(MEMBER_HEADER));
+        this.deflater.reset();
+        this.deflater.setInput(this.block, 0, this.size);
+        this.deflater.finish();
+        while (!this.deflater.finished()) {
+            int n = this.deflater.deflate(this.compressed.array(), 0, this.compressed.capacity());
+            this.compressed.limit(n).position(0);
+            writeFully(this.compressed);
+        }
+        this.crc.reset();
+        this.crc.update(this.block, 0, this.size);
+        ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putInt((int) this.crc.getValue()).putInt(this.size).flip();    // CRC32 and size mod 2^32
+        writeFully(trailer);
+        this.size = 0;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            this.channel.write(buffer);
+    }
+}
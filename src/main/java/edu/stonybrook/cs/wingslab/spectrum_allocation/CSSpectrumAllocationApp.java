@@ -11,10 +11,11 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.SplittableRandom;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
 
 
 /**@author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
@@ -39,8 +40,8 @@ public class CSSpectrumAllocationApp implements Runnable{
     // will be used when there are multiple threads to write some useful information if a hash dictionary is given
     private final String fileAppendix;
     // will be used to save results; user might need it to merge multiple thread outputs
-    private static ConcurrentHashMap<Integer, HashMap<String, Double>> resultDict;
-    // some statistics will be written in this dictionary
+    private final SampleMetrics metrics;
+    // statistics of the run, shared by all apps and updated on every sample
     private final PropagationModel propagationModel;
     // propagation model that will be used
     private final PU[] pus;
@@ -72,6 +73,16 @@ public class CSSpectrumAllocationApp implements Runnable{
     private final double noiseFloor;
     // noise floor level (dB)
     private final PUType puType;
+    // path-loss lower bound of the propagation model(if known); lets SpectrumManager prune PURs
+    private PathLossLowerBound pathLossLowerBound = null;
+    // path-loss of a pair is the same in every sample(no noise drawn per call); static PUs' values can then be kept
+    private boolean deterministicPathLoss = false;
+    // correlated shadowing noise of the current sample added to the model's path-loss; null if the model has its own
+    private ShadowingField shadowing = null;
+    // random stream of the shadowing fields; samples of this app are not seeded
+    private final SplittableRandom random = new SplittableRandom();
+    // counter of a central progress reporter; if null, this app prints its own progress bar
+    private ProgressReporter.Counter progress = null;
     // progress bar length
     private final static int progressBarLength = 50;
     //number of SSs to be selcted for CSSpectrumManager interpolation
@@ -88,7 +99,7 @@ public class CSSpectrumAllocationApp implements Runnable{
      * SpectrumAllocationApp constructor. Support interpolation.
      * @param sampleCount number of sample to be generated
      * @param fileAppendix an appendix that will be added to results file if provided
-     * @param resultDict a hashMap that will be used to write statistics
+     * @param metrics statistics of the run; shared by all apps
      * @param propagationModel propagation model
      * @param pus array of PUs
      * @param sss array of SpectrumSensors
@@ -110,7 +121,7 @@ public class CSSpectrumAllocationApp implements Runnable{
      * @param numPusSelected number of PUs selected for splitting sensor's received power
      * @param numSssSelected number of SSs selected to do interpolation for PUR's path-loss*/
     public CSSpectrumAllocationApp(int sampleCount, String fileAppendix,
-                                   ConcurrentHashMap<Integer, HashMap<String, Double>> resultDict,
+                                   SampleMetrics metrics,
                                    PropagationModel propagationModel, PU[] pus, SpectrumSensor[] sss, Shape shape,
                                    int cellSize, int minSuNum, int maxSuNum, double minSuPower, double maxSuPower,
                                    double suHeight, int minPuNum, int maxPuNum, double minPuPower, double maxPuPower,
@@ -120,7 +131,7 @@ public class CSSpectrumAllocationApp implements Runnable{
         this.sampleCount = sampleCount;
         this.threadId = CSSpectrumAllocationApp.threadNum++;
         this.fileAppendix = fileAppendix;
-        CSSpectrumAllocationApp.resultDict = resultDict;
+        this.metrics = metrics;
         this.propagationModel = propagationModel;
         this.pus = pus;
         this.sss = sss;
@@ -157,7 +168,7 @@ public class CSSpectrumAllocationApp implements Runnable{
      * SpectrumAllocationApp constructor
      * @param sampleCount number of sample to be generated
      * @param fileAppendix an appendix that will be added to results file if provided
-     * @param resultDict a hashMap that will be used to write statistics
+     * @param metrics statistics of the run; shared by all apps
      * @param propagationModel propagation model
      * @param pus array of PUs
      * @param sss array of SpectrumSensors
@@ -175,12 +186,12 @@ public class CSSpectrumAllocationApp implements Runnable{
      * @param puType if PUs are static or dynamic
      * @param noiseFloor noise floor*/
     public CSSpectrumAllocationApp(int sampleCount, String fileAppendix,
-                                   ConcurrentHashMap<Integer, HashMap<String, Double>> resultDict,
+                                   SampleMetrics metrics,
                                    PropagationModel propagationModel, PU[] pus, SpectrumSensor[] sss, Shape shape,
                                    int cellSize, int minSuNum, int maxSuNum, double minSuPower, double maxSuPower,
                                    double suHeight, int minPuNum, int maxPuNum, double minPuPower, double maxPuPower,
                                    PUType puType, double noiseFloor) {
-        this(sampleCount, fileAppendix, resultDict, propagationModel, pus, sss, shape, cellSize, minSuNum,
+        this(sampleCount, fileAppendix, metrics, propagationModel, pus, sss, shape, cellSize, minSuNum,
                 maxSuNum, minSuPower,  maxSuPower, suHeight, minPuNum, maxPuNum, minPuPower, maxPuPower, puType,
                 null, 0, 0, 0, noiseFloor);
     }
@@ -199,11 +210,21 @@ public class CSSpectrumAllocationApp implements Runnable{
      */
     @Override
     public void run() {
-        double totalDiffPower = 0.0;
-        double totalFPDiffPower = 0.0;
-        int validSamples = 0, invalidSamples = 0;
+        // metrics updated on every sample; looked up once
+        LongAdder samples = this.metrics.counter(SampleMetrics.SAMPLES);
+        LongAdder failedSamples = this.metrics.counter(SampleMetrics.FAILED_SAMPLES);
+        LongAdder validSamples = this.metrics.counter(SampleMetrics.VALID_SAMPLES);
+        LongAdder invalidSamples = this.metrics.counter(SampleMetrics.INVALID_SAMPLES);
+        DoubleAdder totalDiffPower = this.metrics.sum(SampleMetrics.DIFF_POWER);
+        DoubleAdder totalFPDiffPower = this.metrics.sum(SampleMetrics.FP_DIFF_POWER);
+        SampleMetrics.Histogram sampleTime = this.metrics.histogram(SampleMetrics.SAMPLE_TIME);
+        SampleMetrics.SplatStatistics splatStatistics = new SampleMetrics.SplatStatistics(this.metrics);
         SpectrumManager sm = new SpectrumManager(this.pus, null, this.sss, this.propagationModel,
                 this.shape, this.cellSize, this.noiseFloor);
+        // static PUs' path-loss values do not change unless the model draws noise per call
+        sm.setCrossSamplePathLoss(this.puType == PUType.STATIC && this.deterministicPathLoss);
+        sm.setPathLossLowerBound(this.pathLossLowerBound);
+        sm.setShadowing(this.shadowing);
         // init spectrum manager with fixed parameters; although pu information may change, the objects do not change
 
         if(this.puType == PUType.STATIC && this.minSuNum == this.maxSuNum && this.minSuNum == 1)
@@ -212,15 +233,23 @@ public class CSSpectrumAllocationApp implements Runnable{
         // only once to speedup
         long beginTime = System.currentTimeMillis();
         for (int sample = 1; sample < this.sampleCount + 1; sample++){
+            long sampleBegin = System.nanoTime();
             sm.setSus(createSUs());
             if (puType == PUType.DYNAMIC)
                 this.createActivePU(); // create(it's not actual creating) new active PUs
+            if (this.shadowing != null)
+                this.shadowing.next(this.random);
             try{
                 sm.computeSUMAXPower(this.puType == PUType.STATIC &&
                         this.minSuNum == this.maxSuNum && this.minSuNum == 1);
             }
             catch (RuntimeException e){
                 e.printStackTrace();
+                failedSamples.increment();
+                samples.increment();
+                if (this.progress != null)
+                    this.progress.increment();
+                splatStatistics.update(this.propagationModel);
                 continue;
             }
             if (sm.getSuMaxPower() != Double.NEGATIVE_INFINITY){
@@ -228,33 +257,26 @@ public class CSSpectrumAllocationApp implements Runnable{
                         this.numPusSelected, this.numSssSelected, this.interpolationType, this.alpha, this.cellSize);
                 if (csSm.getSuMaxPower() == Double.POSITIVE_INFINITY ||
                         csSm.getSuMaxPower() == Double.NEGATIVE_INFINITY || Double.isNaN(csSm.getSuMaxPower()))
-                   invalidSamples++;
+                   invalidSamples.increment();
                 else {
-                    validSamples++;
+                    validSamples.increment();
 
-                    totalDiffPower += Math.abs(sm.getSuMaxPower() - csSm.getSuMaxPower());
+                    totalDiffPower.add(Math.abs(sm.getSuMaxPower() - csSm.getSuMaxPower()));
                     if (csSm.getSuMaxPower() > sm.getSuMaxPower())
-                        totalFPDiffPower += Math.abs(sm.getSuMaxPower() - csSm.getSuMaxPower());
+                        totalFPDiffPower.add(Math.abs(sm.getSuMaxPower() - csSm.getSuMaxPower()));
                 }
             }
 
-            System.out.print(progressBar(sample, System.currentTimeMillis() - beginTime));
+            samples.increment();
+            sampleTime.record((System.nanoTime() - sampleBegin) / 1e6);
+            splatStatistics.update(this.propagationModel);
+            if (this.progress != null)
+                this.progress.increment();
+            else
+                System.out.print(progressBar(sample, System.currentTimeMillis() - beginTime));
         }
-        System.out.println("");
-        HashMap<String, Double> threadInfo = new HashMap<>();
-        threadInfo.put("Valid Samples", (double) validSamples);
-        threadInfo.put("Invalid Samples", (double) invalidSamples);
-        threadInfo.put("Average Difference Power", totalDiffPower/validSamples);
-        threadInfo.put("Average FP Difference Power", totalFPDiffPower/validSamples);
-        if (this.propagationModel instanceof Splat splat){
-
-            threadInfo.put("Fetch Number", (double) splat.getFetchNum());
-            threadInfo.put("Fetch Time", (double) splat.getFetchTime());
-            threadInfo.put("Execution Number", (double) splat.getExecNum());
-            threadInfo.put("Execution Time", (double) splat.getExecTime());
-        }
-        CSSpectrumAllocationApp.resultDict.put(this.threadId, threadInfo);
-
+        if (this.progress == null)
+            System.out.println("");
     }
 
     // in case DYNAMIC pus, new set of PU will be active and random power and location will be generated
@@ -269,7 +291,7 @@ public class CSSpectrumAllocationApp implements Runnable{
         Collections.shuffle(allPusIdx);
         for (int i = 0; i < numPus; i++) {
             this.pus[allPusIdx.get(i)].setON(true); // enabling one by one
-            this.pus[allPusIdx.get(i)].getTx().getElement().setLocation(puPoints[i]);
+            this.pus[allPusIdx.get(i)].setLocation(puPoints[i]);
             this.pus[allPusIdx.get(i)].getTx().setPower(ThreadLocalRandom.current().nextDouble(
                     this.minPuPower, this.maxPuPower + Double.MIN_VALUE));
         }
@@ -320,9 +342,27 @@ public class CSSpectrumAllocationApp implements Runnable{
 
     public static void setDataDir(String dataDir) { DATA_DIR = dataDir; }
 
-    public static ConcurrentHashMap<Integer, HashMap<String, Double>> getResultDict() { return resultDict; }
+    /**Set path-loss lower bound of the propagation model; only pass one that holds for every pair(no noise).
+     * @param pathLossLowerBound lower bound or null to scan all PURs*/
+    public void setPathLossLowerBound(PathLossLowerBound pathLossLowerBound) {
+        this.pathLossLowerBound = pathLossLowerBound;
+    }
 
-    public static void setResultDict(ConcurrentHashMap<Integer, HashMap<String, Double>> resultDict) {
-        CSSpectrumAllocationApp.resultDict = resultDict;
+    /**Tell whether the propagation model gives the same path-loss for a pair every time(e.g. Splat, or log without
+     * noise). Only then PUs' path-loss values of STATIC PUs are kept over samples; a noisy model draws them again.
+     * @param deterministicPathLoss true if the model has no per-call noise; false(default) otherwise*/
+    public void setDeterministicPathLoss(boolean deterministicPathLoss) {
+        this.deterministicPathLoss = deterministicPathLoss;
     }
+
+    /**Draw one correlated shadowing field per sample and add it to every path-loss of the sample, so a pair has the
+     * same path-loss however many times it is computed. The propagation model should give the mean(no noise).
+     * @param shadowing this app's own field(e.g. a copy of a shared one)*/
+    public void setShadowing(ShadowingField shadowing) { this.shadowing = shadowing; }
+
+    /**Count samples on a central progress reporter's counter instead of printing a progress bar from this thread.
+     * @param progress this app's counter; not shared with other apps*/
+    public void setProgress(ProgressReporter.Counter progress) { this.progress = progress; }
+
+    public SampleMetrics getMetrics() { return metrics; }
 }
@@ -12,15 +12,13 @@ import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Scanner;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 public class CSSpectrumAllocationMain {
-    public static void main(String... args) throws InterruptedException {
+    public static void main(String... args) throws InterruptedException, IOException {
         // **********************************   PATHS   ****************************************
         String TMP_DIR = "resources/tmp/";
         String SPLAT_DIR = "../commons/resources/splat/";
@@ -40,9 +38,19 @@ public class CSSpectrumAllocationMain {
                                                         // Applicable for log
         boolean noise = true;                           // std in dB.
         double std =  1.0;                              // Applicable for log
+        double pl_table_step = 0.01;                    // log: meters between entries of the mean path-loss table;
+                                                        // 0 to compute each path-loss
+        double shadowing_correlation_distance = 0;      // log with noise: 0 for independent noise per call; > 0 opts
+                                                        // in to correlated shadowing(one field per sample): cells at
+                                                        // which noise correlation drops to 1/e
         GeographicPoint splat_left_upper_ref = new GeographicPoint(40.800595,73.107507);  // ISLIP lat and lon
         double noise_floor = -90;                       // noise floor
         String splatFileName = "pl_map_array.json";            // splat saved file name
+        String plStoreFileName = "pl_map.pls";                  // binary path-loss store; "" to use the json file
+        boolean plStoreImportJson = true;               // also load the json file, if any, so pairs it holds
+                                                        // are not computed again; they are stored when used
+        boolean plStoreCompact = true;                  // merge the store's log into its table after the run
+        int plCacheCapacity = 1 << 18;                  // splat values kept in memory for all threads; 0 for no cache
         //SharedDictionary = False  # means pl_map is shared among sub process or not. Applicatble for Splat
 
         // ********************************** PUs&PURs **********************************
@@ -81,6 +89,9 @@ public class CSSpectrumAllocationMain {
         // MAX_POWER = True   # make it true if you want to achieve the highest power su can have without interference.
         // calculation for conservative model would also be done
         int number_of_process = 5;                      // number of process
+        long progress_period_millis = 2000;             // time between two progress reports
+        String progress_sink = "console";               // "console", "log" or "json"(progress_<appendix>.json in
+                                                        // data dir, one report per line)
         //INTERPOLATION, CONSERVATIVE = False, False
         int n_samples = 5000;                            // number of samples
 
@@ -90,14 +101,44 @@ public class CSSpectrumAllocationMain {
 
         // create proper propagation model
         PropagationModel pm = null;
-        if (propagationModel.equals("log"))
-            if (noise)
+        PathLossStore plStore = null;
+        PathLossCache plCache = null;
+        ShadowingField shadowing = null;
+        if (propagationModel.equals("log")) {
+            if (noise && shadowing_correlation_distance > 0) {  // noise comes from the field; the model gives the mean
+                if (!(field_shape instanceof Rectangle rectangle))
+                    throw new IllegalArgumentException("Shadowing field is only supported for Rectangle and Square.");
+                shadowing = new ShadowingField(rectangle.getLength(), rectangle.getWidth(), std,
+                        shadowing_correlation_distance);
+            }
+            boolean pairNoise = noise && shadowing == null;
+            if (pl_table_step > 0) {    // mean is read from a table up to the field's diagonal; noise is drawn per pair
+                if (!(field_shape instanceof Rectangle rectangle))
+                    throw new IllegalArgumentException("Path-loss table needs a Rectangle(or Square) field; set " +
+                            "pl_table_step to 0.");
+                pm = new DistanceTablePM(new LogDistancePM(alpha)::pathLoss, pairNoise ? std : 0,
+                        Math.hypot(rectangle.getLength(), rectangle.getWidth()) * cell_size, pl_table_step);
+            }
+            else if (pairNoise)
                 pm = new LogDistancePM(alpha, std);
             else
                 pm = new LogDistancePM(alpha);
+        }
         else if (propagationModel.equals("splat")) {
-            pm = new Splat(splat_left_upper_ref);
-            Splat.readPlDictFromJson(SPLAT_DIR + "pl_map/" + splatFileName);
+            if (plStoreFileName.isEmpty()) {
+                pm = new Splat(splat_left_upper_ref);
+                Splat.readPlDictFromJson(SPLAT_DIR + "pl_map/" + splatFileName);
+            }
+            else {
+                plStore = PathLossStore.open(Paths.get(SPLAT_DIR + "pl_map/" + plStoreFileName));
+                if (plStoreImportJson && new File(SPLAT_DIR + "pl_map/" + splatFileName).exists())
+                    Splat.readPlDictFromJson(SPLAT_DIR + "pl_map/" + splatFileName);
+                pm = new StoredPropagationModel(new Splat(splat_left_upper_ref), plStore);
+            }
+            if (plCacheCapacity > 0) {  // threads missing the same pair wait for one splat execution
+                plCache = new PathLossCache(plCacheCapacity);
+                pm = new CachedPropagationModel(pm, plCache);
+            }
             Splat.setSdfDir(SPLAT_DIR + "sdf/");
         }
 
@@ -116,7 +157,7 @@ public class CSSpectrumAllocationMain {
         // TODO implement std calculation
 
         // ****************************** creating threads ************************
-        ConcurrentHashMap<Integer, HashMap<String, Double>> resultDict = new ConcurrentHashMap<>();
+        SampleMetrics metrics = new SampleMetrics();       // updated by workers on every sample
         int[] threadSampleNum = new int[number_of_process];
         for (int i = 0; i < number_of_process; i++)
             threadSampleNum[i] = n_samples / number_of_process;         // equally distributed among threads
@@ -126,95 +167,78 @@ public class CSSpectrumAllocationMain {
                 ThreadLocalRandom.current().nextInt(100000);      // a random value will be used to distinguish
                                                                         // created file by different run
         Thread[] threads = new Thread[number_of_process];               // threads
+        Files.createDirectories(Paths.get(CSSpectrumAllocationApp.getDataDir()));
+        ProgressReporter progressReporter = new ProgressReporter(n_samples, progress_period_millis,
+                ProgressSink.named(progress_sink, Paths.get(CSSpectrumAllocationApp.getDataDir(),
+                        "progress_" + fileAppendix + ".json")));
+        // read-only geometry is shared by workers; each only gets its per-sample state
+        SharedGeometry sharedGeometry = new SharedGeometry(field_shape, pus, sss);
         for (int i = 0; i < number_of_process; i++){
             // creating new thread
-            PU[] threadCopyPUs = new PU[pus.length];
-            for (int puId = 0; puId < pus.length; puId++)
-                threadCopyPUs[puId] = new PU(pus[puId]);
-
-            SpectrumSensor[] threadCopySss = new SpectrumSensor[sss.length];
-            for (int ssId = 0; ssId < sss.length; ssId++)
-                threadCopySss[ssId] = new SpectrumSensor(sss[ssId]);
-
-            PropagationModel threadPM;
-            if (pm instanceof LogDistancePM logDistancePM)
-                threadPM = new LogDistancePM(logDistancePM);
-            else if (pm instanceof Splat splat)
-                threadPM = new Splat(splat);
-            else
-                throw new IllegalArgumentException("Constructor is not valid.");
-
-            Shape threadShape;
-            if (field_shape instanceof Rectangle rectangle)
-                threadShape = new Rectangle(rectangle);
-            else if (field_shape instanceof Square square)
-                threadShape = new Square(square);
-            else
-                throw new IllegalArgumentException("Shape is not valid.");
-            threads[i] = new Thread(new CSSpectrumAllocationApp(threadSampleNum[i], Integer.toString(fileAppendix),
-                    resultDict, threadPM, threadCopyPUs, threadCopySss, threadShape, cell_size,
+            PU[] threadCopyPUs = sharedGeometry.workerPUs();
+            SpectrumSensor[] threadCopySss = sharedGeometry.workerSensors();
+            PropagationModel threadPM = SharedGeometry.workerPropagationModel(pm);
+            Shape threadShape = sharedGeometry.getShape();
+            CSSpectrumAllocationApp app = new CSSpectrumAllocationApp(threadSampleNum[i],
+                    Integer.toString(fileAppendix),
+                    metrics, threadPM, threadCopyPUs, threadCopySss, threadShape, cell_size,
                     min_sus_number, max_sus_number, min_su_power, max_su_power, tx_height,
                     min_pus_number, max_pus_number, min_pu_power, max_pu_power, puType,
-                    interpolationType, numPusSelected, numSssSelected, csAlpha, noise_floor));
+                    interpolationType, numPusSelected, numSssSelected, csAlpha, noise_floor);
+            if (propagationModel.equals("log") && !noise)   // path-loss only grows with distance; PURs can be pruned
+                if (pm instanceof DistanceTablePM distanceTable)
+                    app.setPathLossLowerBound(distanceTable);   // same interpolated values the model returns
+                else
+                    app.setPathLossLowerBound(new LogDistancePM(alpha)::pathLoss);
+            app.setDeterministicPathLoss(!(propagationModel.equals("log") && noise));
+            if (shadowing != null)
+                app.setShadowing(new ShadowingField(shadowing));    // spectrum is shared; each worker has its field
+            app.setProgress(progressReporter.register("worker-" + i));
+            threads[i] = new Thread(app);
             threads[i].start();
         }
 
         // waiting for all the threads to finish their jobs
         for (Thread thread : threads)
             thread.join();
+        progressReporter.close();
 
         // more for splat
         if (propagationModel.contains("splat")){
-            long fetchNum = 0;           // number of using hash map
-            long execNum = 0;            // number of executing splat command line
-            long fetchTime = 0;          // duration(milliseconds) of fetching
-            long execTime = 0;           // duration(milliseconds) of executing
-            for (HashMap<String, Double> threadInfo : resultDict.values()) {
-                if (threadInfo.containsKey("Fetch Number"))
-                    fetchNum += threadInfo.get("Fetch Number").longValue();
-                if (threadInfo.containsKey("Execution Number"))
-                    execNum += threadInfo.get("Execution Number").longValue();
-                if (threadInfo.containsKey("Fetch Time"))
-                    fetchTime += threadInfo.get("Fetch Time").longValue();
-                if (threadInfo.containsKey("Execution Time"))
-                    execTime += threadInfo.get("Execution Time").longValue();
-            }
+            long fetchNum = metrics.getCount(SampleMetrics.SPLAT_FETCH_NUM);    // number of using hash map
+            long execNum = metrics.getCount(SampleMetrics.SPLAT_EXEC_NUM);  // number of executing splat command line
+            long fetchTime = metrics.getCount(SampleMetrics.SPLAT_FETCH_TIME);  // duration(milliseconds) of fetching
+            long execTime = metrics.getCount(SampleMetrics.SPLAT_EXEC_TIME);    // duration(milliseconds) of executing
             System.out.println(String.format("Fetching: %,d times (%fms per each)\n" +
                     "Execution Time: %,d times (%.2fms per each)",
                     fetchNum, (double) fetchTime / fetchNum, execNum, (double) execTime / execNum));
 
+            if (plCache != null)
+                System.out.printf("Path-loss cache: %,d hits, %,d shared misses, %,d misses, %,d evictions%n",
+                        plCache.getHits(), plCache.getWaits(), plCache.getMisses(), plCache.getEvictions());
             // saving new pl map
-            if (execNum > 10)
+            if (plStore != null) {
+                System.out.printf("Path-loss store: %,d hits, %,d misses, %,d new values%n", plStore.getHits(),
+                        plStore.getMisses(), plStore.getAppended());
+                plStore.close();
+                if (plStoreCompact && plStore.getAppended() > 0)
+                    System.out.printf("Path-loss store compacted to %,d values%n",
+                            PathLossStore.compact(plStore.getPath()));
+            }
+            else if (execNum > 10)
                 Splat.writePlDictToJson(SPLAT_DIR + "pl_map/" + splatFileName + ".new");
         }
 
         // displaying results
-        int validSamples = 0, invalidSamples = 0;
-        double totalAverageDiffPower = 0.0;
-        int totalPowerCnt = 0;
-        double totalAverageFPDiffPower = 0.0;
-        int totalFpPowerCnt = 0;
-        for (HashMap<String, Double> threadInfo : resultDict.values()) {
-            if (threadInfo.containsKey("Valid Samples"))
-                validSamples += threadInfo.get("Valid Samples").intValue();
-            if (threadInfo.containsKey("Invalid Samples"))
-                invalidSamples += threadInfo.get("Invalid Samples").intValue();
-            if (threadInfo.containsKey("Average Difference Power")) {
-                totalAverageDiffPower += threadInfo.get("Average Difference Power");
-                totalPowerCnt++;
-            }
-            if (threadInfo.containsKey("Average FP Difference Power")) {
-                totalAverageFPDiffPower += threadInfo.get("Average FP Difference Power");
-                totalFpPowerCnt++;
-            }
-        }
+        long validSamples = metrics.getCount(SampleMetrics.VALID_SAMPLES);
+        long invalidSamples = metrics.getCount(SampleMetrics.INVALID_SAMPLES);
         System.out.println("");
         System.out.println(String.format("""
                         Number of Samples (invalid) = %d (%d)
                         Total Average Power Diff. = %.2f\s
                         Total FP Average Power Diff. = %.2f""",
-                validSamples, invalidSamples, totalAverageDiffPower/totalPowerCnt,
-                totalAverageFPDiffPower/totalFpPowerCnt));
+                validSamples, invalidSamples, metrics.getSum(SampleMetrics.DIFF_POWER) / validSamples,
+                metrics.getSum(SampleMetrics.FP_DIFF_POWER) / validSamples));
         long duration = System.currentTimeMillis() - beginTime;
         System.out.println(String.format("\nDuration = %d:%02d:%02d", TimeUnit.MILLISECONDS.toHours(duration),
                 TimeUnit.MILLISECONDS.toMinutes(duration) % TimeUnit.HOURS.toMinutes(1),
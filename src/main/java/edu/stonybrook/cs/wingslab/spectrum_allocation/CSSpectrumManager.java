@@ -267,22 +267,20 @@ public class CSSpectrumManager {
     // consider interference to PUs only
     private double suMaxPower(double[] pusSuPL){
         double maxPower = Double.POSITIVE_INFINITY; // find the minimum possible without bringing any interference
+        Point suLocation = this.sus[this.sus.length - 1].getTx().getElement().getLocation().mul(cellSize);
         for (int puId = 0; puId < this.pus.length; puId++) {
             PU pu = this.pus[puId];
-            if (pu.isON() && pusSuPL[puId] != 0)
-                for (PUR pur : pu.getPurs()) {
-                    // pur location is relational and it should be updated first
-                    Element purElement = new Element(pu.getTx().getElement().getLocation().add(
-                            pur.getRx().getElement().getLocation()), pur.getRx().getElement().getHeight());
-                    double suPowerAtPUR = pur.getInterferenceCapacity();
-                    double purSuDistance = purElement.getLocation().mul(cellSize).distance(
-                            this.sus[this.sus.length - 1].getTx().getElement().getLocation().mul(cellSize));
-                    double puSuDistance = pu.getTx().getElement().getLocation().mul(cellSize).distance(
-                            this.sus[this.sus.length - 1].getTx().getElement().getLocation().mul(cellSize));
+            if (pu.isON() && pusSuPL[puId] != 0) {
+                double puSuDistance = pu.getTx().getElement().getLocation().mul(cellSize).distance(suLocation);
+                for (int purId = 0; purId < pu.getPurs().length; purId++) {
+                    double suPowerAtPUR = pu.getPurs()[purId].getInterferenceCapacity();
+                    double purSuDistance = pu.getScaledPurElement(purId, cellSize).getLocation().distance(
+                            suLocation);
                     double loss = WirelessTools.getDB(pusSuPL[puId] *
                             Math.pow((Math.max(purSuDistance, 1) / Math.max(puSuDistance, 1)), this.alpha));
                     maxPower = Math.min(maxPower, suPowerAtPUR - loss);
                 }
+            }
         }
         if (maxPower == Double.POSITIVE_INFINITY)
             return Double.NEGATIVE_INFINITY;
@@ -0,0 +1,39 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.Element;
+import edu.stonybrook.cs.wingslab.commons.PropagationModel;
+
+/**
+ * Propagation model answering from a PathLossCache shared by all workers; the wrapped model(e.g. Splat) is only
+ * asked for pairs no worker has asked for yet(or that were evicted).
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class CachedPropagationModel extends PropagationModel implements PropagationModelDecorator {
+    private final PropagationModel model;       // computes values on misses; the worker's own
+    private final PathLossCache cache;          // shared by all workers
+
+    /**
+     * CachedPropagationModel constructor.
+     * @param model model computing values on misses
+     * @param cache cache of the values
+     * @since 1.0*/
+    public CachedPropagationModel(PropagationModel model, PathLossCache cache){
+        super();
+        this.model = model;
+        this.cache = cache;
+    }
+
+    @Override
+    public double pathLoss(Element tx, Element rx) { return this.cache.pathLoss(tx, rx, this.model); }
+
+    /**@return model computing values on misses*/
+    @Override
+    public PropagationModel getModel() { return model; }
+
+    @Override
+    public PropagationModel wrap(PropagationModel model) { return new CachedPropagationModel(model, this.cache); }
+
+    public PathLossCache getCache() { return cache; }
+}
@@ -4,17 +4,22 @@ import edu.stonybrook.cs.wingslab.commons.*;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.SplittableRandom;
 
 public class CalculateSTD {
 //    SpectrumManager spectrumManager;
     private double std;
 
     public CalculateSTD(PU[] pus, PropagationModel pm, Shape shape, int cellSize, double noiseFloor){
+        this(pus, pm, shape, cellSize, noiseFloor, new SplittableRandom());
+    }
+
+    public CalculateSTD(PU[] pus, PropagationModel pm, Shape shape, int cellSize, double noiseFloor,
+                        SplittableRandom rand){
         for (PU pu : pus)
             pu.setON(true);
-        SU[] sampleSU = new SU[]{new SU(new TX(new Element(shape.points(1)[0], 15.0),
-                ThreadLocalRandom.current().nextDouble(-35.0, 55.0)))};
+        SU[] sampleSU = new SU[]{new SU(new TX(new Element(SampleRandom.points(shape, 1, rand)[0], 15.0),
+                rand.nextDouble(-35.0, 55.0)))};
         ArrayList<Double> saValue = new ArrayList<>();
         double rEpsilon = 1.0;
         double sum = 0.0;
@@ -22,8 +27,8 @@ public class CalculateSTD {
         SpectrumManager spectrumManager = new SpectrumManager(pus, null, null, pm, shape, cellSize, noiseFloor);
         for (int i = 0; i < 500; i++){
             sampleSU[0] = new SU(new TX(sampleSU[0].getTx().getElement().add(new
-                    Point(new PolarPoint(ThreadLocalRandom.current().nextDouble(0, rEpsilon),
-                    ThreadLocalRandom.current().nextDouble(0, 2 * Math.PI)))),
+                    Point(new PolarPoint(rand.nextDouble(0, rEpsilon),
+                    rand.nextDouble(0, 2 * Math.PI)))),
                     sampleSU[0].getTx().getPower()));
             spectrumManager.setSus(sampleSU);
             try {
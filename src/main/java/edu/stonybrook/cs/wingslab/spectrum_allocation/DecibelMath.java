@@ -0,0 +1,60 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+/**
+ * Fast approximations of dB(10 * log10(x)) and decimal(10^(x / 10)) conversions.
+ * Both use a range reduction on the binary exponent and a short polynomial; the error is below 1e-6 dB which is far
+ * below the precision(0.001 dB) samples are written with. Special values(0, inf, NaN, negative) follow Math.log10 and
+ * Math.pow. On JVMs that have intrinsics for Math.log10 and Math.pow(e.g. HotSpot on x86_64) these are not faster;
+ * they are meant for platforms without them.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public final class DecibelMath {
+    private static final double DB_PER_LN = 10 / Math.log(10);      // 10 * log10(x) = DB_PER_LN * ln(x)
+    private static final double LN2 = Math.log(2);
+    private static final double LOG2_10_OVER_10 = Math.log(10) / (10 * LN2);   // x dB = 2^(x * LOG2_10_OVER_10)
+    private static final double SQRT2 = Math.sqrt(2);
+
+    private DecibelMath(){}
+
+    /**
+     * Approximate 10 * log10(value).
+     * @param value decimal value(e.g. mW)
+     * @return value in dB
+     * @since 1.0*/
+    public static double fastGetDB(double value){
+        if (!(value > 0) || value == Double.POSITIVE_INFINITY || value < Double.MIN_NORMAL)
+            return 10 * Math.log10(value);     // 0, negative, NaN, inf and subnormal values
+        long bits = Double.doubleToRawLongBits(value);
+        int exponent = (int) (bits >>> 52) - 1023;                    // sign bit is zero
+        double mantissa = Double.longBitsToDouble((bits & 0x000FFFFFFFFFFFFFL) | 0x3FF0000000000000L); // [1, 2)
+        if (mantissa > SQRT2) {                                       // [sqrt(2)/2, sqrt(2)) keeps t small
+            mantissa /= 2;
+            exponent++;
+        }
+        // ln(m) = 2 * atanh(t), t = (m - 1) / (m + 1), |t| < 0.172
+        double t = (mantissa - 1) / (mantissa + 1);
+        double t2 = t * t;
+        double ln = 2 * t * (1 + t2 * (1.0 / 3 + t2 * (1.0 / 5 + t2 * (1.0 / 7 + t2 / 9))));
+        return DB_PER_LN * (ln + exponent * LN2);
+    }
+
+    /**
+     * Approximate 10^(value / 10).
+     * @param value value in dB
+     * @return decimal value(e.g. mW)
+     * @since 1.0*/
+    public static double fastGetDecimal(double value){
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return Math.pow(10, value / 10);
+        double power = value * LOG2_10_OVER_10;          // 2^power
+        if (power > 1020 || power < -1020)               // close to or out of double range; let pow decide
+            return Math.pow(10, value / 10);
+        double n = Math.rint(power);
+        double x = (power - n) * LN2;                     // |x| <= ln(2) / 2
+        double exp = 1 + x * (1 + x * (1.0 / 2 + x * (1.0 / 6 + x * (1.0 / 24 + x * (1.0 / 120 + x * (1.0 / 720 +
+                x / 5040))))));
+        return exp * Double.longBitsToDouble(((long) n + 1023) << 52);  // exp * 2^n
+    }
+}
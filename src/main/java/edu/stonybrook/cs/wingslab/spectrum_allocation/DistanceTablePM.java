@@ -0,0 +1,119 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.Element;
+import edu.stonybrook.cs.wingslab.commons.Point2;
+import edu.stonybrook.cs.wingslab.commons.PropagationModel;
+
+import java.util.SplittableRandom;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Propagation model for path-loss depending only on the horizontal distance of two elements(symmetric and
+ * translation-invariant, as LogDistancePM) reading the mean path-loss from a table instead of computing a logarithm
+ * for each pair. The table holds the mean path-loss at multiples of step up to maxDistance and values between two
+ * entries are interpolated linearly; for log-distance the error is below 5 * alpha * step^2 / distance^2 dB(about
+ * 2.5e-4 dB at 1 meter for step 0.01 and alpha 5). Farther pairs are computed directly. If the mean is not finite at
+ * distance 0(e.g. a logarithm of 0), distances below step get the mean at step.
+ * Shadowing noise(if std > 0) is drawn for each call from the model's random stream and added to the mean, as
+ * LogDistancePM with noise does; the owner sets the sample's stream(setRandom) so seeded samples are reproducible.
+ * Workers use their own copy(sharing the table) since the stream is not thread-safe.
+ * Without noise it is its own PathLossLowerBound: the bound is the same interpolated mean pathLoss() returns.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class DistanceTablePM extends PropagationModel implements PathLossLowerBound {
+    private final DoubleUnaryOperator meanPathLoss;     // distance(meters) -> mean path-loss(dB)
+    private final double std;                           // std(dB) of shadowing noise; 0 for none
+    private final double step;                          // meters between two entries
+    private final double inverseStep;
+    private final double[] table;                       // table[i] = meanPathLoss(i * step); shared by copies
+    private SplittableRandom random = new SplittableRandom();   // noise source; the owner's sample stream
+
+    /**
+     * DistanceTablePM constructor; computes the table.
+     * @param meanPathLoss mean path-loss of a distance(meters); e.g. new LogDistancePM(alpha)::pathLoss. It should
+     *                     not decrease when distance grows.
+     * @param std std(dB) of shadowing noise added to each path-loss; 0 for none
+     * @param maxDistance largest distance(meters) kept in the table
+     * @param step meters between two entries of the table
+     * @throws IllegalArgumentException if the mean is not finite for a distance from step to maxDistance
+     * @since 1.0*/
+    public DistanceTablePM(DoubleUnaryOperator meanPathLoss, double std, double maxDistance, double step){
+        super();
+        if (step <= 0 || maxDistance < step)
+            throw new IllegalArgumentException("Step should be positive and not larger than max distance.");
+        if (std < 0)
+            throw new IllegalArgumentException("Std should not be negative.");
+        long entries = (long) Math.ceil(maxDistance / step) + 1;
+        if (entries > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Table is too large; increase step.");
+        this.meanPathLoss = meanPathLoss;
+        this.std = std;
+        this.step = step;
+        this.inverseStep = 1.0 / step;
+        this.table = new double[(int) entries];
+        for (int i = 0; i < this.table.length; i++)
+            this.table[i] = meanPathLoss.applyAsDouble(i * step);
+        if (!Double.isFinite(this.table[0]))
+            this.table[0] = this.table[1];      // -Infinity or NaN would spread to every distance below step
+        for (double entry : this.table)
+            if (!Double.isFinite(entry))
+                throw new IllegalArgumentException("Mean path-loss should be finite from step to max distance.");
+    }
+
+    /**
+     * DistanceTablePM copy constructor; the copy shares the table and has its own random stream.
+     * @param distanceTablePM model to be copied
+     * @since 1.0*/
+    public DistanceTablePM(DistanceTablePM distanceTablePM){
+        super();
+        this.meanPathLoss = distanceTablePM.meanPathLoss;
+        this.std = distanceTablePM.std;
+        this.step = distanceTablePM.step;
+        this.inverseStep = distanceTablePM.inverseStep;
+        this.table = distanceTablePM.table;
+    }
+
+    @Override
+    public double pathLoss(Element tx, Element rx){
+        Point2 txLocation = tx.getLocation().getCartesian();
+        Point2 rxLocation = rx.getLocation().getCartesian();
+        double dx = txLocation.getX() - rxLocation.getX();
+        double dy = txLocation.getY() - rxLocation.getY();
+        double loss = minPathLoss(Math.sqrt(dx * dx + dy * dy));
+        return this.std > 0 ? loss + this.std * gaussian() : loss;
+    }
+
+    // standard normal draw from random(Box-Muller; SplittableRandom has no nextGaussian())
+    private double gaussian(){
+        double u = 1.0 - this.random.nextDouble();      // (0, 1]; log(u) is finite
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * this.random.nextDouble());
+    }
+
+    /**
+     * Mean path-loss of a distance: interpolated from the table(or computed if it is out of the table).
+     * @param distance horizontal distance(meters)
+     * @return mean path-loss(dB)
+     * @since 1.0*/
+    @Override
+    public double minPathLoss(double distance){
+        double position = distance * this.inverseStep;
+        int index = (int) position;
+        if (index >= this.table.length - 1)
+            return this.meanPathLoss.applyAsDouble(distance);
+        double low = this.table[index];
+        return low + (this.table[index + 1] - low) * (position - index);
+    }
+
+    /**Draw noise from random from now on; e.g. the stream of the sample being generated.
+     * @param random random stream of this model's owner(not shared with other threads)*/
+    public void setRandom(SplittableRandom random) { this.random = random; }
+
+    public double getStd() { return std; }
+
+    public double getStep() { return step; }
+
+    /**@return largest distance(meters) in the table*/
+    public double getMaxDistance() { return (this.table.length - 1) * this.step; }
+}
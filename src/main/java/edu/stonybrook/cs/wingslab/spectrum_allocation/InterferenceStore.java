@@ -0,0 +1,98 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import java.util.Arrays;
+
+/**
+ * Interference values(dB) received by a PUR, indexed by dense integer ids of the interferers.
+ * SpectrumManager uses PU's index for PUs and (number of PUs + SU's index) for SUs.
+ * Values are kept in a primitive array and clearing is done in place, touching only the ids that were set.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class InterferenceStore {
+    private double[] values;        // value(dB) of each id; valid only if present[id] is true
+    private boolean[] present;      // if an id has a value
+    private int[] touched;          // ids that have a value; used for clearing in place
+    private int size;               // number of ids having a value
+
+    /**
+     * InterferenceStore constructor.
+     * @param capacity initial number of ids; store grows when a larger id is put
+     * @since 1.0*/
+    public InterferenceStore(int capacity){
+        super();
+        capacity = Math.max(capacity, 1);
+        this.values = new double[capacity];
+        this.present = new boolean[capacity];
+        this.touched = new int[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * @return true if id has a value
+     * @since 1.0*/
+    public boolean contains(int id){ return id >= 0 && id < this.present.length && this.present[id]; }
+
+    /**
+     * @return value(dB) of id; -inf if it does not exist
+     * @since 1.0*/
+    public double get(int id){
+        if (!contains(id))
+            return Double.NEGATIVE_INFINITY;
+        return this.values[id];
+    }
+
+    /**
+     * Set value of id; previous value is overwritten.
+     * @param id interferer's id(non-negative)
+     * @param value power(dB)
+     * @since 1.0*/
+    public void put(int id, double value){
+        if (id < 0)
+            throw new IllegalArgumentException("Interferer id cannot be negative.");
+        if (id >= this.present.length)
+            grow(id + 1);
+        if (!this.present[id]) {
+            this.present[id] = true;
+            this.touched[this.size++] = id;
+        }
+        this.values[id] = value;
+    }
+
+    /**
+     * Remove value of id if it exists.
+     * @return removed value(dB) or -inf if it did not exist
+     * @since 1.0*/
+    public double remove(int id){
+        if (!contains(id))
+            return Double.NEGATIVE_INFINITY;
+        this.present[id] = false;
+        for (int i = 0; i < this.size; i++)
+            if (this.touched[i] == id) {
+                this.touched[i] = this.touched[--this.size];
+                break;
+            }
+        return this.values[id];
+    }
+
+    /**
+     * Remove all values without allocating.
+     * @since 1.0*/
+    public void clear(){
+        for (int i = 0; i < this.size; i++)
+            this.present[this.touched[i]] = false;
+        this.size = 0;
+    }
+
+    /**@return number of interferers having a value*/
+    public int size(){ return this.size; }
+
+    // grow arrays(doubling) to have at least capacity ids
+    private void grow(int capacity){
+        int newCapacity = Math.max(capacity, this.present.length * 2);
+        this.values = Arrays.copyOf(this.values, newCapacity);
+        this.present = Arrays.copyOf(this.present, newCapacity);
+        this.touched = Arrays.copyOf(this.touched, newCapacity);
+    }
+}
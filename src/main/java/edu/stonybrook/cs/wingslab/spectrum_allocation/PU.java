@@ -4,6 +4,8 @@ import edu.stonybrook.cs.wingslab.commons.Element;
 import edu.stonybrook.cs.wingslab.commons.Point;
 import edu.stonybrook.cs.wingslab.commons.TX;
 
+import java.util.SplittableRandom;
+
 /**
  * Primary User class including a TX and a set of PURs.
  * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
@@ -16,6 +18,10 @@ public class PU {
     private final String puId;  // pu id in String; will be used for PURs' interference
     private static int puIntId = 0;  // pu id
     private boolean ON = true; // defines if PU contributes in a spectrum allocation sample; it is ON by default
+    private Point cachedLocation = null;        // PU location the PUR caches below were built for
+    private double[] purCoordinates = null;     // absolute PUR coordinates(cells) as x0, y0, x1, y1, ...
+    private Element[] scaledPurElements = null; // absolute PUR elements multiplied by scaledCellSize
+    private int scaledCellSize = 0;             // cell size of scaledPurElements
 
     /**
      * PU constructor when list of purs along with its transmitter are passed.
@@ -34,6 +40,16 @@ public class PU {
     
     /**Copy constructor that gets a PU object and create a new one with the same values.*/
     public PU(PU pu){
+        this(pu, false);
+    }
+
+    /**
+     * Copy constructor; the copy always gets its own transmitter(location and power change per sample) and PURs'
+     * received powers, and may share PURs' relative locations with pu.
+     * @param pu PU to be copied
+     * @param sharePurElements if true, PURs' elements are shared and must not be modified afterwards
+     * @since 1.0*/
+    PU(PU pu, boolean sharePurElements){
         super();
         this.puId = pu.puId;
         this.tx = new TX(new Element(new Point(pu.tx.getElement().getLocation().getCartesian()),
@@ -41,8 +57,7 @@ public class PU {
         this.purs = new PUR[pu.purs.length];
         int purId = 0;
         for (PUR pur : pu.purs)
-            this.purs[purId++] = new PUR(pur);
-
+            this.purs[purId++] = new PUR(pur, sharePurElements);
     }
 
     /**
@@ -67,6 +82,21 @@ public class PU {
                 purMaxDist, purHeight);
     }
 
+    /**
+     * PU constructor drawing its PURs' distances from rand; reproducible version of the one above.
+     * @param rand random stream
+     * @since 1.0
+     * */
+    public PU(TX tx, int purNum, PUR.InterferenceMethod betaThreshold,
+              double betaThresholdValue, double purMinDist, double purMaxDist, double purHeight,
+              SplittableRandom rand){
+        super();
+        this.puId = String.format("PU%1o", PU.puIntId++);
+        this.tx = tx;
+        this.purs = PUR.createPURs(this.puId, purNum, betaThreshold, betaThresholdValue, purMinDist,
+                purMaxDist, purHeight, rand);
+    }
+
     /**
      * reset(clear received power values) all purs of PU.
      * @since 1.0*/
@@ -75,6 +105,74 @@ public class PU {
             pur.reset();
     }
 
+    /**
+     * Move PU's transmitter; PURs move along with it.
+     * @param location new location of the transmitter
+     * @since 1.0*/
+    public void setLocation(Point location){
+        this.tx.getElement().setLocation(location);
+        invalidatePurCache();
+    }
+
+    /**
+     * Absolute coordinates(cells) of PURs as x0, y0, x1, y1, ... The array is cached and rebuilt only when the PU
+     * moves; it must not be modified.
+     * @return cached coordinates of PURs
+     * @since 1.0*/
+    public double[] getPurCoordinates(){
+        validatePurCache();
+        if (this.purCoordinates == null) {
+            double[] coordinates = new double[2 * this.purs.length];
+            Point location = this.tx.getElement().getLocation();
+            for (int i = 0; i < this.purs.length; i++) {
+                Point purLocation = location.add(this.purs[i].getRx().getElement().getLocation());
+                coordinates[2 * i] = purLocation.getCartesian().getX();
+                coordinates[2 * i + 1] = purLocation.getCartesian().getY();
+            }
+            this.purCoordinates = coordinates;
+        }
+        return this.purCoordinates;
+    }
+
+    /**
+     * Absolute element of a PUR multiplied by cell size, i.e. what a propagation model gets. Elements are cached and
+     * rebuilt only when the PU moves or a different cell size is asked; they must not be modified.
+     * @param purIdx index of the PUR
+     * @param cellSize cell size
+     * @return cached scaled element of the PUR
+     * @since 1.0*/
+    public Element getScaledPurElement(int purIdx, int cellSize){
+        validatePurCache();
+        if (this.scaledPurElements == null || this.scaledCellSize != cellSize) {
+            this.scaledPurElements = new Element[this.purs.length];
+            this.scaledCellSize = cellSize;
+        }
+        Element element = this.scaledPurElements[purIdx];
+        if (element == null) {
+            // pur location is relational and it should be updated first
+            PUR pur = this.purs[purIdx];
+            element = new Element(this.tx.getElement().getLocation().add(pur.getRx().getElement().getLocation()),
+                    pur.getRx().getElement().getHeight()).mul(cellSize);
+            this.scaledPurElements[purIdx] = element;
+        }
+        return element;
+    }
+
+    // drop cached PUR positions if the transmitter's location object was replaced(e.g. Element.setLocation)
+    private void validatePurCache(){
+        Point location = this.tx.getElement().getLocation();
+        if (location != this.cachedLocation) {
+            invalidatePurCache();
+            this.cachedLocation = location;
+        }
+    }
+
+    private void invalidatePurCache(){
+        this.cachedLocation = null;
+        this.purCoordinates = null;
+        this.scaledPurElements = null;
+    }
+
     @Override
     public String toString(){
         return String.format("%1$s,%2$.3f", this.tx.getElement().getLocation(), this.tx.getPower());
@@ -88,7 +186,10 @@ public class PU {
 
     public boolean isON() { return ON; }
 
-    public void setTx(TX tx) { this.tx = tx; } // TODO consider deleting setter
+    public void setTx(TX tx) {  // TODO consider deleting setter
+        this.tx = tx;
+        invalidatePurCache();
+    }
 
     public void setON(boolean ON) { this.ON = ON; }
 }
@@ -3,7 +3,7 @@ package edu.stonybrook.cs.wingslab.spectrum_allocation;
 import edu.stonybrook.cs.wingslab.commons.*;
 
 import java.util.HashMap;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.logging.Logger;
 
 /**
@@ -30,8 +30,13 @@ public class PUR {
     private String purId; // Global unique id combined of PU and PUR id
     private RX rx;  // PUR's receiver object(location and received power from its PU)
     private double betaThresholdValue;  // a float value for Beta/Threshold whatever is selected
-    private double irp; //total power(dB) received from other pus and sus ipr=total(val in irp_map)
+    private double irpDecimal; //total power(mW) received from other pus and sus irp=total(val in irp_map);
+                               // it is kept in decimal to avoid dB<->decimal conversions for each update
+    private final double thresholdDecimal;  // betaThresholdValue in decimal; used for THRESHOLD
+    private static boolean fastDecibel = false; // use DecibelMath approximations instead of WirelessTools
     private HashMap<String, Double> irpMap; //a maps to store key/val where key is id of other PUs and SUs and val is their power(dB)
+                                            // it is created only when String keys are used
+    private final InterferenceStore irpStore; // power(dB) of other PUs and SUs indexed by their dense integer id
 
     /**
      * PUR constructor
@@ -52,30 +57,46 @@ public class PUR {
         this.betaThresholdValue = betaThresholdValue;
         this.rx = rx;
         this.rx.setReceived_power(Double.NEGATIVE_INFINITY);
-        this.irp = Double.NEGATIVE_INFINITY;
-        this.irpMap = new HashMap<>();
+        this.irpDecimal = 0.0;
+        this.irpMap = null;
+        this.irpStore = new InterferenceStore(8);
+        this.thresholdDecimal = WirelessTools.getDecimal(betaThresholdValue);
     }
 
     /**Copy constructor which takes a PUR object and create a new one*/
     public PUR(PUR pur){
+        this(pur, false);
+    }
+
+    /**
+     * Copy constructor; the copy gets its own received powers but may share pur's (relative) location.
+     * @param pur PUR to be copied
+     * @param shareElement if true, the copy's RX uses pur's element, which must not be modified afterwards
+     * @since 1.0*/
+    PUR(PUR pur, boolean shareElement){
         super();
         this.purIntId = pur.purIntId;
         this.purId = pur.purId;
         this.BetaThreshold = pur.BetaThreshold;
         this.betaThresholdValue = pur.betaThresholdValue;
-        this.rx = new RX(new Element(new Point(pur.rx.getElement().getLocation().getCartesian()),
+        this.rx = new RX(shareElement ? pur.rx.getElement() :
+                new Element(new Point(pur.rx.getElement().getLocation().getCartesian()),
                         pur.rx.getElement().getHeight()));
         this.rx.setReceived_power(Double.NEGATIVE_INFINITY);
-        this.irp = Double.NEGATIVE_INFINITY;
-        this.irpMap = new HashMap<>();
+        this.irpDecimal = 0.0;
+        this.irpMap = null;
+        this.irpStore = new InterferenceStore(8);
+        this.thresholdDecimal = pur.thresholdDecimal;
     }
 
     /**
      * reset all received power values(rp and irp)
      * @since 1.0*/
     public void reset(){
-        this.irp = Double.NEGATIVE_INFINITY;
-        this.irpMap = new HashMap<>();
+        this.irpDecimal = 0.0;
+        if (this.irpMap != null)
+            this.irpMap.clear();
+        this.irpStore.clear();
         this.rx.setReceived_power(Double.NEGATIVE_INFINITY);
     }
 
@@ -83,11 +104,17 @@ public class PUR {
      * @return interference power from PU
      * @since 1.0*/
     public double getInterferencePowerFrom(String key){
-        if (this.irpMap.containsKey(key))
+        if (this.irpMap != null && this.irpMap.containsKey(key))
             return this.irpMap.get(key);
         return Double.NEGATIVE_INFINITY;
     }
 
+    /**Return power(dB) received from interferer id to PUR. If it doesn't exist, -inf would be returned
+     * @param id dense integer id of a PU or SU
+     * @return interference power from id
+     * @since 1.0*/
+    public double getInterferencePowerFrom(int id){ return this.irpStore.get(id); }
+
     /**
      * Adds power value from a new PU. If it already exists, a warning will be raised.
      * @param key PU's id
@@ -95,6 +122,8 @@ public class PUR {
      * @since 1.0
      * */
     public void addInterference(String key, double value){
+        if (this.irpMap == null)
+            this.irpMap = new HashMap<>();
         if (this.irpMap.containsKey(key)) {
             Logger logger = Logger.getLogger(PUR.class.getName());
             logger.warning(String.format("Power for %1$s element already exists in %2$s.", key, this.purId)
@@ -102,8 +131,7 @@ public class PUR {
             return;
         }
         this.irpMap.put(key, value);
-        this.irp = WirelessTools.getDB(WirelessTools.getDecimal(this.irp) +
-                WirelessTools.getDecimal(value));
+        this.irpDecimal += toDecimal(value);
     }
 
     /**
@@ -113,31 +141,78 @@ public class PUR {
      * @since 1.0
      * */
     public void updateInterference(String key, double value){
-        if (!this.irpMap.containsKey(key)) {
+        if (this.irpMap == null || !this.irpMap.containsKey(key)) {
             Logger logger = Logger.getLogger(PUR.class.getName());
             logger.warning(String.format("Power for %1$s element does not exist in  %2$s.", key, this.purId)
                     + " Use addInterference(key, value) if you need to add power for an element.");
             return;
         }
         double oldValue = this.irpMap.put(key, value);
-        this.irp = WirelessTools.getDB(WirelessTools.getDecimal(this.irp) +
-                WirelessTools.getDecimal(value));
-
-        this.irpMap.put(key, value);
-        this.irp = WirelessTools.getDB(WirelessTools.getDecimal(this.irp) +
-                WirelessTools.getDecimal(value) -
-                WirelessTools.getDecimal(oldValue));
+        this.irpDecimal += toDecimal(value);
+        removeDecimal(oldValue);
     }
 
     /**
      * Delete power associated to PU key if it exists.
      * @param key PU id to delete its power*/
     public void deleteInterferencePowerFrom(String key){
-        if (this.irpMap.containsKey(key)){
+        if (this.irpMap != null && this.irpMap.containsKey(key)){
             double value = this.irpMap.remove(key);
-            this.irp = WirelessTools.getDB(WirelessTools.getDecimal(this.irp) -
-                    WirelessTools.getDecimal(value));
+            removeDecimal(value);
+        }
+    }
+
+    /**
+     * Adds power value from a new interferer. If it already exists, a warning will be raised.
+     * @param id dense integer id of a PU or SU
+     * @param value power value
+     * @since 1.0
+     * */
+    public void addInterference(int id, double value){
+        if (this.irpStore.contains(id)) {
+            Logger logger = Logger.getLogger(PUR.class.getName());
+            logger.warning(String.format("Power for element %1$d already exists in %2$s.", id, this.purId)
+                    + " Use updateInterference(id, value) if you need to update power for an element.");
+            return;
+        }
+        this.irpStore.put(id, value);
+        this.irpDecimal += toDecimal(value);
+    }
+
+    /**
+     * Update power value of an existing interferer. If it does not exist, a warning will be raised.
+     * @param id dense integer id of a PU or SU
+     * @param value power value
+     * @since 1.0
+     * */
+    public void updateInterference(int id, double value){
+        if (!this.irpStore.contains(id)) {
+            Logger logger = Logger.getLogger(PUR.class.getName());
+            logger.warning(String.format("Power for element %1$d does not exist in  %2$s.", id, this.purId)
+                    + " Use addInterference(id, value) if you need to add power for an element.");
+            return;
         }
+        double oldValue = this.irpStore.get(id);
+        this.irpStore.put(id, value);
+        this.irpDecimal += toDecimal(value);
+        removeDecimal(oldValue);
+    }
+
+    /**
+     * Delete power associated to interferer id if it exists.
+     * @param id dense integer id of a PU or SU*/
+    public void deleteInterferencePowerFrom(int id){
+        if (this.irpStore.contains(id)){
+            double value = this.irpStore.remove(id);
+            removeDecimal(value);
+        }
+    }
+
+    // subtract an interferer's power from total interference. Rounding residue is removed when nothing is left.
+    private void removeDecimal(double value){
+        this.irpDecimal -= toDecimal(value);
+        if (this.irpDecimal < 0 || (this.irpStore.size() == 0 && (this.irpMap == null || this.irpMap.isEmpty())))
+            this.irpDecimal = 0.0;
     }
 
     /**
@@ -145,16 +220,32 @@ public class PUR {
      * @return allowed interference power
      * */
     public double getInterferenceCapacity(){
-        double irpDecimal = WirelessTools.getDecimal(this.irp);
+        return toDB(getInterferenceCapacityDecimal());
+    }
+
+    /**
+     * Calculate the maximum extra interference(mW) that PUR can stands; same as getInterferenceCapacity in decimal.
+     * @return allowed interference power in decimal(could be negative if PUR is already violated)
+     * */
+    public double getInterferenceCapacityDecimal(){
         if (this.BetaThreshold == InterferenceMethod.BETA) { // using BETA
-            double rpDecimal = WirelessTools.getDecimal(this.rx.getReceived_power());
-            return WirelessTools.getDB(rpDecimal / this.betaThresholdValue - irpDecimal);
+            double rpDecimal = toDecimal(this.rx.getReceived_power());
+            return rpDecimal / this.betaThresholdValue - this.irpDecimal;
         }else {//using THRESHOLD
-            double thresholdDecimal = WirelessTools.getDecimal(this.betaThresholdValue);
-            return WirelessTools.getDB(thresholdDecimal - irpDecimal);
+            return this.thresholdDecimal - this.irpDecimal;
         }
     }
 
+    // dB to decimal using either WirelessTools or the fast approximation
+    private static double toDecimal(double value){
+        return fastDecibel ? DecibelMath.fastGetDecimal(value) : WirelessTools.getDecimal(value);
+    }
+
+    // decimal to dB using either WirelessTools or the fast approximation
+    private static double toDB(double value){
+        return fastDecibel ? DecibelMath.fastGetDB(value) : WirelessTools.getDB(value);
+    }
+
     @Override
     public String toString(){
         double r = this.rx.getElement().getLocation().getPolar().getR();
@@ -169,7 +260,7 @@ public class PUR {
                 String.format("\nheight= %1.3f", this.rx.getElement().getHeight()) +
                 interferenceMsg +
                 String.format("\nreceived power(dB)= %1$.3f", this.rx.getReceived_power()) +
-                String.format("\nreceived interference= %1$.3f", this.irp);
+                String.format("\nreceived interference= %1$.3f", getInterferencePower());
     }
 
     /**
@@ -189,10 +280,23 @@ public class PUR {
                                    InterferenceMethod betaThreshold, double betaThresholdValue,
                                    double purMinDist, double purMaxDist,
                                    double purHeight){
+        return createPURs(puId, purNumber, betaThreshold, betaThresholdValue, purMinDist, purMaxDist, purHeight,
+                new SplittableRandom());
+    }
+
+    /**
+     * Create an array of PURs drawing their distances from rand; same as the other createPURs but reproducible.
+     * @param rand random stream
+     * @return an array of PURs
+     * @since 1.0
+     * */
+    public static PUR[] createPURs(String puId, int purNumber,
+                                   InterferenceMethod betaThreshold, double betaThresholdValue,
+                                   double purMinDist, double purMaxDist,
+                                   double purHeight, SplittableRandom rand){
         if (purMinDist > purMaxDist)
             throw new IllegalArgumentException("Minimum PUR distance is greater than maximum");
         PUR[] purs = new PUR[purNumber];
-        Random rand = new Random();
         double angle = Math.toRadians(360.0 / purNumber);
         for (int i = 0; i < purNumber; i++){
             purs[i] = new PUR(puId, i,
@@ -216,5 +320,12 @@ public class PUR {
     public double getBetaThresholdValue() { return betaThresholdValue; }
 
     /** Return the total power(dB) it receives from other elements(PUs, SUs).*/
-    public double getInterferencePower() { return irp; }
+    public double getInterferencePower() { return toDB(irpDecimal); }
+
+    /** Return the total power(mW) it receives from other elements(PUs, SUs).*/
+    public double getInterferencePowerDecimal() { return irpDecimal; }
+
+    /**Use approximations(DecibelMath) for dB<->decimal conversions of all PURs. Error is below 1e-6 dB.
+     * @param fastDecibel true to use approximations*/
+    public static void setFastDecibel(boolean fastDecibel) { PUR.fastDecibel = fastDecibel; }
 }
@@ -0,0 +1,131 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+/**
+ * Grid-bucket index over absolute positions(cells) of PURs of ON PUs.
+ * Entries are sorted by bucket(counting sort) so each bucket is a contiguous range; buckets are visited ring by ring
+ * around a point to get PURs nearest-first.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class PURGridIndex {
+    private static final int PURS_PER_BUCKET = 4;   // average number of PURs in a bucket
+    private final double minX, minY;                // lower-left corner of the grid
+    private final double bucketSize;                // side of each(square) bucket
+    private final int columns, rows;                // number of buckets along x and y
+    private final int[] bucketStart;                // entries of bucket b are [bucketStart[b], bucketStart[b + 1])
+    private final int[] puIdx;                      // PU index of each entry
+    private final int[] purIdx;                     // PUR index(in its PU) of each entry
+
+    /**
+     * Build the index over PURs of ON PUs.
+     * @param pus array of PUs; PUR locations are relative to their PU
+     * @since 1.0*/
+    public PURGridIndex(PU[] pus){
+        super();
+        int size = 0;
+        for (PU pu : pus)
+            if (pu.isON())
+                size += pu.getPurs().length;
+        double[] xs = new double[size], ys = new double[size];
+        int[] entryPu = new int[size], entryPur = new int[size];
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        int entry = 0;
+        for (int i = 0; i < pus.length; i++) {
+            PU pu = pus[i];
+            if (!pu.isON())
+                continue;
+            double[] coordinates = pu.getPurCoordinates();
+            for (int j = 0; j < pu.getPurs().length; j++) {
+                xs[entry] = coordinates[2 * j];
+                ys[entry] = coordinates[2 * j + 1];
+                entryPu[entry] = i;
+                entryPur[entry] = j;
+                minX = Math.min(minX, xs[entry]);
+                minY = Math.min(minY, ys[entry]);
+                maxX = Math.max(maxX, xs[entry]);
+                maxY = Math.max(maxY, ys[entry]);
+                entry++;
+            }
+        }
+        if (size == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        this.minX = minX;
+        this.minY = minY;
+        double area = Math.max((maxX - minX) * (maxY - minY), 1.0);
+        this.bucketSize = Math.max(Math.sqrt(area * PURS_PER_BUCKET / Math.max(size, 1)), 1.0);
+        this.columns = (int) ((maxX - minX) / this.bucketSize) + 1;
+        this.rows = (int) ((maxY - minY) / this.bucketSize) + 1;
+
+        // counting sort of entries by bucket
+        int[] bucketOf = new int[size];
+        this.bucketStart = new int[this.columns * this.rows + 1];
+        for (int e = 0; e < size; e++) {
+            bucketOf[e] = bucketY(ys[e]) * this.columns + bucketX(xs[e]);
+            this.bucketStart[bucketOf[e] + 1]++;
+        }
+        for (int b = 0; b < this.columns * this.rows; b++)
+            this.bucketStart[b + 1] += this.bucketStart[b];
+        int[] next = new int[this.columns * this.rows];
+        System.arraycopy(this.bucketStart, 0, next, 0, next.length);
+        this.puIdx = new int[size];
+        this.purIdx = new int[size];
+        for (int e = 0; e < size; e++) {
+            int position = next[bucketOf[e]]++;
+            this.puIdx[position] = entryPu[e];
+            this.purIdx[position] = entryPur[e];
+        }
+    }
+
+    /**@return bucket column of x; values outside the grid are clamped
+     * @since 1.0*/
+    public int bucketX(double x){ return clamp((int) Math.floor((x - this.minX) / this.bucketSize), this.columns); }
+
+    /**@return bucket row of y; values outside the grid are clamped
+     * @since 1.0*/
+    public int bucketY(double y){ return clamp((int) Math.floor((y - this.minY) / this.bucketSize), this.rows); }
+
+    private static int clamp(int value, int size){ return Math.max(0, Math.min(value, size - 1)); }
+
+    /**
+     * Distance from (x, y) to the nearest entry that is not in the square of buckets
+     * [bx - ring, bx + ring] x [by - ring, by + ring]. Sides of the square beyond the grid are ignored since
+     * there is no entry behind them.
+     * @return a lower bound of the distance, or +inf if the square covers the whole grid
+     * @since 1.0*/
+    public double distanceOutsideRing(double x, double y, int bx, int by, int ring){
+        double distance = Double.POSITIVE_INFINITY;
+        if (bx - ring > 0)
+            distance = Math.min(distance, x - (this.minX + (bx - ring) * this.bucketSize));
+        if (bx + ring < this.columns - 1)
+            distance = Math.min(distance, this.minX + (bx + ring + 1) * this.bucketSize - x);
+        if (by - ring > 0)
+            distance = Math.min(distance, y - (this.minY + (by - ring) * this.bucketSize));
+        if (by + ring < this.rows - 1)
+            distance = Math.min(distance, this.minY + (by + ring + 1) * this.bucketSize - y);
+        return Math.max(distance, 0.0);
+    }
+
+    /**@return first entry of bucket (bx, by)
+     * @since 1.0*/
+    public int bucketStart(int bx, int by){ return this.bucketStart[by * this.columns + bx]; }
+
+    /**@return one after the last entry of bucket (bx, by)
+     * @since 1.0*/
+    public int bucketEnd(int bx, int by){ return this.bucketStart[by * this.columns + bx + 1]; }
+
+    /**@return PU index of an entry*/
+    public int getPuIdx(int entry) { return puIdx[entry]; }
+
+    /**@return PUR index(in its PU) of an entry*/
+    public int getPurIdx(int entry) { return purIdx[entry]; }
+
+    public int getColumns() { return columns; }
+
+    public int getRows() { return rows; }
+
+    /**@return number of indexed PURs*/
+    public int size() { return puIdx.length; }
+}
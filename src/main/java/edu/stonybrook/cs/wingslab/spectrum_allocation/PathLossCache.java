@@ -0,0 +1,156 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.Element;
+import edu.stonybrook.cs.wingslab.commons.PropagationModel;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory path-loss cache shared by all workers with single-flight misses: the first worker missing a (tx, rx)
+ * pair computes it and workers asking for the same pair meanwhile wait for its result instead of running Splat! for
+ * it again. Entries are futures kept in least-recently-used order; once there are more than capacity of them, the least
+ * recently used computed one is evicted. Futures being computed are never evicted(so a pair is computed once at a
+ * time), thus the cache may exceed capacity by the number of workers computing. The map is only locked to find or add
+ * a future, never while a value is computed.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class PathLossCache {
+    private final int capacity;                                 // maximum number of entries
+    private final LinkedHashMap<Key, CompletableFuture<Double>> entries;  // access order; guarded by itself
+    private final LongAdder hits = new LongAdder();             // value was there already
+    private final LongAdder waits = new LongAdder();            // value was being computed by another worker
+    private final LongAdder misses = new LongAdder();           // value was computed
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Key of a value: exact locations and heights of both elements.
+     * @since 1.0*/
+    static final class Key {
+        private final double txX, txY, txHeight, rxX, rxY, rxHeight;
+
+        Key(Element tx, Element rx){
+            this.txX = tx.getLocation().getCartesian().getX();
+            this.txY = tx.getLocation().getCartesian().getY();
+            this.txHeight = tx.getHeight();
+            this.rxX = rx.getLocation().getCartesian().getX();
+            this.rxY = rx.getLocation().getCartesian().getY();
+            this.rxHeight = rx.getHeight();
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if (!(o instanceof Key key))
+                return false;
+            return Double.compare(this.txX, key.txX) == 0 && Double.compare(this.txY, key.txY) == 0 &&
+                    Double.compare(this.txHeight, key.txHeight) == 0 && Double.compare(this.rxX, key.rxX) == 0 &&
+                    Double.compare(this.rxY, key.rxY) == 0 && Double.compare(this.rxHeight, key.rxHeight) == 0;
+        }
+
+        @Override
+        public int hashCode(){
+            long h = Double.doubleToLongBits(this.txX);
+            for (double value : new double[]{this.txY, this.txHeight, this.rxX, this.rxY, this.rxHeight})
+                h = h * 31 + Double.doubleToLongBits(value);
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * PathLossCache constructor.
+     * @param capacity maximum number of values kept
+     * @since 1.0*/
+    public PathLossCache(int capacity){
+        super();
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity should be positive.");
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<Double>> eldest) {
+                if (size() <= PathLossCache.this.capacity)
+                    return false;
+                // the least recently used computed entry; iterating does not change the access order
+                for (Iterator<CompletableFuture<Double>> it = values().iterator(); it.hasNext(); )
+                    if (it.next().isDone()) {
+                        it.remove();
+                        PathLossCache.this.evictions.increment();
+                        break;
+                    }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Cached path-loss between two elements; computed by model if no worker has computed it or is computing it.
+     * @param tx transmitter's element
+     * @param rx receiver's element
+     * @param model model computing the value on a miss
+     * @return path-loss(dB)
+     * @throws RuntimeException what model threw(an Error is thrown as is); workers waiting for the value get it too
+     * and the pair is computed again next time
+     * @since 1.0*/
+    public double pathLoss(Element tx, Element rx, PropagationModel model){
+        Key key = new Key(tx, rx);
+        CompletableFuture<Double> future;
+        CompletableFuture<Double> created = null;
+        synchronized (this.entries) {
+            future = this.entries.get(key);
+            if (future == null) {
+                created = new CompletableFuture<>();
+                this.entries.put(key, created);
+            }
+        }
+        if (created == null) {
+            (future.isDone() ? this.hits : this.waits).increment();
+            try {
+                return future.join();
+            }
+            catch (CompletionException e) {
+                if (e.getCause() instanceof Error cause)
+                    throw cause;
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        this.misses.increment();
+        try {
+            double loss = model.pathLoss(tx, rx);
+            created.complete(loss);
+            return loss;
+        }
+        catch (Throwable e) {       // waiters must not wait forever, whatever model threw
+            synchronized (this.entries) {
+                this.entries.remove(key, created);
+            }
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**@return number of entries(computed or being computed)*/
+    public int size(){
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    public int getCapacity() { return capacity; }
+
+    /**@return number of lookups that found a computed value*/
+    public long getHits() { return hits.sum(); }
+
+    /**@return number of lookups that waited for another worker to compute the value*/
+    public long getWaits() { return waits.sum(); }
+
+    /**@return number of lookups that computed the value*/
+    public long getMisses() { return misses.sum(); }
+
+    public long getEvictions() { return evictions.sum(); }
+}
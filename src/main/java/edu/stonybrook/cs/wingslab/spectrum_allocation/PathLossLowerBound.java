@@ -0,0 +1,19 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+/**
+ * Lower bound of path-loss(dB) for a given horizontal distance. It must never be larger than the path-loss the
+ * propagation model returns for two elements at that distance(whatever their heights are) and it must not decrease
+ * when distance grows; e.g. new LogDistancePM(alpha).pathLoss(distance) for a log-distance model without noise.
+ * SpectrumManager uses it to stop scanning PURs once no remaining PUR can be more restrictive.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+@FunctionalInterface
+public interface PathLossLowerBound {
+    /**
+     * @param distance horizontal distance(meters, i.e. already multiplied by cell size)
+     * @return minimum possible path-loss(dB) between two elements at the distance
+     * @since 1.0*/
+    double minPathLoss(double distance);
+}
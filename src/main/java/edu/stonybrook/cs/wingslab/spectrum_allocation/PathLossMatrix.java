@@ -0,0 +1,99 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import java.util.Arrays;
+
+/**
+ * Dense path-loss matrix between transmitters(PUs and SUs) and PURs of a sample.
+ * Rows are transmitter slots(PUs first, then SUs) and columns are PURs of all PUs flattened PU by PU.
+ * Values are filled lazily; a NaN entry means the path-loss has not been computed yet.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class PathLossMatrix {
+    private final int[] purOffset;      // column of the first PUR of each PU
+    private final int columns;          // total number of PURs
+    private int rows;                   // number of transmitter slots currently allocated
+    private double[] values;            // row-major [transmitter][pur] path-loss values (dB)
+
+    /**
+     * PathLossMatrix constructor.
+     * @param pus array of PUs whose PURs are the columns of the matrix
+     * @param rows initial number of transmitter slots; it grows when needed
+     * @since 1.0*/
+    public PathLossMatrix(PU[] pus, int rows){
+        super();
+        this.purOffset = new int[pus.length];
+        int column = 0;
+        for (int puIdx = 0; puIdx < pus.length; puIdx++){
+            this.purOffset[puIdx] = column;
+            column += pus[puIdx].getPurs().length;
+        }
+        this.columns = column;
+        this.rows = Math.max(rows, 1);
+        this.values = new double[this.rows * this.columns];
+        Arrays.fill(this.values, Double.NaN);
+    }
+
+    /**
+     * Return column index of a PUR.
+     * @param puIdx index of the PU in the PUs array
+     * @param purIdx index of the PUR in its PU
+     * @return column of the PUR in the matrix
+     * @since 1.0*/
+    public int column(int puIdx, int purIdx){ return this.purOffset[puIdx] + purIdx; }
+
+    /**
+     * Return path-loss between a transmitter slot and a PUR column.
+     * @return path-loss(dB) or NaN if it has not been computed yet
+     * @since 1.0*/
+    public double get(int row, int column){
+        if (row >= this.rows)
+            return Double.NaN;
+        return this.values[row * this.columns + column];
+    }
+
+    /**
+     * Store path-loss between a transmitter slot and a PUR column. Matrix grows if row does not fit.
+     * @since 1.0*/
+    public void set(int row, int column, double pathLoss){
+        ensureRows(row + 1);
+        this.values[row * this.columns + column] = pathLoss;
+    }
+
+    /**
+     * Invalidate all rows starting from fromRow; e.g. SUs rows when a new set of SUs is requesting.
+     * @param fromRow first row to be invalidated
+     * @since 1.0*/
+    public void invalidateFrom(int fromRow){
+        if (fromRow < this.rows)
+            Arrays.fill(this.values, fromRow * this.columns, this.rows * this.columns, Double.NaN);
+    }
+
+    /**
+     * Invalidate a single row; e.g. when the slot of a released SU is reused.
+     * @param row row to be invalidated
+     * @since 1.0*/
+    public void invalidateRow(int row){
+        if (row < this.rows)
+            Arrays.fill(this.values, row * this.columns, (row + 1) * this.columns, Double.NaN);
+    }
+
+    /**
+     * Invalidate the whole matrix.
+     * @since 1.0*/
+    public void invalidate(){ invalidateFrom(0); }
+
+    // grow the matrix(doubling) to have at least rows rows
+    private void ensureRows(int rows){
+        if (rows <= this.rows)
+            return;
+        int newRows = Math.max(rows, this.rows * 2);
+        double[] newValues = Arrays.copyOf(this.values, newRows * this.columns);
+        Arrays.fill(newValues, this.rows * this.columns, newValues.length, Double.NaN);
+        this.values = newValues;
+        this.rows = newRows;
+    }
+
+    public int getColumns() { return columns; }
+}
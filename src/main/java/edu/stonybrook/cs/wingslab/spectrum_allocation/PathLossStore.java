@@ -0,0 +1,388 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.Element;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Binary path-loss store shared by all threads of a run and by all runs on a host; replaces Splat's JSON path-loss
+ * dictionary(parsing it took most of the startup and the heap held it as a boxed map).
+ * Values are indexed by the exact locations and heights of the two elements, so callers may use any unit as long as
+ * they use it for every call; two pairs share a value only if they are the same pair. The store is two files:
+ * table(path): header: "PLST"(4 bytes), version(int32), capacity(int64; power of two or 0), entries(int64), zeros
+ * up to 64 bytes; then capacity slots of an open-addressing(linear probing) hash table.
+ * log(path + ".log"): slots appended by runs for values that are not in the table.
+ * A slot is tx x, tx y, rx x, rx y, tx height, rx height(float64), used(int32; 1), zeros(int32), value(float64);
+ * 64 bytes, little-endian.
+ * The table is memory-mapped read-only, so opening the store costs only reading the log, and all threads(and JVMs)
+ * share the same pages. New values are appended to the log with one write call each, which other runs pick up when
+ * they miss. compact() merges the log into a new table.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class PathLossStore implements Closeable {
+    public static final byte[] MAGIC = {'P', 'L', 'S', 'T'};
+    public static final int VERSION = 2;            // 1 rounded locations to cells; its stores cannot be read
+    public static final String LOG_SUFFIX = ".log";
+    static final int HEADER_SIZE = 64;
+    static final int SLOT_SIZE = 64;
+    private static final int USED_OFFSET = 48;         // offset of a slot's used flag
+    private static final int VALUE_OFFSET = 56;        // offset of a slot's value
+    private static final long SEGMENT_SIZE = 1L << 30;      // bytes of a mapped buffer; a multiple of SLOT_SIZE
+
+    private final Path path;                            // table file
+    private final ByteBuffer[] segments;                // read-only mapped table
+    private final long capacity;                        // slots of the table; 0 if it is empty
+    private final long tableEntries;                    // used slots of the table
+    private final FileChannel logAppender;              // appends to the log; shared by all threads
+    private final FileChannel logReader;                // reads what other runs appended
+    private long logPosition = 0;                       // log bytes already read; guarded by logReader
+    // values of the log; holds every value appended since the last compact()(by any run), about 150 bytes each, so
+    // runs sharing a store should compact it(as the mains do after a run) to keep it to the values of a few runs
+    private final ConcurrentHashMap<Key, Double> logged = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder appended = new LongAdder(); // values this store appended to the log
+
+    /**
+     * Key of a value: exact locations and heights of the two elements.
+     * @since 1.0*/
+    static final class Key {
+        private final double txX, txY, rxX, rxY;
+        private final double txHeight, rxHeight;
+
+        Key(double txX, double txY, double rxX, double rxY, double txHeight, double rxHeight){
+            // + 0.0 turns -0.0 into 0.0, so equal coordinates have equal bits
+            this.txX = txX + 0.0;
+            this.txY = txY + 0.0;
+            this.rxX = rxX + 0.0;
+            this.rxY = rxY + 0.0;
+            this.txHeight = txHeight + 0.0;
+            this.rxHeight = rxHeight + 0.0;
+        }
+
+        // read a slot's key
+        static Key read(ByteBuffer buffer, int offset){
+            return new Key(buffer.getDouble(offset), buffer.getDouble(offset + 8), buffer.getDouble(offset + 16),
+                    buffer.getDouble(offset + 24), buffer.getDouble(offset + 32), buffer.getDouble(offset + 40));
+        }
+
+        // write the key as a used slot with value
+        void write(ByteBuffer buffer, int offset, double value){
+            buffer.putDouble(offset, this.txX).putDouble(offset + 8, this.txY).putDouble(offset + 16, this.rxX)
+                    .putDouble(offset + 24, this.rxY).putDouble(offset + 32, this.txHeight)
+                    .putDouble(offset + 40, this.rxHeight).putInt(offset + USED_OFFSET, 1)
+                    .putInt(offset + USED_OFFSET + 4, 0).putDouble(offset + VALUE_OFFSET, value);
+        }
+
+        boolean matches(ByteBuffer buffer, int offset){
+            return buffer.getDouble(offset) == this.txX && buffer.getDouble(offset + 8) == this.txY &&
+                    buffer.getDouble(offset + 16) == this.rxX && buffer.getDouble(offset + 24) == this.rxY &&
+                    buffer.getDouble(offset + 32) == this.txHeight && buffer.getDouble(offset + 40) == this.rxHeight;
+        }
+
+        // well mixed 64 bits; slots are taken from the low bits
+        long hash(){
+            long h = Double.doubleToLongBits(this.txX);
+            for (double coordinate : new double[]{this.txY, this.rxX, this.rxY, this.txHeight, this.rxHeight})
+                h = (h ^ (h >>> 29)) * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(coordinate);
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            return h ^ (h >>> 33);
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if (!(o instanceof Key key))
+                return false;
+            return this.txX == key.txX && this.txY == key.txY && this.rxX == key.rxX && this.rxY == key.rxY &&
+                    this.txHeight == key.txHeight && this.rxHeight == key.rxHeight;
+        }
+
+        @Override
+        public int hashCode() { return (int) hash(); }
+    }
+
+    /**
+     * PathLossStore constructor; use open().
+     * @since 1.0*/
+    private PathLossStore(Path path, ByteBuffer[] segments, long capacity, long tableEntries) throws IOException {
+        super();
+        this.path = path;
+        this.segments = segments;
+        this.capacity = capacity;
+        this.tableEntries = tableEntries;
+        Path logPath = logPath(path);
+        this.logAppender = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.logReader = FileChannel.open(logPath, StandardOpenOption.READ);
+        refresh();
+    }
+
+    /**
+     * Open a store; an empty one is created if path does not exist.
+     * @param path table file of the store; its log is path + ".log"
+     * @return the store
+     * @throws IOException if the store cannot be created or read
+     * @since 1.0*/
+    public static PathLossStore open(Path path) throws IOException {
+        if (!Files.exists(path))
+            writeTable(path, new LinkedHashMap<>(), false);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            byte[] magic = new byte[MAGIC.length];
+            header.flip().get(magic);
+            if (header.limit() < HEADER_SIZE || !Arrays.equals(magic, MAGIC))
+                throw new IOException("Not a path-loss store: " + path);
+            if (header.getInt(4) != VERSION)
+                throw new IOException(String.format("Path-loss store %s has version %d, not %d; remove it and its " +
+                        "log to start a new store.", path, header.getInt(4), VERSION));
+            long capacity = header.getLong(8);
+            if (channel.size() < HEADER_SIZE + capacity * SLOT_SIZE)
+                throw new IOException("Truncated path-loss store: " + path);
+            // the mapping stays valid after the channel is closed
+            ByteBuffer[] segments = new ByteBuffer[(int) ((capacity * SLOT_SIZE + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long offset = i * SEGMENT_SIZE;
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + offset,
+                        Math.min(SEGMENT_SIZE, capacity * SLOT_SIZE - offset));
+                segments[i] = segment.order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new PathLossStore(path, segments, capacity, header.getLong(16));
+        }
+    }
+
+    /**
+     * Merge the log into a new table and empty the log. Values other runs append while compacting may be lost(they
+     * are computed again when needed), so it is better done when no other run writes to the store.
+     * @param path table file of the store
+     * @return number of values in the new table
+     * @throws IOException if the store cannot be read or written
+     * @since 1.0*/
+    public static long compact(Path path) throws IOException {
+        LinkedHashMap<Key, Double> values = new LinkedHashMap<>();
+        try (PathLossStore store = open(path)) {
+            store.forEachTableEntry(values::put);
+            store.refresh();
+            values.putAll(store.logged);
+        }
+        writeTable(path, values, true);
+        try (FileChannel log = FileChannel.open(logPath(path), StandardOpenOption.WRITE)) {
+            log.truncate(0);
+        }
+        return values.size();
+    }
+
+    /**
+     * Stored path-loss between two elements.
+     * @param tx transmitter's element
+     * @param rx receiver's element
+     * @return path-loss(dB); NaN if it is not stored
+     * @throws IOException if the log cannot be read
+     * @since 1.0*/
+    public double get(Element tx, Element rx) throws IOException {
+        Key key = key(tx, rx);
+        double value = lookup(key);
+        if (Double.isNaN(value)) {
+            Double loggedValue = this.logged.get(key);
+            if (loggedValue == null) {
+                refresh();      // another run may have computed it
+                loggedValue = this.logged.get(key);
+            }
+            value = loggedValue == null ? Double.NaN : loggedValue;
+        }
+        (Double.isNaN(value) ? this.misses : this.hits).increment();
+        return value;
+    }
+
+    /**
+     * Store a path-loss; appended to the log unless it is already stored.
+     * @param tx transmitter's element
+     * @param rx receiver's element
+     * @param value path-loss(dB)
+     * @throws IOException if the log cannot be written
+     * @since 1.0*/
+    public void put(Element tx, Element rx, double value) throws IOException {
+        if (Double.isNaN(value))
+            throw new IllegalArgumentException("NaN cannot be stored.");
+        Key key = key(tx, rx);
+        if (!Double.isNaN(lookup(key)) || this.logged.putIfAbsent(key, value) != null)
+            return;
+        ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        key.write(slot, 0, value);
+        while (slot.hasRemaining())     // one call for a 64 bytes buffer; appends of runs do not interleave
+            this.logAppender.write(slot);
+        this.appended.increment();
+    }
+
+    /**
+     * Read values other runs appended to the log since the last call.
+     * @throws IOException if the log cannot be read
+     * @since 1.0*/
+    public void refresh() throws IOException {
+        synchronized (this.logReader) {
+            long size = this.logReader.size();
+            if (size < this.logPosition)
+                this.logPosition = 0;       // log was compacted; its values are in memory already
+            long end = size - size % SLOT_SIZE;     // a slot being appended is read next time
+            if (end <= this.logPosition)
+                return;
+            ByteBuffer slots = ByteBuffer.allocate((int) Math.min(end - this.logPosition, 1 << 20))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            while (this.logPosition < end) {
+                slots.clear().limit((int) Math.min(slots.capacity(), end - this.logPosition));
+                readFully(this.logReader, slots, this.logPosition);
+                int read = slots.position() - slots.position() % SLOT_SIZE;
+                if (read == 0)
+                    break;      // log was compacted meanwhile
+                for (int offset = 0; offset < read; offset += SLOT_SIZE)
+                    if (slots.getInt(offset + USED_OFFSET) == 1)
+                        this.logged.putIfAbsent(Key.read(slots, offset), slots.getDouble(offset + VALUE_OFFSET));
+                this.logPosition += read;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.logAppender.close();
+        }
+        finally {
+            this.logReader.close();
+        }
+    }
+
+    /**@return number of values in the table and the log(as read so far)*/
+    public long size() { return this.tableEntries + this.logged.size(); }
+
+    /**@return number of get() calls that found a value*/
+    public long getHits() { return hits.sum(); }
+
+    /**@return number of get() calls that found no value*/
+    public long getMisses() { return misses.sum(); }
+
+    /**@return number of values this store appended to the log*/
+    public long getAppended() { return appended.sum(); }
+
+    public Path getPath() { return path; }
+
+    /**@return log file of a store*/
+    public static Path logPath(Path path) { return path.resolveSibling(path.getFileName() + LOG_SUFFIX); }
+
+    // key of two elements
+    static Key key(Element tx, Element rx){
+        return new Key(tx.getLocation().getCartesian().getX(), tx.getLocation().getCartesian().getY(),
+                rx.getLocation().getCartesian().getX(), rx.getLocation().getCartesian().getY(), tx.getHeight(),
+                rx.getHeight());
+    }
+
+    // value of key in the table; NaN if it is not there
+    private double lookup(Key key){
+        if (this.capacity == 0)
+            return Double.NaN;
+        long mask = this.capacity - 1;
+        long slot = key.hash() & mask;
+        for (long probe = 0; probe < this.capacity; probe++, slot = (slot + 1) & mask) {
+            long offset = slot * SLOT_SIZE;
+            ByteBuffer segment = this.segments[(int) (offset / SEGMENT_SIZE)];
+            int position = (int) (offset % SEGMENT_SIZE);
+            if (segment.getInt(position + USED_OFFSET) == 0)
+                return Double.NaN;
+            if (key.matches(segment, position))
+                return segment.getDouble(position + VALUE_OFFSET);
+        }
+        return Double.NaN;
+    }
+
+    // give each used slot of the table
+    private void forEachTableEntry(BiConsumer<Key, Double> consumer){
+        for (long slot = 0; slot < this.capacity; slot++) {
+            long offset = slot * SLOT_SIZE;
+            ByteBuffer segment = this.segments[(int) (offset / SEGMENT_SIZE)];
+            int position = (int) (offset % SEGMENT_SIZE);
+            if (segment.getInt(position + USED_OFFSET) != 0)
+                consumer.accept(Key.read(segment, position), segment.getDouble(position + VALUE_OFFSET));
+        }
+    }
+
+    // read from position until buffer is full or the end of the file
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                return;
+    }
+
+    // write a table holding values to a temporary file and move it to path; runs having the old table mapped keep it.
+    // If replace is false and path exists(another run created it meanwhile), path is kept.
+    private static void writeTable(Path path, Map<Key, Double> values, boolean replace) throws IOException {
+        long capacity = values.isEmpty() ? 0 : Long.highestOneBit(values.size() * 2L - 1) << 1;   // load <= 0.5
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.put(MAGIC).putInt(VERSION).putLong(capacity).putLong(values.size())
+                        .position(HEADER_SIZE).flip();
+                while (header.hasRemaining())
+                    channel.write(header);
+                channel.truncate(HEADER_SIZE);
+                int segmentCount = (int) ((capacity * SLOT_SIZE + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+                MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+                for (int i = 0; i < segments.length; i++) {
+                    long offset = i * SEGMENT_SIZE;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + offset,
+                            Math.min(SEGMENT_SIZE, capacity * SLOT_SIZE - offset));
+                    segments[i].order(ByteOrder.LITTLE_ENDIAN);
+                }
+                long mask = capacity - 1;
+                for (Map.Entry<Key, Double> entry : values.entrySet()) {
+                    for (long slot = entry.getKey().hash() & mask; ; slot = (slot + 1) & mask) {
+                        long offset = slot * SLOT_SIZE;
+                        ByteBuffer segment = segments[(int) (offset / SEGMENT_SIZE)];
+                        int position = (int) (offset % SEGMENT_SIZE);
+                        if (segment.getInt(position + USED_OFFSET) == 0) {
+                            entry.getKey().write(segment, position, entry.getValue());
+                            break;
+                        }
+                    }
+                }
+                for (MappedByteBuffer segment : segments)
+                    segment.force();
+            }
+            if (replace)
+                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            else {
+                try {
+                    Files.move(temporary, path);
+                }
+                catch (FileAlreadyExistsException e) {
+                    // another run created the store at the same time; keep its table
+                }
+            }
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Warm-up stage computing, before sampling starts, path-loss values sampling will need, so sampling threads do not
+ * wait for cold Splat! executions in the middle of a run. The field is a fixed grid and transmitters(PUs and SUs)
+ * are put on its cells, so the needed pairs are every cell to:
+ * each sensor(PU and SU to sensor),
+ * each PUR offset of each PU, relative to the cell(PU to its own PURs; dynamic PUs move with their PURs),
+ * each PUR of static PUs(PU and SU to PUR).
+ * Pairs between a moving transmitter and another PU's PUR, and SUs' own receivers(random) are not known in advance.
+ * Elements are built the same way SpectrumManager builds them(scaled by cell size), so the values land under the
+ * same keys of the store/Splat dictionary sampling uses. If the model has a store, values are computed below the
+ * in-memory cache(it holds far fewer values than a warm-up covers, so filling it would only evict what sampling
+ * uses); they reach sampling threads through the store.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class PathLossWarmUp {
+    private static final int CHUNK_SIZE = 256;      // pairs a thread takes at once
+    private static final int LOGGED_FAILURES = 10;  // failures printed by a run; the others are only counted
+
+    private final int length, width;                // grid of transmitter cells
+    private final int cellSize;
+    private final double txHeight;                  // height of PUs and SUs
+    private final List<Target> targets = new ArrayList<>();
+
+    // a receiver every cell is paired with; fixed or relative to the cell
+    private static class Target {
+        private final Element element;              // location in cells; relative to the cell if relative
+        private final boolean relative;
+
+        Target(Element element, boolean relative){
+            this.element = element;
+            this.relative = relative;
+        }
+    }
+
+    /**
+     * PathLossWarmUp constructor.
+     * @param shape field; should be a Rectangle(or Square)
+     * @param cellSize cell size(meters) of the run
+     * @param txHeight height of PUs' and SUs' transmitters
+     * @throws IllegalArgumentException if shape is not a Rectangle
+     * @since 1.0*/
+    public PathLossWarmUp(Shape shape, int cellSize, double txHeight){
+        super();
+        if (!(shape instanceof Rectangle rectangle))
+            throw new IllegalArgumentException("Warm-up is only supported for Rectangle and Square.");
+        this.length = rectangle.getLength();
+        this.width = rectangle.getWidth();
+        this.cellSize = cellSize;
+        this.txHeight = txHeight;
+    }
+
+    /**
+     * Pair every cell with each sensor.
+     * @param sss sensors of the run; may be null
+     * @return this
+     * @since 1.0*/
+    public PathLossWarmUp addSensors(SpectrumSensor[] sss){
+        if (sss != null)
+            for (SpectrumSensor ss : sss)
+                this.targets.add(new Target(ss.getRx().getElement(), false));
+        return this;
+    }
+
+    /**
+     * Pair every cell with the PURs of each PU as if the PU was on the cell.
+     * @param pus PUs of the run
+     * @return this
+     * @since 1.0*/
+    public PathLossWarmUp addPurOffsets(PU[] pus){
+        for (PU pu : pus)
+            for (PUR pur : pu.getPurs())
+                this.targets.add(new Target(pur.getRx().getElement(), true));
+        return this;
+    }
+
+    /**
+     * Pair every cell with each PUR of PUs that do not move.
+     * @param pus static PUs of the run
+     * @return this
+     * @since 1.0*/
+    public PathLossWarmUp addPurs(PU[] pus){
+        for (PU pu : pus)
+            for (PUR pur : pu.getPurs()) {
+                Element relative = pur.getRx().getElement();
+                this.targets.add(new Target(new Element(pu.getTx().getElement().getLocation()
+                        .add(relative.getLocation()), relative.getHeight()), false));
+            }
+        return this;
+    }
+
+    /**@return number of pairs the warm-up covers*/
+    public long getPairs() { return (long) this.length * this.width * this.targets.size(); }
+
+    /**
+     * Compute values of all pairs that are missing, in parallel. The first failures are printed to System.err.
+     * @param propagationModel model of the run(decorated or not); each thread uses its own copy of its stored
+     *                         model if it has one, of it otherwise
+     * @param threads number of threads
+     * @param progress where progress is reported; may be null
+     * @return coverage of the warm-up
+     * @throws InterruptedException if interrupted while waiting for threads
+     * @since 1.0*/
+    public Coverage run(PropagationModel propagationModel, int threads, ProgressReporter progress)
+            throws InterruptedException {
+        StoredPropagationModel storedModel = storedModel(propagationModel);
+        PathLossStore store = storedModel == null ? null : storedModel.getStore();
+        PropagationModel warmUpModel = storedModel == null ? propagationModel : storedModel;
+        long cells = (long) this.length * this.width;
+        long pairs = getPairs();
+        AtomicLong next = new AtomicLong(0);
+        LongAdder stored = new LongAdder(), computed = new LongAdder(), failed = new LongAdder();
+        AtomicInteger logged = new AtomicInteger(0);
+        long begin = System.currentTimeMillis();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            PropagationModel threadPM = SharedGeometry.workerPropagationModel(warmUpModel);
+            ProgressReporter.Counter counter = progress == null ? null : progress.register("warm-up-" + t);
+            workers[t] = new Thread(() -> {
+                long from;
+                while ((from = next.getAndAdd(CHUNK_SIZE)) < pairs)
+                    for (long pair = from; pair < Math.min(from + CHUNK_SIZE, pairs); pair++) {
+                        Target target = this.targets.get((int) (pair / cells));
+                        Point cell = new Point(pair % cells % this.length, pair % cells / this.length);
+                        Element tx = new Element(cell, this.txHeight).mul(this.cellSize);
+                        Element rx = (target.relative ? new Element(cell.add(target.element.getLocation()),
+                                target.element.getHeight()) : target.element).mul(this.cellSize);
+                        try {
+                            if (store != null && !Double.isNaN(store.get(tx, rx)))
+                                stored.increment();
+                            else {
+                                threadPM.pathLoss(tx, rx);
+                                computed.increment();
+                            }
+                        }
+                        catch (RuntimeException | IOException e) {
+                            failed.increment();
+                            if (logged.getAndIncrement() < LOGGED_FAILURES)
+                                System.err.printf("Path-loss warm-up failed for tx %s, rx %s: %s%n",
+                                        tx.getLocation(), rx.getLocation(), e);
+                        }
+                        if (counter != null)
+                            counter.increment();
+                    }
+            }, "path-loss-warm-up-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        if (logged.get() > LOGGED_FAILURES)
+            System.err.printf("Path-loss warm-up: %,d more failures were not printed%n",
+                    logged.get() - LOGGED_FAILURES);
+        return new Coverage(pairs, stored.sum(), computed.sum(), failed.sum(), System.currentTimeMillis() - begin);
+    }
+
+    // stored model of a chain of decorators; null if there is none
+    private static StoredPropagationModel storedModel(PropagationModel propagationModel){
+        while (propagationModel instanceof PropagationModelDecorator decorator) {
+            if (propagationModel instanceof StoredPropagationModel stored)
+                return stored;
+            propagationModel = decorator.getModel();
+        }
+        return null;
+    }
+
+    /**
+     * What a warm-up found and computed.
+     * @since 1.0*/
+    public static class Coverage {
+        private final long pairs, stored, computed, failed, millis;
+
+        Coverage(long pairs, long stored, long computed, long failed, long millis){
+            this.pairs = pairs;
+            this.stored = stored;
+            this.computed = computed;
+            this.failed = failed;
+            this.millis = millis;
+        }
+
+        /**@return number of pairs the warm-up covers*/
+        public long getPairs() { return pairs; }
+
+        /**@return pairs that were in the store already*/
+        public long getStored() { return stored; }
+
+        /**@return pairs given to the propagation model(computed, or found by its own cache)*/
+        public long getComputed() { return computed; }
+
+        /**@return pairs the propagation model failed for*/
+        public long getFailed() { return failed; }
+
+        public long getMillis() { return millis; }
+
+        /**@return fraction of pairs having a value after the warm-up; 1 if there is no pair*/
+        public double getCoverage() { return pairs == 0 ? 1.0 : (double) (stored + computed) / pairs; }
+
+        @Override
+        public String toString(){
+            return String.format("Path-loss warm-up: %,d pairs, %,d stored already, %,d computed, %,d failed, " +
+                    "coverage %.2f%%, %.1fs", pairs, stored, computed, failed, getCoverage() * 100, millis / 1000.0);
+        }
+    }
+}
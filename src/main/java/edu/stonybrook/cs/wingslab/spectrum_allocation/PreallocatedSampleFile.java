@@ -0,0 +1,137 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Binary sample file with a fixed-length slot for each sample, so workers write their samples straight into the
+ * final file(non-overlapping regions, positional writes) and no merge step is needed.
+ * Layout is BinarySampleWriter's, with the header's record length set: sample i's record starts at
+ * headerLength + i * recordLength and is padded with zeros. Slots of samples that were skipped(failed or not valid)
+ * hold an empty record(zero values).
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class PreallocatedSampleFile implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;     // bytes buffered before a channel write
+
+    private final FileChannel channel;                  // shared by all writers; positional writes are thread-safe
+    private final int headerLength;                     // bytes before the first record
+    private final int maxValues;                        // most values a record can have
+    private final int recordLength;                     // bytes of each slot
+    private final int sampleCount;                      // number of slots
+
+    /**
+     * PreallocatedSampleFile constructor; creates the file with its header and full length.
+     * @param path file to be created(overwritten)
+     * @param schema description of the columns
+     * @param maxValues most values a record can have
+     * @param sampleCount number of samples
+     * @throws IOException if the file cannot be created
+     * @since 1.0*/
+    public PreallocatedSampleFile(Path path, String schema, int maxValues, int sampleCount) throws IOException {
+        super();
+        if (maxValues < 1 || sampleCount < 0)
+            throw new IllegalArgumentException("Number of values should be positive and sample count non-negative.");
+        this.maxValues = maxValues;
+        this.recordLength = 4 + 8 * maxValues;
+        this.sampleCount = sampleCount;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = BinarySampleWriter.header(schema, this.recordLength);
+        this.headerLength = header.remaining();
+        writeFully(header, 0);
+        long length = this.headerLength + (long) this.recordLength * sampleCount;
+        if (length > this.headerLength)
+            writeFully(ByteBuffer.allocate(1), length - 1);     // extend to full length; slots are zero(empty)
+    }
+
+    /**
+     * Writer of consecutive samples starting at firstSample; each thread should use its own writer.
+     * Closing the writer flushes it but does not close the file.
+     * @param firstSample index of the first sample to be written
+     * @return a new writer
+     * @since 1.0*/
+    public SampleWriter writer(int firstSample){
+        if (firstSample < 0 || firstSample > this.sampleCount)
+            throw new IllegalArgumentException("Sample index is out of the file.");
+        return new SlotWriter(firstSample);
+    }
+
+    @Override
+    public void close() throws IOException { this.channel.close(); }
+
+    public int getRecordLength() { return recordLength; }
+
+    public int getHeaderLength() { return headerLength; }
+
+    // write all of buffer at position
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += this.channel.write(buffer, position);
+    }
+
+    // writes records of consecutive slots; buffered records are written at once
+    private class SlotWriter implements SampleWriter {
+        private final ByteBuffer buffer;                // whole number of slots
+        private final SampleRecord record = new SampleRecord();
+        private long bufferSlot;                        // slot of the first buffered record
+
+        private SlotWriter(int firstSample){
+            int slots = Math.max(1, BUFFER_SIZE / recordLength);
+            this.buffer = ByteBuffer.allocateDirect(slots * recordLength).order(ByteOrder.LITTLE_ENDIAN);
+            this.bufferSlot = firstSample;
+        }
+
+        @Override
+        public void write(Supplier<String> line, Consumer<SampleRecord> record) throws IOException {
+            record.accept(this.record.clear());
+            if (this.record.size() > maxValues)
+                throw new IOException("Record has " + this.record.size() + " values; slots hold " + maxValues + ".");
+            reserveSlot();
+            int slotStart = this.buffer.position();
+            BinarySampleWriter.put(this.buffer, this.record);
+            while (this.buffer.position() < slotStart + recordLength)   // buffer is reused; padding is not zero
+                this.buffer.put((byte) 0);
+        }
+
+        @Override
+        public void skip() throws IOException {
+            reserveSlot();
+            int slotStart = this.buffer.position();
+            while (this.buffer.position() < slotStart + recordLength)
+                this.buffer.put((byte) 0);
+        }
+
+        @Override
+        public Format getFormat() { return Format.BINARY; }
+
+        @Override
+        public void close() throws IOException { flush(); }
+
+        // make room for one more slot in the buffer
+        private void reserveSlot() throws IOException {
+            long slot = this.bufferSlot + this.buffer.position() / recordLength;
+            if (slot >= sampleCount)
+                throw new IOException("Sample " + slot + " is out of the file(" + sampleCount + " samples).");
+            if (!this.buffer.hasRemaining())
+                flush();
+        }
+
+        private void flush() throws IOException {
+            int slots = this.buffer.position() / recordLength;
+            this.buffer.flip();
+            writeFully(this.buffer, headerLength + this.bufferSlot * recordLength);
+            this.buffer.clear();
+            this.bufferSlot += slots;
+        }
+    }
+}
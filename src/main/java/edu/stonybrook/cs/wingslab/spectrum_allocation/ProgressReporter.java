@@ -0,0 +1,230 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Central progress reporter of a run. Workers only bump their own counter on each sample(no formatting, no console
+ * lock); a timer thread reads all counters periodically and hands an aggregate Progress(samples/s, ETA, per-worker
+ * skew) to a ProgressSink(console line, log, JSON lines file, ...).
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class ProgressReporter implements Closeable {
+    private final long totalSamples;                    // samples of the run; 0 if not known
+    private final ProgressSink sink;
+    private final List<Counter> counters = new ArrayList<>();   // guarded by this
+    private final ScheduledExecutorService timer;
+    private final long beginNanos = System.nanoTime();
+    private long lastNanos = beginNanos;                // time of the last report; only the timer thread uses it
+    private long lastDone = 0;                          // samples done at the last report
+    private boolean closed = false;
+
+    /**
+     * Per-worker sample counter; written by its worker only and read by the reporter.
+     * @since 1.0*/
+    public static class Counter {
+        private final String name;
+        private final AtomicLong done = new AtomicLong(0);
+
+        private Counter(String name) { this.name = name; }
+
+        /**
+         * Count one more sample; cheap enough to be called on every sample.
+         * @since 1.0*/
+        public void increment() { this.done.lazySet(this.done.get() + 1); }   // single writer: no CAS needed
+
+        public String getName() { return name; }
+
+        public long getDone() { return done.get(); }
+    }
+
+    /**
+     * ProgressReporter constructor; starts the timer.
+     * @param totalSamples samples of the run(for percentage and ETA); 0 if not known
+     * @param periodMillis time between two reports
+     * @param sink where reports go
+     * @since 1.0*/
+    public ProgressReporter(long totalSamples, long periodMillis, ProgressSink sink){
+        super();
+        if (periodMillis < 1)
+            throw new IllegalArgumentException("Report period should be positive.");
+        this.totalSamples = totalSamples;
+        this.sink = sink;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.scheduleAtFixedRate(this::report, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Counter of a new worker.
+     * @param name name of the worker(used for skew reports)
+     * @return the worker's counter
+     * @since 1.0*/
+    public synchronized Counter register(String name){
+        Counter counter = new Counter(name);
+        this.counters.add(counter);
+        return counter;
+    }
+
+    /**
+     * Current progress; counters are read one by one while workers update them.
+     * @return aggregate progress
+     * @since 1.0*/
+    public synchronized Progress progress(){
+        long now = System.nanoTime();
+        String[] names = new String[this.counters.size()];
+        long[] done = new long[this.counters.size()];
+        for (int i = 0; i < done.length; i++) {
+            names[i] = this.counters.get(i).getName();
+            done[i] = this.counters.get(i).getDone();
+        }
+        return new Progress(this.totalSamples, (now - this.beginNanos) / 1_000_000, names, done, Double.NaN);
+    }
+
+    /**
+     * Stop the timer, send a last report and close the sink.
+     * @throws IOException if the sink cannot be closed
+     * @since 1.0*/
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (this.closed)
+                return;
+            this.closed = true;
+        }
+        this.timer.shutdown();
+        try {
+            this.timer.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        report();
+        this.sink.close();
+    }
+
+    // send current progress to the sink; a failing sink must not stop the timer
+    private void report(){
+        long now = System.nanoTime();
+        Progress progress = progress();
+        double intervalSeconds = (now - this.lastNanos) / 1e9;
+        double currentRate = intervalSeconds > 0 ? (progress.getDone() - this.lastDone) / intervalSeconds : 0.0;
+        progress = new Progress(progress.totalSamples, progress.elapsedMillis, progress.workerNames,
+                progress.workerDone, currentRate);
+        this.lastNanos = now;
+        this.lastDone = progress.getDone();
+        try {
+            this.sink.report(progress);
+        }
+        catch (RuntimeException | IOException e) {
+            Logger.getLogger(ProgressReporter.class.getName()).warning("Reporting progress failed: " + e);
+        }
+    }
+
+    /**
+     * Progress of a run at some moment.
+     * @since 1.0*/
+    public static class Progress {
+        private final long totalSamples;        // 0 if not known
+        private final long elapsedMillis;
+        private final String[] workerNames;
+        private final long[] workerDone;        // samples done by each worker
+        private final long done;
+        private final double currentRate;       // samples/s since the previous report; NaN if not known
+
+        Progress(long totalSamples, long elapsedMillis, String[] workerNames, long[] workerDone, double currentRate){
+            this.totalSamples = totalSamples;
+            this.elapsedMillis = elapsedMillis;
+            this.workerNames = workerNames;
+            this.workerDone = workerDone;
+            this.currentRate = currentRate;
+            long done = 0;
+            for (long workerSamples : workerDone)
+                done += workerSamples;
+            this.done = done;
+        }
+
+        /**@return samples done by all workers*/
+        public long getDone() { return done; }
+
+        public long getTotalSamples() { return totalSamples; }
+
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        /**@return done / total in [0, 1]; NaN if total is not known*/
+        public double getFraction() {
+            return totalSamples > 0 ? Math.min(1.0, (double) done / totalSamples) : Double.NaN;
+        }
+
+        /**@return samples per second since the beginning of the run*/
+        public double getAverageRate() { return elapsedMillis > 0 ? done * 1000.0 / elapsedMillis : 0.0; }
+
+        /**@return samples per second since the previous report; NaN for progress not made by the timer*/
+        public double getCurrentRate() { return currentRate; }
+
+        /**@return estimated remaining time(ms) at the average rate; -1 if not known*/
+        public long getEtaMillis(){
+            if (totalSamples <= 0 || getAverageRate() <= 0)
+                return -1;
+            return (long) (Math.max(0, totalSamples - done) / getAverageRate() * 1000);
+        }
+
+        /**@return (max - min) / mean of samples done by workers; 0 with less than two workers or no sample*/
+        public double getSkew(){
+            if (workerDone.length < 2 || done == 0)
+                return 0.0;
+            long min = Long.MAX_VALUE, max = 0;
+            for (long workerSamples : workerDone) {
+                min = Math.min(min, workerSamples);
+                max = Math.max(max, workerSamples);
+            }
+            return (max - min) / ((double) done / workerDone.length);
+        }
+
+        /**@return names of the workers*/
+        public String[] getWorkerNames() { return workerNames.clone(); }
+
+        /**@return samples done by each worker*/
+        public long[] getWorkerDone() { return workerDone.clone(); }
+
+        /**@return progress as a one-line JSON object*/
+        public String toJson(){
+            StringBuilder workers = new StringBuilder();
+            for (int i = 0; i < workerDone.length; i++)
+                workers.append(i > 0 ? "," : "").append('"').append(workerNames[i].replace("\"", "\\\""))
+                        .append("\":").append(workerDone[i]);
+            return String.format(Locale.ROOT, "{\"elapsedMillis\":%d,\"done\":%d,\"total\":%d,\"averageRate\":%.3f," +
+                            "\"currentRate\":%s,\"etaMillis\":%d,\"skew\":%.3f,\"workers\":{%s}}", elapsedMillis, done,
+                    totalSamples, getAverageRate(), Double.isNaN(currentRate) ? "null" :
+                            String.format(Locale.ROOT, "%.3f", currentRate), getEtaMillis(), getSkew(), workers);
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%d/%d samples(%s), %.2fit/s, elapsed %s, ETA %s, skew %.2f", done, totalSamples,
+                    Double.isNaN(getFraction()) ? "-" : String.format("%d%%", (int) (getFraction() * 100)),
+                    Double.isNaN(currentRate) ? getAverageRate() : currentRate, timeFormat(elapsedMillis),
+                    getEtaMillis() < 0 ? "-" : timeFormat(getEtaMillis()), getSkew());
+        }
+
+        // h:mm:ss
+        private static String timeFormat(long millis){
+            return String.format("%d:%02d:%02d", TimeUnit.MILLISECONDS.toHours(millis),
+                    TimeUnit.MILLISECONDS.toMinutes(millis) % TimeUnit.HOURS.toMinutes(1),
+                    TimeUnit.MILLISECONDS.toSeconds(millis) % TimeUnit.MINUTES.toSeconds(1));
+        }
+    }
+}
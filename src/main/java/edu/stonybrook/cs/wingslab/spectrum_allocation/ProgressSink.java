@@ -0,0 +1,100 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * Destination of ProgressReporter's reports; called from the reporter's timer thread only.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public interface ProgressSink {
+    /**
+     * Handle a report.
+     * @param progress progress of the run
+     * @throws IOException if the report cannot be written
+     * @since 1.0*/
+    void report(ProgressReporter.Progress progress) throws IOException;
+
+    /**
+     * Release resources of the sink; called once, after the last report.
+     * @throws IOException if closing fails
+     * @since 1.0*/
+    default void close() throws IOException {}
+
+    /**
+     * Sink of the given name.
+     * @param name "console", "log" or "json"
+     * @param jsonPath file of the "json" sink
+     * @return the sink
+     * @throws IOException if the json file cannot be created
+     * @throws IllegalArgumentException if name is not known
+     * @since 1.0*/
+    static ProgressSink named(String name, Path jsonPath) throws IOException {
+        return switch (name) {
+            case "console" -> console(System.out);
+            case "log" -> log(Logger.getLogger(ProgressReporter.class.getName()));
+            case "json" -> jsonLines(jsonPath);
+            default -> throw new IllegalArgumentException("Progress sink " + name + " is not supported.");
+        };
+    }
+
+    /**
+     * Sink rewriting one console line(progress bar) on each report.
+     * @param out console stream
+     * @return the sink
+     * @since 1.0*/
+    static ProgressSink console(PrintStream out){
+        return new ProgressSink() {
+            private static final int BAR_LENGTH = 50;
+
+            @Override
+            public void report(ProgressReporter.Progress progress) {
+                int bar = Double.isNaN(progress.getFraction()) ? 0 : (int) (progress.getFraction() * BAR_LENGTH);
+                out.print("=".repeat(bar) + " ".repeat(BAR_LENGTH - bar) + "| " + progress + "\r");
+                out.flush();
+            }
+
+            @Override
+            public void close() { out.println(); }
+        };
+    }
+
+    /**
+     * Sink logging each report as an INFO record.
+     * @param logger logger of the reports
+     * @return the sink
+     * @since 1.0*/
+    static ProgressSink log(Logger logger){
+        return progress -> logger.info(progress.toString());
+    }
+
+    /**
+     * Sink appending each report to a file as one JSON object per line.
+     * @param path file to be created(overwritten)
+     * @return the sink
+     * @throws IOException if the file cannot be created
+     * @since 1.0*/
+    static ProgressSink jsonLines(Path path) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new ProgressSink() {
+            @Override
+            public void report(ProgressReporter.Progress progress) throws IOException {
+                writer.write(progress.toJson());
+                writer.newLine();
+                writer.flush();         // readable while the run goes on
+            }
+
+            @Override
+            public void close() throws IOException { writer.close(); }
+        };
+    }
+}
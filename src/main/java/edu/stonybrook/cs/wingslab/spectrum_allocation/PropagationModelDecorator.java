@@ -0,0 +1,35 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.PropagationModel;
+
+/**
+ * Propagation model adding something(store, cache, ...) in front of another one. The state the decorator adds is
+ * shared by all workers while the wrapped model is copied for each of them(see SharedGeometry).
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public interface PropagationModelDecorator {
+    /**
+     * @return the wrapped model
+     * @since 1.0*/
+    PropagationModel getModel();
+
+    /**
+     * Same decorator(sharing its state) in front of another model.
+     * @param model model to be wrapped(e.g. a worker's copy of getModel())
+     * @return new decorator
+     * @since 1.0*/
+    PropagationModel wrap(PropagationModel model);
+
+    /**
+     * Innermost model of a chain of decorators.
+     * @param propagationModel a model, decorated or not
+     * @return the first model that is not a decorator
+     * @since 1.0*/
+    static PropagationModel unwrap(PropagationModel propagationModel){
+        while (propagationModel instanceof PropagationModelDecorator decorator)
+            propagationModel = decorator.getModel();
+        return propagationModel;
+    }
+}
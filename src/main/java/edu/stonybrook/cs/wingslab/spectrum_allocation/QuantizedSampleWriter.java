@@ -0,0 +1,249 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * SampleWriter writing values quantized to a fixed step and delta-encoded, in independent blocks.
+ * File layout:
+ * header: "SAMQ"(4 bytes), version(int32), header length in bytes(int32), flags(int32; 1 if blocks are GZIP
+ * compressed), step(float64), schema length(int32), schema(UTF-8)
+ * blocks: payload length in bytes(int32), number of records(int32), payload; all little-endian.
+ * A record is its number of values(varint) followed by a token per value. Value v of column i is quantized to
+ * q = round(v / step) and written as varint(zigzag(q - p) << 1) where p is q of column i in the previous record of
+ * the block(0 for the first one). Values that cannot be quantized(NaN, infinite or too large) are written as varint 1
+ * followed by the raw float64 and do not change p.
+ * Delta state is reset at each block, so a block(and a GZIP member holding it) is decoded on its own and files can be
+ * split at block boundaries or concatenated(header of the first one kept) like binary files.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class QuantizedSampleWriter implements SampleWriter {
+    public static final byte[] MAGIC = {'S', 'A', 'M', 'Q'};
+    public static final int VERSION = 1;
+    public static final double STEP = 0.001;            // same precision as text files
+    private static final int FLAG_GZIP = 1;
+    private static final long MAX_QUANTIZED = 1L << 60;     // larger values are written raw; deltas fit in a long
+
+    private final WritableByteChannel out;              // blocks go here
+    private final int blockSize;                        // payload bytes of a block(at least)
+    private ByteBuffer payload;                         // payload of the current block; grows if needed
+    private int records = 0;                            // number of records in the current block
+    private long[] previous = new long[64];             // quantized values of the previous record in the block
+    private int previousSize = 0;                       // number of valid values in previous
+    private final SampleRecord record = new SampleRecord();     // reused for every sample
+
+    /**
+     * QuantizedSampleWriter constructor; writes the header.
+     * @param path file to be created(overwritten)
+     * @param schema description of the columns
+     * @param compression compression of the blocks
+     * @param blockSize payload bytes of a block(at least); also GZIP member size
+     * @throws IOException if the file cannot be created
+     * @since 1.0*/
+    public QuantizedSampleWriter(Path path, String schema, Compression compression, int blockSize)
+            throws IOException {
+        super();
+        if (blockSize < 1)
+            throw new IllegalArgumentException("Block size should be positive.");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        byte[] schemaBytes = schema.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(28 + schemaBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC).putInt(VERSION).putInt(header.capacity())
+                .putInt(compression == Compression.GZIP ? FLAG_GZIP : 0).putDouble(STEP).putInt(schemaBytes.length)
+                .put(schemaBytes).flip();
+        while (header.hasRemaining())
+            channel.write(header);
+        this.out = SampleWriter.compressed(channel, compression, blockSize);
+        this.blockSize = blockSize;
+        this.payload = ByteBuffer.allocate(8 + Math.min(blockSize, 1 << 20) + 1024).order(ByteOrder.LITTLE_ENDIAN);
+        this.payload.position(8);
+    }
+
+    @Override
+    public void write(Supplier<String> line, Consumer<SampleRecord> record) throws IOException {
+        record.accept(this.record.clear());
+        write(this.record);
+    }
+
+    /**
+     * Write one record.
+     * @throws IOException if writing fails
+     * @since 1.0*/
+    public void write(SampleRecord record) throws IOException {
+        int size = record.size();
+        ensureRemaining(5 + 10 * size);     // longest varints and raw values
+        if (size > this.previous.length)
+            this.previous = Arrays.copyOf(this.previous, Math.max(this.previous.length * 2, size));
+        putVarint(size);
+        double[] values = record.getValues();
+        for (int i = 0; i < size; i++) {
+            double scaled = values[i] / STEP;
+            long p = i < this.previousSize ? this.previous[i] : 0;
+            if (Math.abs(scaled) < MAX_QUANTIZED) {     // false for NaN too
+                long q = Math.round(scaled);
+                putVarint(zigzag(q - p) << 1);
+                this.previous[i] = q;
+            }
+            else {
+                putVarint(1);
+                this.payload.putDouble(values[i]);
+                this.previous[i] = p;
+            }
+        }
+        this.previousSize = size;
+        this.records++;
+        if (this.payload.position() - 8 >= this.blockSize)
+            writeBlock();
+    }
+
+    @Override
+    public Format getFormat() { return Format.QUANTIZED; }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+        }
+        finally {
+            this.out.close();
+        }
+    }
+
+    /**
+     * Read all records of a quantized sample file(compressed or not); values are multiples of the file's step.
+     * @param path quantized sample file
+     * @return values of each record
+     * @throws IOException if the file is not a quantized sample file or cannot be read
+     * @since 1.0*/
+    public static List<double[]> read(Path path) throws IOException {
+        try (DataInputStream file = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            byte[] fixed = new byte[24];
+            file.readFully(fixed);
+            ByteBuffer header = ByteBuffer.wrap(fixed).order(ByteOrder.LITTLE_ENDIAN);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC))
+                throw new IOException("Not a quantized sample file: " + path);
+            header.getInt();    // version
+            int headerLength = header.getInt();
+            int flags = header.getInt();
+            double step = header.getDouble();
+            file.skipNBytes(headerLength - fixed.length);
+            InputStream blocks = (flags & FLAG_GZIP) != 0 ? new GZIPInputStream(file) : file;
+            List<double[]> records = new ArrayList<>();
+            byte[] blockHeader = new byte[8];
+            while (readBlockHeader(blocks, blockHeader)) {
+                ByteBuffer block = ByteBuffer.wrap(blockHeader).order(ByteOrder.LITTLE_ENDIAN);
+                byte[] bytes = new byte[block.getInt()];
+                int recordCount = block.getInt();
+                new DataInputStream(blocks).readFully(bytes);
+                readBlock(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN), recordCount, step, records);
+            }
+            return records;
+        }
+    }
+
+    // decode records of a block
+    private static void readBlock(ByteBuffer block, int recordCount, double step, List<double[]> records){
+        long[] previous = new long[0];
+        for (int r = 0; r < recordCount; r++) {
+            int size = (int) getVarint(block);
+            double[] values = new double[size];
+            long[] quantized = new long[size];
+            for (int i = 0; i < size; i++) {
+                long p = i < previous.length ? previous[i] : 0;
+                long token = getVarint(block);
+                if ((token & 1) == 0) {
+                    quantized[i] = p + unzigzag(token >>> 1);
+                    values[i] = quantized[i] * step;
+                }
+                else {
+                    quantized[i] = p;
+                    values[i] = block.getDouble();
+                }
+            }
+            previous = quantized;
+            records.add(values);
+        }
+    }
+
+    // read a block's header; false at end of the file
+    private static boolean readBlockHeader(InputStream in, byte[] blockHeader) throws IOException {
+        int read = 0;
+        while (read < blockHeader.length) {
+            int n = in.read(blockHeader, read, blockHeader.length - read);
+            if (n < 0) {
+                if (read == 0)
+                    return false;
+                throw new EOFException("Truncated block.");
+            }
+            read += n;
+        }
+        return true;
+    }
+
+    // write the current block(header and payload) as one write call and start a new one
+    private void writeBlock() throws IOException {
+        if (this.records == 0)
+            return;
+        this.payload.putInt(0, this.payload.position() - 8).putInt(4, this.records).flip();
+        while (this.payload.hasRemaining())
+            this.out.write(this.payload);
+        this.payload.clear().position(8);
+        this.records = 0;
+        this.previousSize = 0;
+    }
+
+    // make room for bytes more payload bytes
+    private void ensureRemaining(int bytes){
+        if (this.payload.remaining() >= bytes)
+            return;
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(this.payload.capacity() * 2, this.payload.position() + bytes))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        this.payload.flip();
+        larger.put(this.payload);
+        this.payload = larger;
+    }
+
+    private void putVarint(long value){
+        while ((value & ~0x7FL) != 0) {
+            this.payload.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        this.payload.put((byte) value);
+    }
+
+    private static long getVarint(ByteBuffer buffer){
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+
+    private static long zigzag(long value) { return (value << 1) ^ (value >> 63); }
+
+    private static long unzigzag(long value) { return (value >>> 1) ^ -(value & 1); }
+}
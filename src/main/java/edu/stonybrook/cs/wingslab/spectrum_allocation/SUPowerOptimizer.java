@@ -0,0 +1,162 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.WirelessTools;
+
+import java.util.Arrays;
+
+/**
+ * Joint power allocation for a set of SUs that transmit at the same time.
+ * Constraints are linear in SUs' linear(mW) powers: for each PUR k, sum_i(gain[i][k] * p_i) must stay below the
+ * PUR's interference capacity(mW) left by PUs. Gains(10^(-pathLoss / 10)) are computed once per sample, so checking
+ * a power vector costs O(#SUs * #PURs) and needs no path-loss evaluation or PU copy.
+ * The search has two phases:
+ * 1. Bisection in dB, one SU at a time(the one with the widest interval), keeping a running interference sum per
+ *    PUR; it splits capacity among SUs the same way the previous coordinate bisection did.
+ * 2. Water-filling: each SU in turn is raised to the largest power the remaining capacity allows, which closes the
+ *    gap(up to the bisection tolerance) left by the first phase.
+ * An object is a workspace: its arrays only grow and are reset in place by reset, so a long-lived optimizer(one per
+ * thread, e.g. owned by a SpectrumManager) does not allocate in steady state. It is not thread-safe.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class SUPowerOptimizer {
+    private static final double FILL_MARGIN = 1 - 1e-9;   // water-filling stops just below a PUR's capacity
+    private int suNum = 0;                                  // number of SUs of current problem
+    private int purNum = 0;                                 // number of PURs of current problem
+    private double[] gains = new double[0];                 // row-major [su][pur] linear gains
+    private double[] capacities = new double[0];            // interference capacity(mW) of each PUR left by PUs
+    private double[] interference = new double[0];          // SUs' interference(mW) at each PUR with low powers
+    private double[] low = new double[0];                   // lower end(dB) of each SU's interval; the result
+    private double[] high = new double[0];                  // upper end(dB) of each SU's interval
+
+    /**
+     * Prepare the workspace for a new problem; arrays grow if needed and gains and capacities are zeroed.
+     * @param suNum number of SUs
+     * @param purNum number of PURs
+     * @since 1.0*/
+    public void reset(int suNum, int purNum){
+        this.suNum = suNum;
+        this.purNum = purNum;
+        if (this.gains.length < suNum * purNum)
+            this.gains = new double[Math.max(suNum * purNum, 2 * this.gains.length)];
+        if (this.capacities.length < purNum) {
+            int length = Math.max(purNum, 2 * this.capacities.length);
+            this.capacities = new double[length];
+            this.interference = new double[length];
+        }
+        if (this.low.length < suNum) {
+            int length = Math.max(suNum, 2 * this.low.length);
+            this.low = new double[length];
+            this.high = new double[length];
+        }
+        Arrays.fill(this.gains, 0, suNum * purNum, 0.0);
+        Arrays.fill(this.capacities, 0, purNum, 0.0);
+    }
+
+    /**
+     * @param su SU index
+     * @param pur PUR index
+     * @param gain linear gain between them(10^(-pathLoss / 10))
+     * @since 1.0*/
+    public void setGain(int su, int pur, double gain){ this.gains[su * this.purNum + pur] = gain; }
+
+    /**
+     * @param pur PUR index
+     * @param capacity interference capacity(mW) of the PUR left by PUs
+     * @since 1.0*/
+    public void setCapacity(int pur, double capacity){ this.capacities[pur] = capacity; }
+
+    /**
+     * Compute SUs' powers; read them with getPower.
+     * @param minPower lowest power(dB) of an SU
+     * @param maxPower highest power(dB) of an SU
+     * @param diff bisection ends when every SU's interval is not wider than diff(dB)
+     * @since 1.0*/
+    public void optimize(double minPower, double maxPower, double diff){
+        int suNum = this.suNum, purNum = this.purNum;
+        double[] gains = this.gains, capacities = this.capacities, interference = this.interference;
+        double[] low = this.low, high = this.high;
+        Arrays.fill(low, 0, suNum, minPower);
+        Arrays.fill(high, 0, suNum, maxPower);
+        Arrays.fill(interference, 0, purNum, 0.0);
+        double minDecimal = WirelessTools.getDecimal(minPower);
+        for (int su = 0; su < suNum; su++)
+            for (int pur = 0; pur < purNum; pur++)
+                interference[pur] += gains[su * purNum + pur] * minDecimal;
+
+        // phase 1: bisection on the SU with the widest interval
+        while (true) {
+            int target = -1;
+            double maxJump = Double.NEGATIVE_INFINITY;
+            for (int su = 0; su < suNum; su++)
+                if (high[su] - low[su] > maxJump) {
+                    maxJump = high[su] - low[su];
+                    target = su;
+                }
+            if (maxJump <= diff)
+                break;
+            double mid = low[target] + (high[target] - low[target]) / 2;
+            double delta = WirelessTools.getDecimal(mid) - WirelessTools.getDecimal(low[target]);
+            boolean feasible = true;
+            int row = target * purNum;
+            for (int pur = 0; pur < purNum; pur++)
+                if (capacities[pur] - (interference[pur] + gains[row + pur] * delta) <= 0) {
+                    feasible = false;
+                    break;
+                }
+            if (feasible) {
+                for (int pur = 0; pur < purNum; pur++)
+                    interference[pur] += gains[row + pur] * delta;
+                low[target] = mid;
+            }
+            else
+                high[target] = mid;
+        }
+
+        // phase 2: water-filling of the capacity left
+        double maxDecimal = WirelessTools.getDecimal(maxPower);
+        for (int su = 0; su < suNum; su++) {
+            int row = su * purNum;
+            double current = WirelessTools.getDecimal(low[su]);
+            double allowed = maxDecimal;
+            for (int pur = 0; pur < purNum; pur++) {
+                double gain = gains[row + pur];
+                if (gain > 0)
+                    allowed = Math.min(allowed, current + (capacities[pur] - interference[pur]) / gain * FILL_MARGIN);
+            }
+            if (allowed > current) {
+                for (int pur = 0; pur < purNum; pur++)
+                    interference[pur] += gains[row + pur] * (allowed - current);
+                low[su] = Math.min(WirelessTools.getDB(allowed), maxPower);
+            }
+        }
+    }
+
+    /**
+     * @param su SU index
+     * @return power(dB) computed for the SU by the last optimize call
+     * @since 1.0*/
+    public double getPower(int su){ return this.low[su]; }
+
+    /**
+     * Compute SUs' powers with a new workspace.
+     * @param gains row-major [su][pur] linear gains(10^(-pathLoss / 10)); length suNum * purNum
+     * @param capacities interference capacity(mW) of each PUR left by PUs
+     * @param suNum number of SUs
+     * @param purNum number of PURs
+     * @param minPower lowest power(dB) of an SU
+     * @param maxPower highest power(dB) of an SU
+     * @param diff bisection ends when every SU's interval is not wider than diff(dB)
+     * @return power(dB) of each SU
+     * @since 1.0*/
+    public static double[] optimize(double[] gains, double[] capacities, int suNum, int purNum, double minPower,
+                                    double maxPower, double diff){
+        SUPowerOptimizer optimizer = new SUPowerOptimizer();
+        optimizer.reset(suNum, purNum);
+        System.arraycopy(gains, 0, optimizer.gains, 0, suNum * purNum);
+        System.arraycopy(capacities, 0, optimizer.capacities, 0, purNum);
+        optimizer.optimize(minPower, maxPower, diff);
+        return Arrays.copyOf(optimizer.low, suNum);
+    }
+}
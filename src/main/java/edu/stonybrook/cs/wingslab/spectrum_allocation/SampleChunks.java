@@ -0,0 +1,68 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out consecutive chunks of sample indices to worker threads(guided self-scheduling): a chunk is a fraction of
+ * the samples still left, but never smaller than minChunk, so chunks shrink towards the end and a slow worker(e.g.
+ * missing Splat! cache) holds at most a small chunk while others keep busy.
+ * Each chunk is written to files named after its first sample index(chunkName); merging files sorted by name gives
+ * samples in index order no matter which worker generated them.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class SampleChunks {
+    private final int sampleCount;          // total number of samples
+    private final int workers;              // number of workers pulling chunks
+    private final int minChunk;             // smallest chunk(except the last one)
+    private final AtomicInteger next = new AtomicInteger(0);   // first sample index not handed out yet
+    private final AtomicInteger done = new AtomicInteger(0);   // number of samples finished
+
+    /**
+     * SampleChunks constructor.
+     * @param sampleCount total number of samples
+     * @param workers number of workers pulling chunks
+     * @param minChunk smallest chunk size
+     * @since 1.0*/
+    public SampleChunks(int sampleCount, int workers, int minChunk){
+        super();
+        if (workers < 1 || minChunk < 1)
+            throw new IllegalArgumentException("Number of workers and minimum chunk size should be positive.");
+        this.sampleCount = sampleCount;
+        this.workers = workers;
+        this.minChunk = minChunk;
+    }
+
+    /**
+     * Claim the next chunk.
+     * @return {first sample index, one after the last sample index} or null if all samples are handed out
+     * @since 1.0*/
+    public int[] nextChunk(){
+        while (true) {
+            int start = this.next.get();
+            if (start >= this.sampleCount)
+                return null;
+            int size = Math.max(this.minChunk, (this.sampleCount - start) / (2 * this.workers));
+            int end = Math.min(this.sampleCount, start + size);
+            if (this.next.compareAndSet(start, end))
+                return new int[]{start, end};
+        }
+    }
+
+    /**
+     * Record a finished sample.
+     * @return number of samples finished so far
+     * @since 1.0*/
+    public int sampleDone(){ return this.done.incrementAndGet(); }
+
+    /**
+     * Name part of a chunk's files; zero-padded so sorting names sorts chunks.
+     * @param start first sample index of the chunk
+     * @since 1.0*/
+    public static String chunkName(int start){ return String.format("%010d", start); }
+
+    public int getSampleCount() { return sampleCount; }
+
+    public int getDone() { return done.get(); }
+}
@@ -0,0 +1,237 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.PropagationModel;
+import edu.stonybrook.cs.wingslab.commons.Splat;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of a run shared by all workers and updated on every sample(replaces the per-thread result dictionary
+ * that was filled only when a thread finished). Counters and sums are striped(LongAdder/DoubleAdder), so updating
+ * them from many threads does not contend; reading them while workers run gives a live, roughly consistent view.
+ * Workers should look up their counters once and keep the references; the lookup goes through a map.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class SampleMetrics {
+    // names of metrics updated by the applications
+    public static final String SAMPLES = "samples";                     // samples computed(valid or not)
+    public static final String FAILED_SAMPLES = "failed samples";       // samples dropped by an exception
+    public static final String ACCEPTED_SAMPLES = "accepted samples";   // samples whose SU request is accepted
+    public static final String SUS = "sus";                             // SUs of all samples
+    public static final String SUS_DATA_RATE = "sus data rate";         // sum of SUs' data rate(bps)
+    public static final String VALID_SAMPLES = "valid samples";         // CS: samples both methods gave a power
+    public static final String INVALID_SAMPLES = "invalid samples";     // CS: samples CS could not give a power
+    public static final String DIFF_POWER = "difference power";         // CS: sum of |power - CS power|
+    public static final String FP_DIFF_POWER = "fp difference power";   // CS: sum of the above when CS is higher
+    public static final String SPLAT_FETCH_NUM = "splat fetch number";
+    public static final String SPLAT_FETCH_TIME = "splat fetch time";   // ms
+    public static final String SPLAT_EXEC_NUM = "splat execution number";
+    public static final String SPLAT_EXEC_TIME = "splat execution time";    // ms
+    public static final String SAMPLE_TIME = "sample time";             // histogram of a sample's time(ms)
+
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, DoubleAdder> sums = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final long beginNanos = System.nanoTime();
+
+    /**
+     * SampleMetrics constructor.
+     * @since 1.0*/
+    public SampleMetrics(){
+        super();
+    }
+
+    /**
+     * Counter of the given name; created on first use.
+     * @param name name of the counter
+     * @return the counter
+     * @since 1.0*/
+    public LongAdder counter(String name) { return this.counters.computeIfAbsent(name, key -> new LongAdder()); }
+
+    /**
+     * Sum of the given name; created on first use.
+     * @param name name of the sum
+     * @return the sum
+     * @since 1.0*/
+    public DoubleAdder sum(String name) { return this.sums.computeIfAbsent(name, key -> new DoubleAdder()); }
+
+    /**
+     * Histogram of the given name with exponential bucket bounds(0.001, 0.002, 0.005, 0.01, ..., 1e6); created on
+     * first use.
+     * @param name name of the histogram
+     * @return the histogram
+     * @since 1.0*/
+    public Histogram histogram(String name) {
+        return this.histograms.computeIfAbsent(name, key -> new Histogram(Histogram.DEFAULT_BOUNDS));
+    }
+
+    /**@return value of a counter; 0 if it was never used*/
+    public long getCount(String name){
+        LongAdder counter = this.counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**@return value of a sum; 0 if it was never used*/
+    public double getSum(String name){
+        DoubleAdder sum = this.sums.get(name);
+        return sum == null ? 0.0 : sum.sum();
+    }
+
+    /**@return a histogram if it was used; null otherwise*/
+    public Histogram getHistogram(String name) { return this.histograms.get(name); }
+
+    /**@return seconds since the metrics were created*/
+    public double getElapsedSeconds() { return (System.nanoTime() - this.beginNanos) / 1e9; }
+
+    /**@return a counter's value per second since the metrics were created*/
+    public double getRate(String name){
+        double seconds = getElapsedSeconds();
+        return seconds > 0 ? getCount(name) / seconds : 0.0;
+    }
+
+    /**
+     * Current values of all counters and sums, and count and mean of histograms(as "name.count", "name.mean").
+     * Values are read one by one while workers may update them.
+     * @return values sorted by name
+     * @since 1.0*/
+    public Map<String, Double> snapshot(){
+        TreeMap<String, Double> snapshot = new TreeMap<>();
+        this.counters.forEach((name, counter) -> snapshot.put(name, (double) counter.sum()));
+        this.sums.forEach((name, sum) -> snapshot.put(name, sum.sum()));
+        this.histograms.forEach((name, histogram) -> {
+            snapshot.put(name + ".count", (double) histogram.getCount());
+            snapshot.put(name + ".mean", histogram.getMean());
+        });
+        return snapshot;
+    }
+
+    /**
+     * Adds a worker's Splat statistics to metrics as they grow; Splat counts them per instance and cumulatively.
+     * Each worker should use its own.
+     * @since 1.0*/
+    public static class SplatStatistics {
+        private final LongAdder fetchNum, fetchTime, execNum, execTime;
+        private long lastFetchNum = 0, lastFetchTime = 0, lastExecNum = 0, lastExecTime = 0;   // already added
+
+        /**
+         * SplatStatistics constructor.
+         * @param metrics metrics statistics are added to
+         * @since 1.0*/
+        public SplatStatistics(SampleMetrics metrics){
+            super();
+            this.fetchNum = metrics.counter(SPLAT_FETCH_NUM);
+            this.fetchTime = metrics.counter(SPLAT_FETCH_TIME);
+            this.execNum = metrics.counter(SPLAT_EXEC_NUM);
+            this.execTime = metrics.counter(SPLAT_EXEC_TIME);
+        }
+
+        /**
+         * Add what propagationModel(or the Splat decorators wrap) counted since the last call; does nothing if it is
+         * not Splat.
+         * @param propagationModel worker's propagation model
+         * @since 1.0*/
+        public void update(PropagationModel propagationModel){
+            if (!(PropagationModelDecorator.unwrap(propagationModel) instanceof Splat splat))
+                return;
+            this.fetchNum.add(splat.getFetchNum() - this.lastFetchNum);
+            this.fetchTime.add(splat.getFetchTime() - this.lastFetchTime);
+            this.execNum.add(splat.getExecNum() - this.lastExecNum);
+            this.execTime.add(splat.getExecTime() - this.lastExecTime);
+            this.lastFetchNum = splat.getFetchNum();
+            this.lastFetchTime = splat.getFetchTime();
+            this.lastExecNum = splat.getExecNum();
+            this.lastExecTime = splat.getExecTime();
+        }
+    }
+
+    /**
+     * Histogram of non-negative values with fixed bucket bounds; each bucket is a striped counter.
+     * @since 1.0*/
+    public static class Histogram {
+        static final double[] DEFAULT_BOUNDS = exponentialBounds(-3, 6);
+
+        private final double[] bounds;          // upper bound(inclusive) of each bucket but the last one
+        private final LongAdder[] buckets;      // bounds.length + 1 buckets; the last one is unbounded
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder total = new DoubleAdder();
+        private final DoubleAccumulator max = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+
+        /**
+         * Histogram constructor.
+         * @param bounds increasing upper bounds of buckets
+         * @since 1.0*/
+        public Histogram(double[] bounds){
+            super();
+            for (int i = 1; i < bounds.length; i++)
+                if (bounds[i] <= bounds[i - 1])
+                    throw new IllegalArgumentException("Bounds should be increasing.");
+            this.bounds = bounds.clone();
+            this.buckets = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < this.buckets.length; i++)
+                this.buckets[i] = new LongAdder();
+        }
+
+        /**
+         * Add a value.
+         * @param value value to be added
+         * @since 1.0*/
+        public void record(double value){
+            int bucket = Arrays.binarySearch(this.bounds, value);
+            this.buckets[bucket >= 0 ? bucket : -bucket - 1].increment();
+            this.count.increment();
+            this.total.add(value);
+            this.max.accumulate(value);
+        }
+
+        /**
+         * Approximate quantile: upper bound of the bucket holding it(largest value seen for the last bucket).
+         * @param q quantile in [0, 1]
+         * @return the quantile; NaN if there is no value
+         * @since 1.0*/
+        public double getQuantile(double q){
+            long[] counts = new long[this.buckets.length];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++)
+                total += counts[i] = this.buckets[i].sum();
+            if (total == 0)
+                return Double.NaN;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < this.bounds.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(rank, 1))
+                    return Math.min(this.bounds[i], getMax());
+            }
+            return getMax();
+        }
+
+        public long getCount() { return count.sum(); }
+
+        /**@return mean of values; NaN if there is no value*/
+        public double getMean() {
+            long n = getCount();
+            return n == 0 ? Double.NaN : total.sum() / n;
+        }
+
+        public double getMax() { return max.get(); }
+
+        // 1, 2, 5 times powers of 10 from 10^minExponent to 10^maxExponent
+        private static double[] exponentialBounds(int minExponent, int maxExponent){
+            double[] bounds = new double[3 * (maxExponent - minExponent) + 1];
+            int i = 0;
+            for (int exponent = minExponent; exponent <= maxExponent; exponent++)
+                for (double step : new double[]{1, 2, 5})
+                    if (i < bounds.length)
+                        bounds[i++] = step * Math.pow(10, exponent);
+            return bounds;
+        }
+    }
+}
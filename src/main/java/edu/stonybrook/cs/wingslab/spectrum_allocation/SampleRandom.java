@@ -0,0 +1,72 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.Point;
+import edu.stonybrook.cs.wingslab.commons.Rectangle;
+import edu.stonybrook.cs.wingslab.commons.Shape;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Seeded random streams for generating samples reproducibly.
+ * Sample i draws everything from its own stream forSample(seed, i), so it is the same no matter which thread generates
+ * it or how many threads there are. Shape.points uses an internal generator that cannot be seeded; points() is a
+ * seeded replacement for Rectangle(and Square) fields.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public final class SampleRandom {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;  // same odd constant SplittableRandom uses
+
+    private SampleRandom(){}
+
+    /**
+     * Random stream of a sample.
+     * @param seed seed of the whole dataset
+     * @param sample index of the sample
+     * @return an independent stream determined only by seed and sample
+     * @since 1.0*/
+    public static SplittableRandom forSample(long seed, long sample){
+        // a stream's first value is a good(mixed) seed for the next one; consecutive samples do not get related seeds
+        return new SplittableRandom(new SplittableRandom(seed + sample * GOLDEN_GAMMA).nextLong());
+    }
+
+    /**
+     * Distinct random integer points of a Rectangle(or Square) field, x in [0, length) and y in [0, width).
+     * @param shape field; should be a Rectangle
+     * @param n number of points; at most the number of cells
+     * @param rand random stream
+     * @return n distinct points
+     * @since 1.0*/
+    public static Point[] points(Shape shape, int n, SplittableRandom rand){
+        if (!(shape instanceof Rectangle rectangle))
+            throw new IllegalArgumentException("Seeded points are only supported for Rectangle and Square.");
+        long cells = (long) rectangle.getLength() * rectangle.getWidth();
+        if (n > cells)
+            throw new IllegalArgumentException("Number of points is greater than number of cells.");
+        Point[] points = new Point[n];
+        HashSet<Long> used = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            long cell;
+            do {
+                cell = rand.nextLong(cells);
+            } while (!used.add(cell));
+            points[i] = new Point(cell % rectangle.getLength(), cell / rectangle.getLength());
+        }
+        return points;
+    }
+
+    /**
+     * Shuffle a list in place(Fisher-Yates) using rand.
+     * @since 1.0*/
+    public static <T> void shuffle(List<T> list, SplittableRandom rand){
+        for (int i = list.size() - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            T tmp = list.get(i);
+            list.set(i, list.get(j));
+            list.set(j, tmp);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.Point;
+
+import java.util.Arrays;
+
+/**
+ * Numeric values of one sample line(same columns as the text line) kept unformatted for binary output.
+ * It is reused from sample to sample; clear() does not allocate.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class SampleRecord {
+    private double[] values;        // values of the record; only first size ones are valid
+    private int size;               // number of values
+
+    /**
+     * SampleRecord constructor.
+     * @since 1.0*/
+    public SampleRecord(){
+        super();
+        this.values = new double[64];
+        this.size = 0;
+    }
+
+    /**
+     * Remove all values.
+     * @return this record
+     * @since 1.0*/
+    public SampleRecord clear(){
+        this.size = 0;
+        return this;
+    }
+
+    /**
+     * Append a value.
+     * @return this record
+     * @since 1.0*/
+    public SampleRecord add(double value){
+        if (this.size == this.values.length)
+            this.values = Arrays.copyOf(this.values, this.values.length * 2);
+        this.values[this.size++] = value;
+        return this;
+    }
+
+    /**
+     * Append all values of another record.
+     * @return this record
+     * @since 1.0*/
+    public SampleRecord addAll(SampleRecord record){
+        if (this.size + record.size > this.values.length)
+            this.values = Arrays.copyOf(this.values, Math.max(this.values.length * 2, this.size + record.size));
+        System.arraycopy(record.values, 0, this.values, this.size, record.size);
+        this.size += record.size;
+        return this;
+    }
+
+    /**
+     * Append x and y of a point.
+     * @return this record
+     * @since 1.0*/
+    public SampleRecord add(Point point){
+        return add(point.getCartesian().getX()).add(point.getCartesian().getY());
+    }
+
+    /**
+     * Append numbers of a comma-separated line; for objects that only expose their values through toString.
+     * @return this record
+     * @since 1.0*/
+    public SampleRecord addCsv(String line){
+        int start = 0;
+        while (start < line.length()) {
+            int end = line.indexOf(',', start);
+            if (end < 0)
+                end = line.length();
+            if (end > start)
+                add(Double.parseDouble(line.substring(start, end).trim()));
+            start = end + 1;
+        }
+        return this;
+    }
+
+    /**@return number of values*/
+    public int size() { return size; }
+
+    /**@return value at index(no bound check beyond the array's)*/
+    public double get(int index) { return values[index]; }
+
+    /**@return backing array; only the first size() values are valid*/
+    public double[] getValues() { return values; }
+}
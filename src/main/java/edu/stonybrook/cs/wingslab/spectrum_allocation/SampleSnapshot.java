@@ -0,0 +1,76 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Struct-of-arrays state of a sample that SpectrumManager's max-power computation runs on: ON flags and power of PUs
+ * and the interference capacity of every PUR are kept in flat primitive arrays, instead of being read through
+ * PU -> TX and PU -> PUR object graphs for each PU x PUR and SU x PUR pair.
+ * PURs are flattened PU by PU; PURs of PU i are [purOffset[i], purOffset[i + 1]), the same order as columns of
+ * PathLossMatrix, so PUR k of the snapshot is column k of the matrix. Locations are not copied: they are only needed
+ * to compute a path-loss value the matrix does not hold yet, which the propagation model takes as Elements anyway.
+ * capture() copies PUs once per sample; SpectrumManager sets a PUR's capacity whenever it changes the PUR's
+ * interference. Arrays only grow and capture refills them in place, so one snapshot is reused over samples.
+ * Arrays returned by getters are the internal ones; they may be longer than the counts and must not be modified.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class SampleSnapshot {
+    private int puNum = 0;                          // number of PUs
+    private int purNum = 0;                         // number of PURs of all PUs
+    private final BitSet puOn = new BitSet();       // ON PUs
+    private double[] puPower = new double[0];       // PUs' power(dB)
+    private int[] purOffset = new int[1];           // index of the first PUR of each PU; purOffset[puNum] = purNum
+    private double[] purCapacity = new double[0];   // PURs' interference capacity(dB); NaN until it is set
+
+    /**
+     * Copy ON flags and power of PUs and lay out their PURs; capacities are NaN until set.
+     * @param pus array of PUs
+     * @since 1.0*/
+    public void capture(PU[] pus){
+        this.puNum = pus.length;
+        if (this.puPower.length < this.puNum)
+            this.puPower = new double[this.puNum];
+        if (this.purOffset.length < this.puNum + 1)
+            this.purOffset = new int[this.puNum + 1];
+        this.puOn.clear();
+        int pur = 0;
+        for (int i = 0; i < this.puNum; i++) {
+            PU pu = pus[i];
+            this.puPower[i] = pu.getTx().getPower();
+            if (pu.isON())
+                this.puOn.set(i);
+            this.purOffset[i] = pur;
+            pur += pu.getPurs().length;
+        }
+        this.purOffset[this.puNum] = pur;
+        this.purNum = pur;
+        if (this.purCapacity.length < this.purNum)
+            this.purCapacity = new double[this.purNum];
+        Arrays.fill(this.purCapacity, 0, this.purNum, Double.NaN);
+    }
+
+    /**
+     * Set the interference capacity of a PUR.
+     * @param pur index of the PUR in the snapshot(column of the path-loss matrix)
+     * @param capacity interference capacity(dB)
+     * @since 1.0*/
+    public void setCapacity(int pur, double capacity) { this.purCapacity[pur] = capacity; }
+
+    /**@return true if PU i was ON at capture time*/
+    public boolean isOn(int puIdx) { return puOn.get(puIdx); }
+
+    public BitSet getPuOn() { return puOn; }
+
+    public int getPuNum() { return puNum; }
+
+    public int getPurNum() { return purNum; }
+
+    public double[] getPuPower() { return puPower; }
+
+    public int[] getPurOffset() { return purOffset; }
+
+    public double[] getPurCapacity() { return purCapacity; }
+}
@@ -0,0 +1,122 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Writer of one kind of sample file(pu, sensor, max, ...).
+ * A sample is given both as a text line and as a record filler; each writer only calls the one it needs so text
+ * writers do not fill records and binary writers do not format numbers.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public interface SampleWriter extends Closeable {
+    /**Output format of sample files.*/
+    enum Format{
+        TEXT(".txt"),       // comma-separated lines
+        BINARY(".bin"),     // BinarySampleWriter's little-endian records
+        QUANTIZED(".qbin"); // QuantizedSampleWriter's delta-encoded quantized values, in blocks
+
+        private final String extension;   // file name extension
+
+        Format(String extension){ this.extension = extension; }
+
+        public String getExtension() { return extension; }
+    }
+
+    /**Compression of sample files' bytes; binary files' header is not compressed.*/
+    enum Compression{
+        NONE("", ""),
+        GZIP(".gz", "z");   // BlockGzipChannel's independent GZIP members of at least a block size each
+
+        private final String textExtension;     // appended to TEXT's extension; the whole file is compressed
+        private final String headerExtension;   // appended to BINARY's and QUANTIZED's extension; their raw header
+                                                // comes first, so ".gz" would name a file GZIP readers cannot read
+
+        Compression(String textExtension, String headerExtension){
+            this.textExtension = textExtension;
+            this.headerExtension = headerExtension;
+        }
+
+        /**
+         * @param format format of the file
+         * @return extension appended to the format's one(e.g. ".txt.gz", ".binz", ".qbinz")
+         * @since 1.0*/
+        public String getExtension(Format format) {
+            return format == Format.TEXT ? textExtension : headerExtension;
+        }
+    }
+
+    /**
+     * Write one sample.
+     * @param line text line of the sample
+     * @param record fills a(cleared) record with the sample's values
+     * @throws IOException if writing fails
+     * @since 1.0*/
+    void write(Supplier<String> line, Consumer<SampleRecord> record) throws IOException;
+
+    /**
+     * Leave out the current sample(e.g. it failed or is not valid for this file). Stream writers write nothing;
+     * writers with a slot per sample leave the slot empty.
+     * @throws IOException if writing fails
+     * @since 1.0*/
+    default void skip() throws IOException {}
+
+    /**
+     * @return format of the writer; TEXT writers use sample lines, BINARY writers use records
+     * @since 1.0*/
+    Format getFormat();
+
+    /**
+     * Open a writer of the given format.
+     * @param file file to be created(overwritten)
+     * @param format output format
+     * @param schema description of the columns; kept in binary files' header
+     * @return a new writer
+     * @throws IOException if the file cannot be created
+     * @since 1.0*/
+    static SampleWriter open(File file, Format format, String schema) throws IOException {
+        return open(file, format, Compression.NONE, 0, schema);
+    }
+
+    /**
+     * Open a writer of the given format and compression.
+     * @param file file to be created(overwritten)
+     * @param format output format
+     * @param compression compression of the file's bytes
+     * @param blockSize bytes of a GZIP member or a QUANTIZED block(at least); not used otherwise
+     * @param schema description of the columns; kept in binary files' header
+     * @return a new writer
+     * @throws IOException if the file cannot be created
+     * @since 1.0*/
+    static SampleWriter open(File file, Format format, Compression compression, int blockSize, String schema)
+            throws IOException {
+        return switch (format) {
+            case TEXT -> compression == Compression.NONE ? new TextSampleWriter(file) :
+                    new TextSampleWriter(compressed(FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), compression, blockSize));
+            case BINARY -> new BinarySampleWriter(file.toPath(), schema, compression, blockSize);
+            case QUANTIZED -> new QuantizedSampleWriter(file.toPath(), schema, compression, blockSize);
+        };
+    }
+
+    /**
+     * Wrap a channel with a compression.
+     * @param channel channel of the file
+     * @param compression compression of the bytes written from now on
+     * @param blockSize bytes of a GZIP member(at least)
+     * @return channel bytes should be written to
+     * @since 1.0*/
+    static WritableByteChannel compressed(WritableByteChannel channel, Compression compression, int blockSize){
+        if (compression == Compression.GZIP)
+            return new BlockGzipChannel(channel, blockSize);
+        return channel;
+    }
+}
@@ -0,0 +1,233 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Writer stage separating sample computation from disk I/O.
+ * Compute workers write to wrapped SampleWriters(wrap()); a sample is turned into a line or a record(whatever the
+ * target writer uses) and put in a bounded queue. Writer threads take samples in batches and write them to their
+ * targets. A worker blocks when the queue is full(backpressure), so slow disks slow down computation instead of
+ * filling memory.
+ * All samples of a target go to the same writer thread, so they are written in order.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class SampleWriterPipeline implements Closeable {
+    private static final int BATCH_SIZE = 256;              // most samples a writer thread takes at once
+    private static final Task STOP = new Task(null, null, null, Task.Type.CLOSE);   // ends a writer thread
+
+    private final List<ArrayBlockingQueue<Task>> queues;     // one queue per writer thread
+    private final Set<SampleWriter> openTargets = ConcurrentHashMap.newKeySet();   // wrapped and not closed yet
+    private final Thread[] writerThreads;
+    private final AtomicInteger nextQueue = new AtomicInteger(0);   // queue of the next wrapped target
+    private final AtomicReference<IOException> failure = new AtomicReference<>(null);  // first writing failure
+    private boolean closed = false;
+
+    // metrics
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder producerWaits = new LongAdder();        // number of times a worker found a queue full
+    private final LongAdder producerWaitNanos = new LongAdder();    // time workers were blocked
+    private final LongAdder writtenSamples = new LongAdder();
+
+    // a sample, skip or close of a target
+    private static class Task {
+        enum Type {WRITE, SKIP, CLOSE}
+
+        private final SampleWriter target;
+        private final String line;          // for TEXT targets
+        private final SampleRecord record;  // for BINARY targets
+        private final Type type;
+
+        private Task(SampleWriter target, String line, SampleRecord record, Type type){
+            this.target = target;
+            this.line = line;
+            this.record = record;
+            this.type = type;
+        }
+    }
+
+    /**
+     * SampleWriterPipeline constructor; starts writer threads.
+     * @param writerThreads number of writer threads
+     * @param queueCapacity number of samples each writer thread's queue holds
+     * @since 1.0*/
+    public SampleWriterPipeline(int writerThreads, int queueCapacity){
+        super();
+        if (writerThreads < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("Number of writer threads and queue capacity should be positive.");
+        this.queues = new ArrayList<>(writerThreads);
+        this.writerThreads = new Thread[writerThreads];
+        for (int i = 0; i < writerThreads; i++) {
+            ArrayBlockingQueue<Task> queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.queues.add(queue);
+            this.writerThreads[i] = new Thread(() -> drain(queue), "sample-writer-" + i);
+            this.writerThreads[i].start();
+        }
+    }
+
+    /**
+     * Wrap a writer so its samples are written by a writer thread. Closing the returned writer closes target once
+     * its queued samples are written, even after a writing failure; targets that were not closed are closed by
+     * close().
+     * @param target writer to be used only by the writer thread from now on
+     * @return writer to be used by a compute worker
+     * @since 1.0*/
+    public SampleWriter wrap(SampleWriter target){
+        ArrayBlockingQueue<Task> queue = this.queues.get(Math.floorMod(this.nextQueue.getAndIncrement(),
+                this.queues.size()));
+        this.openTargets.add(target);
+        return new SampleWriter() {
+            @Override
+            public void write(Supplier<String> line, Consumer<SampleRecord> record) throws IOException {
+                if (target.getFormat() == Format.TEXT)
+                    put(queue, new Task(target, line.get(), null, Task.Type.WRITE), true);
+                else {
+                    SampleRecord sampleRecord = new SampleRecord();    // owned by the queue from now on
+                    record.accept(sampleRecord);
+                    put(queue, new Task(target, null, sampleRecord, Task.Type.WRITE), true);
+                }
+            }
+
+            @Override
+            public void skip() throws IOException { put(queue, new Task(target, null, null, Task.Type.SKIP), true); }
+
+            @Override
+            public Format getFormat() { return target.getFormat(); }
+
+            @Override
+            public void close() throws IOException {    // queued even after a failure, so the file is closed
+                put(queue, new Task(target, null, null, Task.Type.CLOSE), false);
+                if (failure.get() != null)
+                    throw new IOException("Writing samples failed.", failure.get());
+            }
+        };
+    }
+
+    /**
+     * Write all queued samples, close their targets and stop writer threads. Targets whose wrapped writer was never
+     * closed(e.g. a worker failed) are closed here once writer threads are stopped.
+     * @throws IOException if writing a sample or closing a target failed
+     * @since 1.0*/
+    @Override
+    public void close() throws IOException {
+        if (this.closed)
+            return;
+        this.closed = true;
+        try {
+            for (ArrayBlockingQueue<Task> queue : this.queues)
+                queue.put(STOP);
+            for (Thread writerThread : this.writerThreads)
+                writerThread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for writer threads.", e);
+        }
+        finally {
+            closeOpenTargets();
+        }
+        if (this.failure.get() != null)
+            throw this.failure.get();
+    }
+
+    // close targets left open; only when no writer thread is running, since targets belong to writer threads
+    private void closeOpenTargets(){
+        for (Thread writerThread : this.writerThreads)
+            if (writerThread.isAlive())
+                return;     // interrupted while waiting; writer threads close targets of queued CLOSE tasks
+        for (SampleWriter target : this.openTargets)
+            run(new Task(target, null, null, Task.Type.CLOSE));
+    }
+
+    /**@return number of samples waiting in queues*/
+    public int getQueueDepth(){
+        int depth = 0;
+        for (ArrayBlockingQueue<Task> queue : this.queues)
+            depth += queue.size();
+        return depth;
+    }
+
+    /**@return largest number of samples seen waiting in a queue*/
+    public long getMaxQueueDepth() { return maxQueueDepth.get(); }
+
+    /**@return number of times a worker was blocked by a full queue*/
+    public long getProducerWaits() { return producerWaits.sum(); }
+
+    /**@return total time(ms) workers were blocked by full queues*/
+    public long getProducerWaitMillis() { return producerWaitNanos.sum() / 1_000_000; }
+
+    /**@return number of samples written so far*/
+    public long getWrittenSamples() { return writtenSamples.sum(); }
+
+    // enqueue a task; blocks while the queue is full. With failFast, nothing is queued after a writing failure
+    private void put(ArrayBlockingQueue<Task> queue, Task task, boolean failFast) throws IOException {
+        if (failFast && this.failure.get() != null)  // instead of computing samples that cannot be written
+            throw new IOException("Writing samples failed.", this.failure.get());
+        if (!queue.offer(task)) {
+            this.producerWaits.increment();
+            long waitBegin = System.nanoTime();
+            try {
+                queue.put(task);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the writer queue.", e);
+            }
+            this.producerWaitNanos.add(System.nanoTime() - waitBegin);
+        }
+        this.maxQueueDepth.accumulate(queue.size());
+    }
+
+    // writer thread: write tasks of a queue, in batches, until STOP
+    private void drain(ArrayBlockingQueue<Task> queue){
+        ArrayList<Task> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                for (Task task : batch) {
+                    if (task == STOP)
+                        return;
+                    run(task);
+                }
+                batch.clear();
+            }
+        }
+        catch (InterruptedException e) {
+            this.failure.compareAndSet(null, new IOException("Writer thread was interrupted.", e));
+        }
+    }
+
+    // run a task; a failure is kept and reported to workers and close()
+    private void run(Task task){
+        try {
+            switch (task.type) {
+                case WRITE -> {
+                    task.target.write(() -> task.line, record -> record.addAll(task.record));
+                    this.writtenSamples.increment();
+                }
+                case SKIP -> task.target.skip();
+                case CLOSE -> {
+                    this.openTargets.remove(task.target);   // not retried if closing fails
+                    task.target.close();
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            this.failure.compareAndSet(null, e instanceof IOException ioException ? ioException : new IOException(e));
+        }
+    }
+}
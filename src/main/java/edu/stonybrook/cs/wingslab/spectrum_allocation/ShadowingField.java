@@ -0,0 +1,203 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.Element;
+import edu.stonybrook.cs.wingslab.commons.Point2;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Spatially correlated shadowing noise over the cells of the field, generated once per sample. Path-loss of a pair
+ * then gets the same noise however many times it is computed in the sample, and looking it up is two array reads
+ * instead of a random draw per call.
+ * The field is a Gaussian random field with mean 0, std and exponential correlation exp(-distance /
+ * correlationDistance) between cells. It is generated by circulant embedding on a torus of at least twice the field
+ * in each direction(sizes are powers of two): the square root of the covariance's spectrum is computed once by FFT and
+ * each generation is one 2D FFT of complex white noise shaped by it. The real and imaginary parts of the result are
+ * two independent fields, so every other call of next() only copies the spare one.
+ * Noise of a pair is (field(tx) + field(rx)) / sqrt(2): symmetric, std for distant pairs and up to std * sqrt(2) for
+ * pairs closer than the correlation distance. Locations are rounded to cells and wrap around the torus.
+ * A field is used by one thread; copies share the spectrum.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class ShadowingField {
+    private static final double INVERSE_SQRT2 = 1 / Math.sqrt(2);
+
+    private final int rows, columns;                // torus size; powers of two
+    private final double std;
+    private final double correlationDistance;       // cells
+    private final double[] amplitude;               // sqrt(spectrum of covariance / cells) * std; shared by copies
+    private final double[] real, imaginary;         // FFT workspace; real part is the current field after next()
+    private final double[] field;                   // current field, row-major [x * columns + y]
+    private boolean hasSpare = false;               // imaginary holds a field that was not used yet
+    private final double[] columnReal, columnImaginary;    // workspace of column transforms
+
+    /**
+     * ShadowingField constructor; computes the spectrum. The field is 0 until next() is called.
+     * @param length cells of the field along x
+     * @param width cells of the field along y
+     * @param std std(dB) of the field
+     * @param correlationDistance distance(cells) at which correlation drops to 1/e
+     * @since 1.0*/
+    public ShadowingField(int length, int width, double std, double correlationDistance){
+        super();
+        if (length < 1 || width < 1)
+            throw new IllegalArgumentException("Field should have at least one cell.");
+        if (std < 0 || correlationDistance <= 0)
+            throw new IllegalArgumentException("Std should not be negative and correlation distance should be " +
+                    "positive.");
+        this.rows = Integer.highestOneBit(Math.max(2 * length - 1, 1)) << 1;
+        this.columns = Integer.highestOneBit(Math.max(2 * width - 1, 1)) << 1;
+        this.std = std;
+        this.correlationDistance = correlationDistance;
+        this.real = new double[this.rows * this.columns];
+        this.imaginary = new double[this.rows * this.columns];
+        this.field = new double[this.rows * this.columns];
+        this.columnReal = new double[this.rows];
+        this.columnImaginary = new double[this.rows];
+        // first row of the circulant covariance: correlation of cell (0, 0) and (x, y) on the torus
+        for (int x = 0; x < this.rows; x++)
+            for (int y = 0; y < this.columns; y++)
+                this.real[x * this.columns + y] = Math.exp(-Math.hypot(Math.min(x, this.rows - x),
+                        Math.min(y, this.columns - y)) / correlationDistance);
+        fft2(this.real, this.imaginary);
+        this.amplitude = new double[this.rows * this.columns];
+        double cells = this.rows * this.columns;
+        for (int i = 0; i < this.amplitude.length; i++)     // tiny negative eigenvalues come from rounding
+            this.amplitude[i] = Math.sqrt(Math.max(this.real[i], 0.0) / cells) * std;
+        Arrays.fill(this.real, 0.0);
+        Arrays.fill(this.imaginary, 0.0);
+    }
+
+    /**
+     * ShadowingField copy constructor for another thread; the spectrum is shared, the field is not.
+     * @param shadowingField field to be copied
+     * @since 1.0*/
+    public ShadowingField(ShadowingField shadowingField){
+        super();
+        this.rows = shadowingField.rows;
+        this.columns = shadowingField.columns;
+        this.std = shadowingField.std;
+        this.correlationDistance = shadowingField.correlationDistance;
+        this.amplitude = shadowingField.amplitude;
+        this.real = new double[this.rows * this.columns];
+        this.imaginary = new double[this.rows * this.columns];
+        this.field = new double[this.rows * this.columns];
+        this.columnReal = new double[this.rows];
+        this.columnImaginary = new double[this.rows];
+    }
+
+    /**
+     * Move to the field of a new sample: the spare field of the previous generation if there is one, otherwise a new
+     * pair of fields drawn from random. Call discardSpare() first if the field should only depend on random(e.g.
+     * seeded samples that may run on any thread).
+     * @param random random stream of the sample
+     * @since 1.0*/
+    public void next(SplittableRandom random){
+        if (this.hasSpare) {
+            System.arraycopy(this.imaginary, 0, this.field, 0, this.field.length);
+            this.hasSpare = false;
+            return;
+        }
+        for (int i = 0; i < this.amplitude.length; i++) {
+            // Box-Muller: two independent standard normal values
+            double radius = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * this.amplitude[i];
+            double angle = 2 * Math.PI * random.nextDouble();
+            this.real[i] = radius * Math.cos(angle);
+            this.imaginary[i] = radius * Math.sin(angle);
+        }
+        fft2(this.real, this.imaginary);
+        System.arraycopy(this.real, 0, this.field, 0, this.field.length);
+        this.hasSpare = true;
+    }
+
+    /**
+     * Forget the spare field; the next call of next() draws a new pair.
+     * @since 1.0*/
+    public void discardSpare() { this.hasSpare = false; }
+
+    /**
+     * Value of the field at a cell.
+     * @param x x of the cell; rounded and wrapped around the torus
+     * @param y y of the cell; rounded and wrapped around the torus
+     * @return noise(dB)
+     * @since 1.0*/
+    public double at(double x, double y){
+        return this.field[Math.floorMod(Math.round(x), this.rows) * this.columns +
+                Math.floorMod(Math.round(y), this.columns)];
+    }
+
+    /**
+     * Shadowing noise of a pair in the current sample.
+     * @param tx transmitter's element
+     * @param rx receiver's element
+     * @param scale meters of a cell in elements' locations(1 if they are in cells)
+     * @return noise(dB) to be added to the mean path-loss
+     * @since 1.0*/
+    public double noise(Element tx, Element rx, double scale){
+        Point2 txLocation = tx.getLocation().getCartesian();
+        Point2 rxLocation = rx.getLocation().getCartesian();
+        return (at(txLocation.getX() / scale, txLocation.getY() / scale) +
+                at(rxLocation.getX() / scale, rxLocation.getY() / scale)) * INVERSE_SQRT2;
+    }
+
+    public double getStd() { return std; }
+
+    public double getCorrelationDistance() { return correlationDistance; }
+
+    // in-place 2D FFT(forward, not normalized) of a rows x columns row-major complex array
+    private void fft2(double[] re, double[] im){
+        for (int x = 0; x < this.rows; x++)
+            fft(re, im, x * this.columns, this.columns);
+        for (int y = 0; y < this.columns; y++) {
+            for (int x = 0; x < this.rows; x++) {
+                this.columnReal[x] = re[x * this.columns + y];
+                this.columnImaginary[x] = im[x * this.columns + y];
+            }
+            fft(this.columnReal, this.columnImaginary, 0, this.rows);
+            for (int x = 0; x < this.rows; x++) {
+                re[x * this.columns + y] = this.columnReal[x];
+                im[x * this.columns + y] = this.columnImaginary[x];
+            }
+        }
+    }
+
+    // in-place iterative radix-2 FFT(forward, not normalized) of n(power of two) values from offset
+    static void fft(double[] re, double[] im, int offset, int n){
+        for (int i = 1, j = 0; i < n; i++) {       // bit-reversal permutation
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1)
+                j ^= bit;
+            j ^= bit;
+            if (i < j) {
+                double t = re[offset + i];
+                re[offset + i] = re[offset + j];
+                re[offset + j] = t;
+                t = im[offset + i];
+                im[offset + i] = im[offset + j];
+                im[offset + j] = t;
+            }
+        }
+        for (int length = 2; length <= n; length <<= 1) {
+            double angle = -2 * Math.PI / length;
+            double stepRe = Math.cos(angle), stepIm = Math.sin(angle);
+            for (int start = 0; start < n; start += length) {
+                double wRe = 1, wIm = 0;
+                for (int k = 0; k < length / 2; k++) {
+                    int a = offset + start + k, b = a + length / 2;
+                    double tRe = re[b] * wRe - im[b] * wIm;
+                    double tIm = re[b] * wIm + im[b] * wRe;
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+                    double nextRe = wRe * stepRe - wIm * stepIm;
+                    wIm = wRe * stepIm + wIm * stepRe;
+                    wRe = nextRe;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.*;
+
+/**
+ * Read-only world of a run(field shape, sensor locations, PURs' relative locations) shared by all worker threads.
+ * Workers used to deep-copy everything, so memory grew with the number of threads. Now each worker only gets the
+ * state that changes per sample: PU transmitters(location, power, ON), PURs' and sensors' received powers. Those
+ * objects point to the shared elements, which nobody modifies once the run starts.
+ * Propagation models are still copied for each worker: Splat keeps its statistics per instance(its path-loss
+ * dictionary is static and shared already) and a noisy LogDistancePM draws from its own random source.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class SharedGeometry {
+    private final Shape shape;                  // field shape; shared as it is
+    private final PU[] pus;                     // PUs whose PURs' elements are shared
+    private final SpectrumSensor[] sss;         // sensors whose elements are shared; may be null
+
+    /**
+     * SharedGeometry constructor; given objects must not be modified once workers are created.
+     * @param shape shape of the field
+     * @param pus PUs of the run
+     * @param sss sensors of the run; null if there is none
+     * @since 1.0*/
+    public SharedGeometry(Shape shape, PU[] pus, SpectrumSensor[] sss){
+        super();
+        this.shape = shape;
+        this.pus = pus;
+        this.sss = sss;
+    }
+
+    /**
+     * PUs for a worker; each has its own transmitter and PURs' received powers, PURs' locations are shared.
+     * @return new PUs
+     * @since 1.0*/
+    public PU[] workerPUs(){
+        PU[] workerPUs = new PU[this.pus.length];
+        for (int puIdx = 0; puIdx < this.pus.length; puIdx++)
+            workerPUs[puIdx] = new PU(this.pus[puIdx], true);
+        return workerPUs;
+    }
+
+    /**
+     * Sensors for a worker; each has its own received power, locations are shared.
+     * @return new sensors; null if there is no sensor
+     * @since 1.0*/
+    public SpectrumSensor[] workerSensors(){
+        return workerSensors(this.sss);
+    }
+
+    /**
+     * Sensors for a worker sharing locations of the given sensors(e.g. interpolated ones).
+     * @param sensors sensors whose elements are shared; they must not be modified afterwards
+     * @return new sensors; null if sensors is null
+     * @since 1.0*/
+    public static SpectrumSensor[] workerSensors(SpectrumSensor[] sensors){
+        if (sensors == null)
+            return null;
+        SpectrumSensor[] workerSensors = new SpectrumSensor[sensors.length];
+        for (int ssIdx = 0; ssIdx < sensors.length; ssIdx++)
+            workerSensors[ssIdx] = new SpectrumSensor(new RX(sensors[ssIdx].getRx().getElement()),
+                    sensors[ssIdx].getCost(), sensors[ssIdx].getStd());
+        return workerSensors;
+    }
+
+    /**
+     * Propagation model for a worker.
+     * @param propagationModel model of the run
+     * @return a copy of propagationModel; state of decorators(store, cache) is shared
+     * @throws IllegalArgumentException if the model cannot be copied
+     * @since 1.0*/
+    public static PropagationModel workerPropagationModel(PropagationModel propagationModel){
+        if (propagationModel instanceof PropagationModelDecorator decorator)
+            return decorator.wrap(workerPropagationModel(decorator.getModel()));
+        else if (propagationModel instanceof DistanceTablePM distanceTablePM)
+            return new DistanceTablePM(distanceTablePM);    // shares the table; has its own noise stream
+        else if (propagationModel instanceof LogDistancePM logDistancePM)
+            return new LogDistancePM(logDistancePM);
+        else if (propagationModel instanceof Splat splat)
+            return new Splat(splat);
+        throw new IllegalArgumentException("Constructor is not valid.");
+    }
+
+    /**@return shape of the field; shared by all workers*/
+    public Shape getShape() { return shape; }
+}
@@ -3,18 +3,17 @@ package edu.stonybrook.cs.wingslab.spectrum_allocation;
 import edu.stonybrook.cs.wingslab.commons.*;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 
 /**@author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
@@ -31,6 +30,17 @@ public class SpectrumAllocationApp implements Runnable{
         DYNAMIC             // pu location and power change randomly
     }
     private static String DATA_DIR = "resources/data/";
+    // format of sample files
+    private static SampleWriter.Format OUTPUT_FORMAT = SampleWriter.Format.TEXT;
+    private static SampleWriter.Compression OUTPUT_COMPRESSION = SampleWriter.Compression.NONE;
+    private static int OUTPUT_BLOCK_SIZE = 1 << 20;     // bytes of a compressed or quantized block(at least)
+    // columns of each sample file(kept in binary files' header); (x,y,power) is repeated for each PU/SU
+    static final String SU_SCHEMA = "suNum,suNum*(x,y,power),allowed";
+    static final String PU_SCHEMA = "puNum,puNum*(x,y,power)," + SU_SCHEMA;
+    static final String SENSOR_SCHEMA = "ssNum,ssNum*power(none if max power is -inf)," + SU_SCHEMA;
+    static final String MAX_SCHEMA = "x,y,maxPower";
+    static final String INTER_SCHEMA = "interpolatedSensors," + SU_SCHEMA;
+    static final String SU_MAX_TOTAL_SCHEMA = "suNum,suNum*(x,y,optimalPower) or -inf";
     //directory where the results should be written
     private final int sampleCount;
     // number of samples to be created. in case of SPLAT!, it might be less due to exceptions
@@ -39,8 +49,8 @@ public class SpectrumAllocationApp implements Runnable{
     // will be used when there are multiple threads to write some useful information if a hash dictionary is given
     private final String fileAppendix;
     // will be used to save results; user might need it to merge multiple thread outputs
-    private static ConcurrentHashMap<Integer, HashMap<String, Double>> resultDict;
-    // some statistics will be written in this dictionary
+    private final SampleMetrics metrics;
+    // statistics of the run, shared by all apps and updated on every sample
     private final PropagationModel propagationModel;
     // propagation model that will be used
     private final PU[] pus;
@@ -72,6 +82,32 @@ public class SpectrumAllocationApp implements Runnable{
     private final double noiseFloor;
     // noise floor level (dB)
     private final PUType puType;
+    // chunks of samples shared by all workers; if null, this app generates its own sampleCount samples
+    private SampleChunks sampleChunks = null;
+    // files, by kind(pu, sensor, max, interSensor, syntheticPu, suMaxTotal), that samples are written into directly
+    private Map<String, PreallocatedSampleFile> preallocatedFiles = null;
+    // writer stage samples are handed to; if null, this app writes its samples itself
+    private SampleWriterPipeline writerPipeline = null;
+    // counter of a central progress reporter; if null, this app prints its own progress bar
+    private ProgressReporter.Counter progress = null;
+    // metrics updated on every sample; looked up once
+    private final LongAdder samplesCounter;
+    private final LongAdder failedSamplesCounter;
+    private final LongAdder acceptedCounter;
+    private final LongAdder susCounter;
+    private final DoubleAdder susDataRateSum;
+    private final SampleMetrics.Histogram sampleTime;
+    private final SampleMetrics.SplatStatistics splatStatistics;
+    // seed of the dataset; if set, sample i draws only from SampleRandom.forSample(seed, i)
+    private Long seed = null;
+    // random stream of the current sample(or of the whole app when there is no seed)
+    private SplittableRandom random = new SplittableRandom();
+    // path-loss lower bound of the propagation model(if known); lets SpectrumManager prune PURs
+    private PathLossLowerBound pathLossLowerBound = null;
+    // path-loss of a pair is the same in every sample(no noise drawn per call); static PUs' values can then be kept
+    private boolean deterministicPathLoss = false;
+    // correlated shadowing noise of the current sample added to the model's path-loss; null if the model has its own
+    private ShadowingField shadowing = null;
     // progress bar length
     private final static int progressBarLength = 50;
     // sensors' list to be interpolated
@@ -94,7 +130,7 @@ public class SpectrumAllocationApp implements Runnable{
      * SpectrumAllocationApp constructor. Support interpolation.
      * @param sampleCount number of sample to be generated
      * @param fileAppendix an appendix that will be added to results file if provided
-     * @param resultDict a hashMap that will be used to write statistics
+     * @param metrics statistics of the run; shared by all apps
      * @param propagationModel propagation model
      * @param pus array of PUs
      * @param sss array of SpectrumSensors
@@ -118,7 +154,7 @@ public class SpectrumAllocationApp implements Runnable{
      * @param noiseFloor noise floor
      * @param PULocationProbabilityBased boolean indicate if PU locations are created randomly or based on a probability map*/
     public SpectrumAllocationApp(int sampleCount, String fileAppendix,
-                                 ConcurrentHashMap<Integer, HashMap<String, Double>> resultDict,
+                                 SampleMetrics metrics,
                                  PropagationModel propagationModel, PU[] pus, SpectrumSensor[] sss, Shape shape,
                                  int cellSize, int minSuNum, int maxSuNum, double minSuPower, double maxSuPower,
                                  double suHeight, int minPuNum, int maxPuNum, double minPuPower, double maxPuPower,
@@ -130,7 +166,14 @@ public class SpectrumAllocationApp implements Runnable{
         this.sampleCount = sampleCount;
         this.threadId = SpectrumAllocationApp.threadNum++;
         this.fileAppendix = fileAppendix;
-        SpectrumAllocationApp.resultDict = resultDict;
+        this.metrics = metrics;
+        this.samplesCounter = metrics.counter(SampleMetrics.SAMPLES);
+        this.failedSamplesCounter = metrics.counter(SampleMetrics.FAILED_SAMPLES);
+        this.acceptedCounter = metrics.counter(SampleMetrics.ACCEPTED_SAMPLES);
+        this.susCounter = metrics.counter(SampleMetrics.SUS);
+        this.susDataRateSum = metrics.sum(SampleMetrics.SUS_DATA_RATE);
+        this.sampleTime = metrics.histogram(SampleMetrics.SAMPLE_TIME);
+        this.splatStatistics = new SampleMetrics.SplatStatistics(metrics);
         this.propagationModel = propagationModel;
         this.pus = pus;
         this.sss = sss;
@@ -170,7 +213,7 @@ public class SpectrumAllocationApp implements Runnable{
      * SpectrumAllocationApp constructor
      * @param sampleCount number of sample to be generated
      * @param fileAppendix an appendix that will be added to results file if provided
-     * @param resultDict a hashMap that will be used to write statistics
+     * @param metrics statistics of the run; shared by all apps
      * @param propagationModel propagation model
      * @param pus array of PUs
      * @param sss array of SpectrumSensors
@@ -188,13 +231,13 @@ public class SpectrumAllocationApp implements Runnable{
      * @param puType if PUs are static or dynamic
      * @param noiseFloor noiseFLoor*/
     public SpectrumAllocationApp(int sampleCount, String fileAppendix,
-                                 ConcurrentHashMap<Integer, HashMap<String, Double>> resultDict,
+                                 SampleMetrics metrics,
                                  PropagationModel propagationModel, PU[] pus, SpectrumSensor[] sss, Shape shape,
                                  int cellSize, int minSuNum, int maxSuNum, double minSuPower, double maxSuPower,
                                  double suHeight, int minPuNum, int maxPuNum, double minPuPower, double maxPuPower,
                                  PUType puType, double noiseFloor,
                                  boolean PULocationProbabilityBased) {
-        this(sampleCount, fileAppendix, resultDict, propagationModel, pus, sss, shape, cellSize, minSuNum,
+        this(sampleCount, fileAppendix, metrics, propagationModel, pus, sss, shape, cellSize, minSuNum,
                 maxSuNum, minSuPower,  maxSuPower, suHeight, minPuNum, maxPuNum, minPuPower, maxPuPower, puType,
                 null, 0, null, false,
                 0.0, noiseFloor, PULocationProbabilityBased, new int[]{});
@@ -214,116 +257,164 @@ public class SpectrumAllocationApp implements Runnable{
      */
     @Override
     public void run() {
-        int acceptedNum = 0;            // number of accepted su request
-        String fileNameFormat = String.format("_%1$s_%2$d.txt", fileAppendix != null ? fileAppendix : "", this.threadId);
-        // this format would be added to file name
-        File puFile = new File(SpectrumAllocationApp.DATA_DIR + "/pu" + fileNameFormat);  // pu file
-        File ssFile = new File(SpectrumAllocationApp.DATA_DIR + "/sensor" + fileNameFormat); // sensor
-        File maxFile = new File(SpectrumAllocationApp.DATA_DIR + "/max" + fileNameFormat);  // max power values
-        File interFile = new File(SpectrumAllocationApp.DATA_DIR + "/interSensor" +
-                fileNameFormat);  // interpolation file
-        File syntheticFile = new File(SpectrumAllocationApp.DATA_DIR + "/syntheticPu" +
-                fileNameFormat);    // synthetic pu file
-        File suMaxTotalFile = new File(SpectrumAllocationApp.DATA_DIR + "/suMaxTotal" + fileNameFormat);
-
-        int numberOfTotalSus = 0;
-        double susDataRate = 0.0;
-
-        // opening files
-        try(PrintWriter puWriter = new PrintWriter(puFile);
-            PrintWriter ssWriter = new PrintWriter(ssFile);
-            PrintWriter maxWriter = new PrintWriter(maxFile);
-            PrintWriter interWriter = (this.interSss == null ? null : new PrintWriter(interFile));
-            PrintWriter syntheticWriter = (!this.puSyntheticSamples ? null : new PrintWriter(syntheticFile));
-            PrintWriter suTotWriter = new PrintWriter(suMaxTotalFile)){
-            SpectrumManager sm = new SpectrumManager(this.pus, null, this.sss, this.propagationModel,
-                    this.shape, this.cellSize, this.noiseFloor);
-
-            // init spectrum manager with fixed parameters; although pu information may change, the objects do not change
-
-            if(this.puType == PUType.STATIC && this.minSuNum == this.maxSuNum && this.minSuNum == 1)
-                sm.computeSUMAXPower(false);
-                // in case of STATIC PUs and when there is only one requesting, we just want to compute PUs power
-                // only once to speedup
-            long beginTime = System.currentTimeMillis();
-            for (int sample = 1; sample < this.sampleCount + 1; sample++){
+        long beginTime = System.currentTimeMillis();
+        SpectrumManager sm = createSpectrumManager(this.sss);
+
+        // init spectrum manager with fixed parameters; although pu information may change, the objects do not change
+
+        if(this.puType == PUType.STATIC && this.minSuNum == this.maxSuNum && this.minSuNum == 1)
+            sm.computeSUMAXPower(false);
+            // in case of STATIC PUs and when there is only one requesting, we just want to compute PUs power
+            // only once to speedup
+        if (this.sampleChunks == null)
+            runSamples(sm, 1, this.sampleCount + 1, String.format("_%1$s_%2$d" + getOutputExtension(),
+                    fileAppendix != null ? fileAppendix : "", this.threadId), beginTime);
+        else {
+            int[] chunk;
+            while ((chunk = this.sampleChunks.nextChunk()) != null)   // files are named after the chunk, not thread
+                sm = runSamples(sm, chunk[0] + 1, chunk[1] + 1, String.format("_%1$s_%2$s" + getOutputExtension(),
+                        fileAppendix != null ? fileAppendix : "", SampleChunks.chunkName(chunk[0])), beginTime);
+        }
+        if (this.progress == null)
+            System.out.println("");
+    }
+
+    // create a SpectrumManager for this app's PUs and given sensors
+    private SpectrumManager createSpectrumManager(SpectrumSensor[] sss){
+        SpectrumManager sm = new SpectrumManager(this.pus, null, sss, this.propagationModel,
+                this.shape, this.cellSize, this.noiseFloor);
+        // static PUs' path-loss values do not change unless the model draws noise per call
+        sm.setCrossSamplePathLoss(this.puType == PUType.STATIC && this.deterministicPathLoss);
+        sm.setPathLossLowerBound(this.pathLossLowerBound);
+        sm.setShadowing(this.shadowing);
+        return sm;
+    }
+
+    // generate samples [fromSample, toSample) into files ending with fileNameFormat; returns the SpectrumManager used
+    // last(a new one is created for each sample in case of variable-length sensors)
+    private SpectrumManager runSamples(SpectrumManager sm, int fromSample, int toSample, String fileNameFormat,
+                                       long beginTime){
+        // opening files: pu, sensor, max power values, interpolation, synthetic pu and su max total
+        try(SampleWriter puWriter = openWriter("pu", PU_SCHEMA, fileNameFormat, fromSample - 1);
+            SampleWriter ssWriter = openWriter("sensor", SENSOR_SCHEMA, fileNameFormat, fromSample - 1);
+            SampleWriter maxWriter = openWriter("max", MAX_SCHEMA, fileNameFormat, fromSample - 1);
+            SampleWriter interWriter = (this.interSss == null ? null :
+                    openWriter("interSensor", INTER_SCHEMA, fileNameFormat, fromSample - 1));
+            SampleWriter syntheticWriter = (!this.puSyntheticSamples ? null :
+                    openWriter("syntheticPu", PU_SCHEMA, fileNameFormat, fromSample - 1));
+            SampleWriter suTotWriter = openWriter("suMaxTotal", SU_MAX_TOTAL_SCHEMA, fileNameFormat,
+                    fromSample - 1)){
+            for (int sample = fromSample; sample < toSample; sample++){
+                long sampleBegin = System.nanoTime();
+                if (this.seed != null)
+                    this.random = SampleRandom.forSample(this.seed, sample - 1);
+                if (PropagationModelDecorator.unwrap(this.propagationModel) instanceof DistanceTablePM distanceTable)
+                    distanceTable.setRandom(this.random);   // noise of a seeded sample only depends on its stream
                 if (this.sss_counts.length > 0){
                     // TODO: fix hard-coded parameters
                     SpectrumSensor[] tmp_sss = SpectrumSensor.uniformSensorGenerator(
-                            sss_counts[ThreadLocalRandom.current().nextInt(sss_counts.length)], this.shape, 0.732,
+                            sss_counts[this.random.nextInt(sss_counts.length)], this.shape, 0.732,
                             0, 0);
-                    sm = new SpectrumManager(this.pus, null, tmp_sss, this.propagationModel,
-                            this.shape, this.cellSize, this.noiseFloor);
+                    sm = createSpectrumManager(tmp_sss);
                 }
                 sm.setSus(createSUs());
                 if (puType == PUType.DYNAMIC) {
                     this.createActivePU();  // create(it's not actual creating) new active PUs
                 }
+                if (this.shadowing != null) {
+                    if (this.seed != null)
+                        this.shadowing.discardSpare();  // field of a seeded sample only depends on its stream
+                    this.shadowing.next(this.random);
+                }
+                final SpectrumManager sampleSm = sm;    // sm is reassigned; writers' lambdas need a final one
                 try{
                     sm.computeSUMAXPower(this.puType == PUType.STATIC &&
                             this.minSuNum == this.maxSuNum && this.minSuNum == 1);
-                    suTotWriter.println(sm.computeSUsTotalMaxPower());
+                    suTotWriter.write(sampleSm::computeSUsTotalMaxPower, sampleSm::computeSUsTotalMaxPower);
                     if (sm.suRequestAccepted())
-                        acceptedNum++;
+                        this.acceptedCounter.increment();
                 }
                 catch (RuntimeException e){
                     e.printStackTrace();
+                    this.failedSamplesCounter.increment();
+                    this.samplesCounter.increment();
+                    if (this.progress != null)
+                        this.progress.increment();
+                    this.splatStatistics.update(this.propagationModel);
+                    for (SampleWriter writer : new SampleWriter[]{puWriter, ssWriter, maxWriter, interWriter,
+                            syntheticWriter, suTotWriter})
+                        if (writer != null)
+                            writer.skip();      // keeps writers with a slot per sample in step
                     continue;
                 }
-                puWriter.println(sm.pusSample());
-                ssWriter.println(sm.sssSample());
-                maxWriter.println(sm.maxPowerSample());
+                puWriter.write(sampleSm::pusSample, sampleSm::pusSample);
+                ssWriter.write(sampleSm::sssSample, sampleSm::sssSample);
+                maxWriter.write(sampleSm::maxPowerSample, sampleSm::maxPowerSample);
                 // interpolation
                 if (this.interSss != null) {
                     InterpolatedSpectrumSensor interpolatedSpectrumSensor =
                             new InterpolatedSpectrumSensor(this.sss, this.interSss, this.interpolationType,
                                     this.numberOfInterpolatedSensor, this.cellSize);
-                    interWriter.println(String.format("%s,%d,%s,%s", interpolatedSpectrumSensor, sm.getSus().length,
-                            sm.susInformation(), sm.suRequestAccepted() ? "1":"0"));
+                    interWriter.write(() -> String.format("%s,%d,%s,%s", interpolatedSpectrumSensor,
+                            sampleSm.getSus().length, sampleSm.susInformation(),
+                            sampleSm.suRequestAccepted() ? "1":"0"),
+                            record -> {
+                                record.addCsv(interpolatedSpectrumSensor.toString())   // values only known as text
+                                        .add(sampleSm.getSus().length);
+                                sampleSm.susInformation(record);
+                                record.add(sampleSm.suRequestAccepted() ? 1 : 0);
+                            });
                 }
                 // synthetic PU samples
                 if (this.puSyntheticSamples){
                     SyntheticPUs syntheticPUs = new SyntheticPUs(this.maxTransRadius, this.pus,
-                            sm.getMostRestrictivePuIdx(), this.minPuPower, this.cellSize);
+                            sm.getMostRestrictivePuIdx(), this.minPuPower, this.cellSize, this.random);
                     if (syntheticPUs.isValid())
-                        syntheticWriter.println(String.format("%s%d,%s,%s", syntheticPUs, sm.getSus().length,
-                                sm.susInformation(), sm.suRequestAccepted() ? "1":"0"));
+                        syntheticWriter.write(() -> String.format("%s%d,%s,%s", syntheticPUs,
+                                sampleSm.getSus().length, sampleSm.susInformation(),
+                                sampleSm.suRequestAccepted() ? "1":"0"),
+                                record -> {
+                                    syntheticPUs.toRecord(record);
+                                    record.add(sampleSm.getSus().length);
+                                    sampleSm.susInformation(record);
+                                    record.add(sampleSm.suRequestAccepted() ? 1 : 0);
+                                });
+                    else
+                        syntheticWriter.skip();
                 }
                 // SUS data rate
                 double[] tmpSusDataRate = sm.susDataRate();
-                for (double suDataRate: tmpSusDataRate){
-                    numberOfTotalSus++;
-                    susDataRate += suDataRate;
-                }
-                System.out.print(progressBar(sample, System.currentTimeMillis() - beginTime));
+                double sampleDataRate = 0.0;
+                for (double suDataRate: tmpSusDataRate)
+                    sampleDataRate += suDataRate;
+                this.susCounter.add(tmpSusDataRate.length);
+                this.susDataRateSum.add(sampleDataRate);
+                this.samplesCounter.increment();
+                this.sampleTime.record((System.nanoTime() - sampleBegin) / 1e6);
+                this.splatStatistics.update(this.propagationModel);
+                if (this.progress != null)
+                    this.progress.increment();
+                else if (this.sampleChunks == null)
+                    System.out.print(progressBar(sample, this.sampleCount, System.currentTimeMillis() - beginTime));
+                else
+                    System.out.print(progressBar(this.sampleChunks.sampleDone(), this.sampleChunks.getSampleCount(),
+                            System.currentTimeMillis() - beginTime));
             }
         }
-        catch(FileNotFoundException e){
+        catch(IOException e){
             e.printStackTrace();
             throw new RuntimeException(this.getClass().getSimpleName() + "Failed opening proper files");
         }
-        System.out.println("");
-        HashMap<String, Double> threadInfo = new HashMap<>();
-        threadInfo.put("Accepted Number", (double) acceptedNum);
-        threadInfo.put("Average Data Rate", susDataRate/(numberOfTotalSus * 1e6));
-        if (this.propagationModel instanceof Splat splat){
-
-            threadInfo.put("Fetch Number", (double) splat.getFetchNum());
-            threadInfo.put("Fetch Time", (double) splat.getFetchTime());
-            threadInfo.put("Execution Number", (double) splat.getExecNum());
-            threadInfo.put("Execution Time", (double) splat.getExecTime());
-        }
-        SpectrumAllocationApp.resultDict.put(this.threadId, threadInfo);
-
+        return sm;
     }
 
     // in case DYNAMIC pus, new set of PU will be active and random power and location will be generated
     private void createActivePU(){
         ArrayList<Integer> allPusIdx = new ArrayList<>();
-        int numPus = ThreadLocalRandom.current().nextInt(minPuNum, maxPuNum + 1);
+        int numPus = this.random.nextInt(minPuNum, maxPuNum + 1);
         Point[] puPoints;
         if (!PULocationProbabilityBased)
-            puPoints = this.shape.points(numPus);
+            puPoints = points(numPus);
         else {
             if (this.shape.getClass() != Rectangle.class & this.shape.getClass() != Square.class)
                 throw new RuntimeException("Shape not supported for PU probability-based selection");
@@ -334,47 +425,67 @@ public class SpectrumAllocationApp implements Runnable{
             this.pus[i].setON(false); // disabling all
             allPusIdx.add(i);
         }
-        Collections.shuffle(allPusIdx);
+        SampleRandom.shuffle(allPusIdx, this.random);
         for (int i = 0; i < numPus; i++) {
             this.pus[allPusIdx.get(i)].setON(true); // enabling one by one
-            this.pus[allPusIdx.get(i)].getTx().getElement().setLocation(puPoints[i]);
-            this.pus[allPusIdx.get(i)].getTx().setPower(ThreadLocalRandom.current().nextDouble(
+            this.pus[allPusIdx.get(i)].setLocation(puPoints[i]);
+            this.pus[allPusIdx.get(i)].getTx().setPower(this.random.nextDouble(
                     this.minPuPower, this.maxPuPower + Double.MIN_VALUE));
         }
     }
 
     // creating random sus
     private SU[] createSUs(){
-        int susNum = ThreadLocalRandom.current().nextInt(this.minSuNum, this.maxSuNum + 1);
-        Point[] susPoint = this.shape.points(susNum);
+        int susNum = this.random.nextInt(this.minSuNum, this.maxSuNum + 1);
+        Point[] susPoint = points(susNum);
         SU[] sus = new SU[susNum];
         Rectangle rectangle = (Rectangle)this.shape;
         for (int i = 0; i < susNum - 1; i++)
             sus[i] = new SU(new TX(new Element(susPoint[i], this.suHeight), Double.NEGATIVE_INFINITY),
-                    new Element(susPoint[i].add(new Point(new PolarPoint(ThreadLocalRandom.current().nextDouble(
+                    new Element(susPoint[i].add(new Point(new PolarPoint(this.random.nextDouble(
                             30),
-                            ThreadLocalRandom.current().nextDouble(Math.PI)))), this.suHeight));
+                            this.random.nextDouble(Math.PI)))), this.suHeight));
         // this one is the target to predict
         sus[susNum - 1] = new SU(new TX(new Element(susPoint[susNum - 1], this.suHeight),
-                ThreadLocalRandom.current().nextDouble(this.minSuPower, this.maxSuPower + Double.MIN_VALUE)),
-                new Element(susPoint[susNum - 1].add(new Point(new PolarPoint(ThreadLocalRandom.current().nextDouble(
+                this.random.nextDouble(this.minSuPower, this.maxSuPower + Double.MIN_VALUE)),
+                new Element(susPoint[susNum - 1].add(new Point(new PolarPoint(this.random.nextDouble(
                         30),
-                        ThreadLocalRandom.current().nextDouble(Math.PI)))), this.suHeight));
+                        this.random.nextDouble(Math.PI)))), this.suHeight));
         return sus;
     }
 
+    // writer of a kind of sample file(pu, sensor, ...); goes into the preallocated file of the kind if there is one
+    // and through the writer stage if there is one
+    private SampleWriter openWriter(String kind, String schema, String fileNameFormat, int firstSample)
+            throws IOException {
+        SampleWriter writer;
+        if (this.preallocatedFiles != null && this.preallocatedFiles.containsKey(kind))
+            writer = this.preallocatedFiles.get(kind).writer(firstSample);
+        else
+            writer = SampleWriter.open(new File(SpectrumAllocationApp.DATA_DIR + "/" + kind + fileNameFormat),
+                    OUTPUT_FORMAT, OUTPUT_COMPRESSION, OUTPUT_BLOCK_SIZE, schema);
+        return this.writerPipeline == null ? writer : this.writerPipeline.wrap(writer);
+    }
+
+    // n random points of the field; seeded ones if there is a seed since Shape.points cannot be seeded
+    private Point[] points(int n){
+        if (this.seed == null)
+            return this.shape.points(n);
+        return SampleRandom.points(this.shape, n, this.random);
+    }
+
     // method to return Progress Bar based on sample #
-    private String progressBar(int sampleNumber, long timeElapsedMilli){
-        int progress = (int)((float)sampleNumber/this.sampleCount * progressBarLength);  // number of = to be print
+    private String progressBar(int sampleNumber, int sampleCount, long timeElapsedMilli){
+        int progress = (int)((float)sampleNumber/sampleCount * progressBarLength);  // number of = to be print
         return "=".repeat(Math.max(0, progress)) +
                 " ".repeat(Math.max(0, SpectrumAllocationApp.progressBarLength - progress)) +
-                "| " + (int)((double)sampleNumber / this.sampleCount * 100) + "% " +
-                timeFormat(sampleNumber, timeElapsedMilli) + "\r";
+                "| " + (int)((double)sampleNumber / sampleCount * 100) + "% " +
+                timeFormat(sampleNumber, sampleCount, timeElapsedMilli) + "\r";
     }
 
     // based on elapsed time and sample number, a time format info will be returned
-    private String timeFormat(int sampleNumber, long timeElapseMilli){
-        int sampleRemaining = this.sampleCount - sampleNumber;  // remaining samples
+    private String timeFormat(int sampleNumber, int sampleCount, long timeElapseMilli){
+        int sampleRemaining = sampleCount - sampleNumber;  // remaining samples
         long timeRemainingMilli = (long)(((double) sampleRemaining / sampleNumber) * timeElapseMilli); // remaining time
         String extraInfo = (double)timeElapseMilli / (1000 * sampleNumber) > 1.0 ?
                 String.format("%.2fs/it", (double)timeElapseMilli / (1000 * sampleNumber)) :   // seconds per iteration
@@ -395,9 +506,81 @@ public class SpectrumAllocationApp implements Runnable{
 
     public static void setDataDir(String dataDir) { DATA_DIR = dataDir; }
 
-    public static ConcurrentHashMap<Integer, HashMap<String, Double>> getResultDict() { return resultDict; }
+    public static SampleWriter.Format getOutputFormat() { return OUTPUT_FORMAT; }
+
+    public static void setOutputFormat(SampleWriter.Format outputFormat) { OUTPUT_FORMAT = outputFormat; }
 
-    public static void setResultDict(ConcurrentHashMap<Integer, HashMap<String, Double>> resultDict) {
-        SpectrumAllocationApp.resultDict = resultDict;
+    public static SampleWriter.Compression getOutputCompression() { return OUTPUT_COMPRESSION; }
+
+    public static void setOutputCompression(SampleWriter.Compression outputCompression) {
+        OUTPUT_COMPRESSION = outputCompression;
     }
+
+    public static int getOutputBlockSize() { return OUTPUT_BLOCK_SIZE; }
+
+    public static void setOutputBlockSize(int outputBlockSize) {
+        if (outputBlockSize < 1)
+            throw new IllegalArgumentException("Output block size should be positive.");
+        OUTPUT_BLOCK_SIZE = outputBlockSize;
+    }
+
+    /**@return extension of sample files; format's followed by compression's(e.g. ".txt.gz", ".binz")*/
+    public static String getOutputExtension() {
+        return OUTPUT_FORMAT.getExtension() + OUTPUT_COMPRESSION.getExtension(OUTPUT_FORMAT);
+    }
+
+    /**Pull samples from shared chunks instead of generating a fixed sampleCount; each chunk is written to its own
+     * files named after its first sample index.
+     * @param sampleChunks chunks shared by all workers of a run*/
+    public void setSampleChunks(SampleChunks sampleChunks) { this.sampleChunks = sampleChunks; }
+
+    /**Write samples of the given kinds(pu, sensor, max, interSensor, syntheticPu, suMaxTotal) straight into
+     * preallocated files, at their sample index, instead of per-chunk files. Needs sample chunks since slots are
+     * addressed by global sample index.
+     * @param preallocatedFiles files by kind; kinds not in the map use per-chunk files*/
+    public void setPreallocatedFiles(Map<String, PreallocatedSampleFile> preallocatedFiles) {
+        this.preallocatedFiles = preallocatedFiles;
+    }
+
+    /**Hand samples to a writer stage instead of writing them in this app's thread. Files are only complete after
+     * the pipeline is closed.
+     * @param writerPipeline writer stage shared by all workers of a run*/
+    public void setWriterPipeline(SampleWriterPipeline writerPipeline) { this.writerPipeline = writerPipeline; }
+
+    /**Count samples on a central progress reporter's counter instead of printing a progress bar from this thread.
+     * @param progress this app's counter; not shared with other apps*/
+    public void setProgress(ProgressReporter.Counter progress) { this.progress = progress; }
+
+    /**Make samples reproducible: sample i(0-based, global index when chunks are used) is generated only from
+     * SampleRandom.forSample(seed, i), independent of threads. Sensors of variable-length runs and
+     * probability-based PU locations come from the commons' generators and are not covered.
+     * @param seed seed of the dataset*/
+    public void setSeed(long seed) {
+        this.seed = seed;
+        if (this.sss_counts.length > 0 || this.PULocationProbabilityBased) {
+            Logger logger = Logger.getLogger(SpectrumAllocationApp.class.getName());
+            logger.warning("Sensor generation and probability-based PU locations cannot be seeded; " +
+                    "samples will not be fully reproducible.");
+        }
+    }
+
+    /**Set path-loss lower bound of the propagation model; only pass one that holds for every pair(no noise).
+     * @param pathLossLowerBound lower bound or null to scan all PURs*/
+    public void setPathLossLowerBound(PathLossLowerBound pathLossLowerBound) {
+        this.pathLossLowerBound = pathLossLowerBound;
+    }
+
+    /**Tell whether the propagation model gives the same path-loss for a pair every time(e.g. Splat, or log without
+     * noise). Only then PUs' path-loss values of STATIC PUs are kept over samples; a noisy model draws them again.
+     * @param deterministicPathLoss true if the model has no per-call noise; false(default) otherwise*/
+    public void setDeterministicPathLoss(boolean deterministicPathLoss) {
+        this.deterministicPathLoss = deterministicPathLoss;
+    }
+
+    /**Draw one correlated shadowing field per sample and add it to every path-loss of the sample, so a pair has the
+     * same path-loss however many times it is computed. The propagation model should give the mean(no noise).
+     * @param shadowing this app's own field(e.g. a copy of a shared one)*/
+    public void setShadowing(ShadowingField shadowing) { this.shadowing = shadowing; }
+
+    public SampleMetrics getMetrics() { return metrics; }
 }
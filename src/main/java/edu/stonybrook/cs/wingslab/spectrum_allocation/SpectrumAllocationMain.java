@@ -3,15 +3,24 @@ package edu.stonybrook.cs.wingslab.spectrum_allocation;
 import edu.stonybrook.cs.wingslab.commons.*;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Scanner;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -37,10 +46,22 @@ public class SpectrumAllocationMain {
                                                         // Applicable for log
         boolean noise = true;                           // std in dB.
         double std =  1.0;                              // Applicable for log
+        double pl_table_step = 0.01;                    // log: meters between entries of the mean path-loss table;
+                                                        // 0 to compute each path-loss
+        double shadowing_correlation_distance = 0;      // log with noise: 0 for independent noise per call; > 0 opts
+                                                        // in to correlated shadowing(one field per sample): cells at
+                                                        // which noise correlation drops to 1/e; files get "_corr"
         GeographicPoint splat_left_upper_ref = new GeographicPoint(40.800595, 73.107507);      // ISLIP lat and lon
         //GeographicPoint splat_left_upper_ref = new GeographicPoint(40.912004,73.122076); // SBU
         double noise_floor = -120;                       // noise floor
         String splatFileName = "pl_map_array.mcarthur.json";            // splat saved file name
+        String plStoreFileName = "pl_map.mcarthur.pls";         // binary path-loss store; "" to use the json file
+        boolean plStoreImportJson = true;               // also load the json file, if any, so pairs it holds
+                                                        // are not computed again; they are stored when used
+        boolean plStoreCompact = true;                  // merge the store's log into its table after the run
+        int plCacheCapacity = 1 << 18;                  // splat values kept in memory for all threads; 0 for no cache
+        boolean plWarmUp = false;                       // compute splat values of (cell, sensor/PUR) pairs into the
+                                                        // store before sampling; needs plStoreFileName
         //SharedDictionary = False  # means pl_map is shared among sub process or not. Applicatble for Splat
 
         // ********************************** PUs&PURs **********************************
@@ -94,6 +115,21 @@ public class SpectrumAllocationMain {
         // MAX_POWER = True   # make it true if you want to achieve the highest power su can have without interference.
         // calculation for conservative model would also be done
         int number_of_process = 8;                      // number of process
+        int min_sample_chunk = 16;                      // smallest number of samples a worker pulls at once
+        SampleWriter.Format output_file_format = SampleWriter.Format.TEXT;  // TEXT, BINARY(little-endian records) or
+                                                        // QUANTIZED(values rounded to 0.001, delta-encoded in blocks)
+        SampleWriter.Compression output_compression =
+                SampleWriter.Compression.NONE;          // NONE or GZIP(independent members; files stay splittable)
+        int output_block_size = 1 << 20;                // bytes of a GZIP member or QUANTIZED block(at least)
+        int writer_threads = 0;                         // threads writing sample files; 0: workers write them
+        int writer_queue_capacity = 1024;               // samples waiting for each writer thread before workers block
+        long progress_period_millis = 2000;             // time between two progress reports
+        String progress_sink = "console";               // "console", "log" or "json"(progress_<appendix>.json in
+                                                        // data dir, one report per line)
+        boolean preallocated_output = false;            // BINARY only: workers write fixed-length records straight
+                                                        // into the final files; no merge step
+        Long seed = null;                               // seed of the dataset(e.g. 2020L); same seed gives the same
+                                                        // samples for any number_of_process. null: not reproducible
         //INTERPOLATION, CONSERVATIVE = False, False
         int n_samples = 25000;                            // number of samples
 
@@ -121,14 +157,44 @@ public class SpectrumAllocationMain {
 
         // create proper propagation model
         PropagationModel pm = null;
-        if (propagationModel.equals("log"))
-            if (noise)
+        PathLossStore plStore = null;
+        PathLossCache plCache = null;
+        ShadowingField shadowing = null;
+        if (propagationModel.equals("log")) {
+            if (noise && shadowing_correlation_distance > 0) {  // noise comes from the field; the model gives the mean
+                if (!(field_shape instanceof Rectangle rectangle))
+                    throw new IllegalArgumentException("Shadowing field is only supported for Rectangle and Square.");
+                shadowing = new ShadowingField(rectangle.getLength(), rectangle.getWidth(), std,
+                        shadowing_correlation_distance);
+            }
+            boolean pairNoise = noise && shadowing == null;
+            if (pl_table_step > 0) {    // mean is read from a table up to the field's diagonal; noise is drawn per pair
+                if (!(field_shape instanceof Rectangle rectangle))
+                    throw new IllegalArgumentException("Path-loss table needs a Rectangle(or Square) field; set " +
+                            "pl_table_step to 0.");
+                pm = new DistanceTablePM(new LogDistancePM(alpha)::pathLoss, pairNoise ? std : 0,
+                        Math.hypot(rectangle.getLength(), rectangle.getWidth()) * cell_size, pl_table_step);
+            }
+            else if (pairNoise)
                 pm = new LogDistancePM(alpha, std);
             else
                 pm = new LogDistancePM(alpha);
+        }
         else if (propagationModel.equals("splat")) {
-            pm = new Splat(splat_left_upper_ref);
-            Splat.readPlDictFromJson(SPLAT_DIR + "pl_map/" + splatFileName);
+            if (plStoreFileName.isEmpty()) {
+                pm = new Splat(splat_left_upper_ref);
+                Splat.readPlDictFromJson(SPLAT_DIR + "pl_map/" + splatFileName);
+            }
+            else {
+                plStore = PathLossStore.open(Paths.get(SPLAT_DIR + "pl_map/" + plStoreFileName));
+                if (plStoreImportJson && new File(SPLAT_DIR + "pl_map/" + splatFileName).exists())
+                    Splat.readPlDictFromJson(SPLAT_DIR + "pl_map/" + splatFileName);
+                pm = new StoredPropagationModel(new Splat(splat_left_upper_ref), plStore);
+            }
+            if (plCacheCapacity > 0) {  // threads missing the same pair wait for one splat execution
+                plCache = new PathLossCache(plCacheCapacity);
+                pm = new CachedPropagationModel(pm, plCache);
+            }
             Splat.setSdfDir(SPLAT_DIR + "sdf/");
         }
 
@@ -149,7 +215,7 @@ public class SpectrumAllocationMain {
         }
         PU[] pus = createPUs(max_pus_number, field_shape, tx_height, min_pu_power, max_pu_power,
                 pur_metric, pur_metric_value, pur_number,
-                min_pur_dist, max_pur_dist, rx_height);
+                min_pur_dist, max_pur_dist, rx_height, seed);
 
         // TODO implement std calculation
         if (false) {
@@ -158,164 +224,204 @@ public class SpectrumAllocationMain {
         }
 
         // ****************************** creating threads ************************
-        ConcurrentHashMap<Integer, HashMap<String, Double>> resultDict = new ConcurrentHashMap<>();
-        int[] threadSampleNum = new int[number_of_process];
-        for (int i = 0; i < number_of_process; i++)
-            threadSampleNum[i] = n_samples / number_of_process;         // equally distributed among threads
-        threadSampleNum[0] += n_samples - (n_samples / number_of_process) * number_of_process;
-                                                                        // remaining will be assigned to the first one
+        SampleMetrics metrics = new SampleMetrics();       // updated by workers on every sample
+        SampleChunks sampleChunks = new SampleChunks(n_samples, number_of_process,
+                min_sample_chunk);                                      // workers pull chunks until none is left
         int fileAppendix =
                 ThreadLocalRandom.current().nextInt(100000);      // a random value will be used to distinguish
                                                                         // created file by different run
-        Thread[] threads = new Thread[number_of_process];               // threads
-        for (int i = 0; i < number_of_process; i++){
-            // creating new thread
-            PU[] threadCopyPUs = new PU[pus.length];
-            for (int puId = 0; puId < pus.length; puId++)
-                threadCopyPUs[puId] = new PU(pus[puId]);
-
-            SpectrumSensor[] threadCopySss = new SpectrumSensor[sss.length];
-            for (int ssId = 0; ssId < sss.length; ssId++)
-                threadCopySss[ssId] = new SpectrumSensor(sss[ssId]);
-
-            PropagationModel threadPM;
-            if (pm instanceof LogDistancePM logDistancePM)
-                threadPM = new LogDistancePM(logDistancePM);
-            else if (pm instanceof Splat splat)
-                threadPM = new Splat(splat);
-            else
-                throw new IllegalArgumentException("Constructor is not valid.");
+        // final output files by kind of sample file
+        String date = new SimpleDateFormat("_yyyy_MM_dd_HH_mm").format(new Date());
+        String output_format = n_samples + "_" +
+                (min_pus_number != max_pus_number ?
+                        "min" + min_pus_number + "_max" + max_pus_number :
+                        max_pus_number) + "PUs" + "_" +
+                (min_sus_number != max_sus_number ?
+                        "min" + min_sus_number + "_max" + max_sus_number :
+                        max_sus_number) + "SUs" + "_" +
+                field_shape + "grid_" + propagationModel +
+                (noise && propagationModel.contains("log") ?
+                        "_noisy_std" + std + (shadowing != null ? "_corr" + shadowing_correlation_distance : "") :
+                        "")
+                + date + output_file_format.getExtension() + output_compression.getExtension(output_file_format);
+        Map<String, String> outputFiles = new LinkedHashMap<>();
+        outputFiles.put("pu", "dynamic_pus_using_pus_" + output_format);
+        outputFiles.put("max", "dynamic_pus_max_power_" + output_format);
+        outputFiles.put("sensor", variable_length_ss.length == 0 ?
+                "dynamic_pus_" + number_sensors + "sensor_" + output_format :
+                "dynamic_pus_variable_sensors_" + output_format);
+        if (IS_INTERPOLATED)
+            outputFiles.put("interSensor", "dynamic_pus_" + numberInterpolatedSensors + "InterpolatedSensor_" +
+                    output_format);
+        if (IS_SYNTHETIC)
+            outputFiles.put("syntheticPu", "dynamic_pus_synthetic" + output_format);
+        outputFiles.put("suMaxTotal", "dynamic_pus_maximum_total_sus" + output_format);
+
+        Map<String, PreallocatedSampleFile> preallocatedFiles = new HashMap<>();
+        if (preallocated_output) {
+            if (output_file_format != SampleWriter.Format.BINARY || output_compression != SampleWriter.Compression.NONE
+                    || variable_length_ss.length > 0)
+                throw new IllegalArgumentException("Preallocated output needs uncompressed BINARY format and fixed " +
+                        "sensors.");
+            Files.createDirectories(Paths.get(SpectrumAllocationApp.getDataDir()));
+            int maxSuValues = 1 + 3 * max_sus_number + 1;          // suNum, (x, y, power) per SU, allowed
+            int maxPuValues = 1 + 3 * max_pus_number + maxSuValues;
+            preallocatedFiles.put("pu", new PreallocatedSampleFile(
+                    Paths.get(SpectrumAllocationApp.getDataDir(), outputFiles.get("pu")),
+                    SpectrumAllocationApp.PU_SCHEMA, maxPuValues, n_samples));
+            preallocatedFiles.put("max", new PreallocatedSampleFile(
+                    Paths.get(SpectrumAllocationApp.getDataDir(), outputFiles.get("max")),
+                    SpectrumAllocationApp.MAX_SCHEMA, 3, n_samples));
+            preallocatedFiles.put("sensor", new PreallocatedSampleFile(
+                    Paths.get(SpectrumAllocationApp.getDataDir(), outputFiles.get("sensor")),
+                    SpectrumAllocationApp.SENSOR_SCHEMA, 1 + sss.length + maxSuValues, n_samples));
+            if (IS_SYNTHETIC)
+                preallocatedFiles.put("syntheticPu", new PreallocatedSampleFile(
+                        Paths.get(SpectrumAllocationApp.getDataDir(), outputFiles.get("syntheticPu")),
+                        SpectrumAllocationApp.PU_SCHEMA, maxPuValues, n_samples));
+            preallocatedFiles.put("suMaxTotal", new PreallocatedSampleFile(
+                    Paths.get(SpectrumAllocationApp.getDataDir(), outputFiles.get("suMaxTotal")),
+                    SpectrumAllocationApp.SU_MAX_TOTAL_SCHEMA, 1 + 3 * max_sus_number, n_samples));
+            // interpolated sensors' values come from commons' toString; their number is not known in advance
+        }
 
-            Shape threadShape;
-            if (field_shape instanceof Rectangle rectangle)
-                threadShape = new Rectangle(rectangle);
-            else if (field_shape instanceof Square square)
-                threadShape = new Square(square);
+        SpectrumAllocationApp.setOutputFormat(output_file_format);
+        SpectrumAllocationApp.setOutputCompression(output_compression);
+        SpectrumAllocationApp.setOutputBlockSize(output_block_size);
+        Files.createDirectories(Paths.get(SpectrumAllocationApp.getDataDir()));
+        if (plWarmUp && propagationModel.equals("splat")) {
+            if (plStore == null)
+                throw new IllegalArgumentException("Path-loss warm-up needs a path-loss store(plStoreFileName).");
+            PathLossWarmUp warmUp = new PathLossWarmUp(field_shape, cell_size, tx_height).addSensors(sss);
+            if (puType == SpectrumAllocationApp.PUType.STATIC)
+                warmUp.addPurs(pus);
             else
-                throw new IllegalArgumentException("Shape is not valid.");
+                warmUp.addPurOffsets(pus);
+            try (ProgressReporter warmUpProgress = new ProgressReporter(warmUp.getPairs(), progress_period_millis,
+                    ProgressSink.named(progress_sink, Paths.get(SpectrumAllocationApp.getDataDir(),
+                            "warmup_" + fileAppendix + ".json")))) {
+                System.out.println(warmUp.run(pm, number_of_process, warmUpProgress));
+            }
+        }
+        ProgressReporter progressReporter = new ProgressReporter(n_samples, progress_period_millis,
+                ProgressSink.named(progress_sink, Paths.get(SpectrumAllocationApp.getDataDir(),
+                        "progress_" + fileAppendix + ".json")));
+        SampleWriterPipeline writerPipeline = writer_threads > 0 ?
+                new SampleWriterPipeline(writer_threads, writer_queue_capacity) : null;
+        // read-only geometry is shared by workers; each only gets its per-sample state
+        SharedGeometry sharedGeometry = new SharedGeometry(field_shape, pus, sss);
+        ExecutorService pool = Executors.newWorkStealingPool(number_of_process);
+        List<Future<?>> workers = new ArrayList<>();    // submitted(not executed) so a worker's exception is kept
+        for (int i = 0; i < number_of_process; i++){
+            // creating new thread
+            PU[] threadCopyPUs = sharedGeometry.workerPUs();
+            SpectrumSensor[] threadCopySss = sharedGeometry.workerSensors();
+            PropagationModel threadPM = SharedGeometry.workerPropagationModel(pm);
+            Shape threadShape = sharedGeometry.getShape();
+            SpectrumAllocationApp app;
             if (!IS_INTERPOLATED)
-                threads[i] = new Thread(new SpectrumAllocationApp(threadSampleNum[i], Integer.toString(fileAppendix),
-                        resultDict, threadPM, threadCopyPUs, threadCopySss, threadShape, cell_size,
+                app = new SpectrumAllocationApp(n_samples, Integer.toString(fileAppendix),
+                        metrics, threadPM, threadCopyPUs, threadCopySss, threadShape, cell_size,
                         min_sus_number, max_sus_number, min_su_power, max_su_power, tx_height,
                         min_pus_number, max_pus_number, min_pu_power, max_pu_power, puType,
                         null, 0, null, IS_SYNTHETIC,
-                        maxTransRadius, noise_floor, PU_LOCATION_BASED_PROBABILITY, variable_length_ss));
+                        maxTransRadius, noise_floor, PU_LOCATION_BASED_PROBABILITY, variable_length_ss);
             else{
-                SpectrumSensor[] threadCopyInterSss = new SpectrumSensor[interSss.length];
-                for (int interSsId = 0; interSsId < interSss.length; interSsId++)
-                    threadCopyInterSss[interSsId] = new SpectrumSensor(interSss[interSsId]);
+                SpectrumSensor[] threadCopyInterSss = SharedGeometry.workerSensors(interSss);
 
-                threads[i] = new Thread(new SpectrumAllocationApp(threadSampleNum[i], Integer.toString(fileAppendix),
-                        resultDict, threadPM, threadCopyPUs, threadCopySss, threadShape, cell_size,
+                app = new SpectrumAllocationApp(n_samples, Integer.toString(fileAppendix),
+                        metrics, threadPM, threadCopyPUs, threadCopySss, threadShape, cell_size,
                         min_sus_number, max_sus_number, min_su_power, max_su_power, tx_height,
                         min_pus_number, max_pus_number, min_pu_power, max_pu_power, puType,
                         threadCopyInterSss,
                         numberOfSensorsInterpolated, interpolationType,
-                        IS_SYNTHETIC, maxTransRadius, noise_floor, PU_LOCATION_BASED_PROBABILITY, variable_length_ss));
+                        IS_SYNTHETIC, maxTransRadius, noise_floor, PU_LOCATION_BASED_PROBABILITY, variable_length_ss);
             }
-            threads[i].start();
+            if (propagationModel.equals("log") && !noise)   // path-loss only grows with distance; PURs can be pruned
+                if (pm instanceof DistanceTablePM distanceTable)
+                    app.setPathLossLowerBound(distanceTable);   // same interpolated values the model returns
+                else
+                    app.setPathLossLowerBound(new LogDistancePM(alpha)::pathLoss);
+            app.setDeterministicPathLoss(!(propagationModel.equals("log") && noise));
+            if (shadowing != null)
+                app.setShadowing(new ShadowingField(shadowing));    // spectrum is shared; each worker has its field
+            app.setSampleChunks(sampleChunks);
+            app.setPreallocatedFiles(preallocatedFiles);
+            app.setWriterPipeline(writerPipeline);
+            app.setProgress(progressReporter.register("worker-" + i));
+            if (seed != null)
+                app.setSeed(seed);
+            workers.add(pool.submit(app));
         }
 
-        // waiting for all the threads to finish their jobs
-        for (Thread thread : threads)
-            thread.join();
-
-        // merging result file generated by threads into one
-        String date = new SimpleDateFormat("_yyyy_MM_dd_HH_mm").format(new Date());
-        String output_format = n_samples + "_" +
-                (min_pus_number != max_pus_number ?
-                        "min" + min_pus_number + "_max" + max_pus_number :
-                        max_pus_number) + "PUs" + "_" +
-                (min_sus_number != max_sus_number ?
-                        "min" + min_sus_number + "_max" + max_sus_number :
-                        max_sus_number) + "SUs" + "_" +
-                field_shape + "grid_" + propagationModel +
-                (noise && propagationModel.contains("log") ?
-                        "_noisy_std" + std :
-                        "")
-                + date + ".txt";
-        mergeFiles(SpectrumAllocationApp.getDataDir(), "pu_" + fileAppendix, // merging pu related files
-                SpectrumAllocationApp.getDataDir(), "dynamic_pus_using_pus_" + output_format);
-        System.out.println("File " + "dynamic_pus_using_pus_" + output_format + " saved at: " +
-                SpectrumAllocationApp.getDataDir());
-
-        mergeFiles(SpectrumAllocationApp.getDataDir(), "max_" + fileAppendix, // merging max information
-                SpectrumAllocationApp.getDataDir(), "dynamic_pus_max_power_" + output_format);
-        System.out.println("File " + "dynamic_pus_max_power_" + output_format + " saved at: " +
-                SpectrumAllocationApp.getDataDir());
-
-        if (variable_length_ss.length == 0) {
-            mergeFiles(SpectrumAllocationApp.getDataDir(), "sensor_" + fileAppendix,  // merging sensor related files
-                    SpectrumAllocationApp.getDataDir(), "dynamic_pus_" + number_sensors + "sensor_" + output_format);
-            System.out.println("File " + "dynamic_pus_" + number_sensors + "sensor_" + output_format + " saved at: " +
-                    SpectrumAllocationApp.getDataDir());
-        }else {
-            mergeFiles(SpectrumAllocationApp.getDataDir(), "sensor_" + fileAppendix,  // merging sensor related files
-                    SpectrumAllocationApp.getDataDir(), "dynamic_pus_variable_sensors_" + output_format);
-            System.out.println("File " + "dynamic_pus_variable_sensors_" + output_format + " saved at: " +
-                    SpectrumAllocationApp.getDataDir());
-        }
-        if (IS_INTERPOLATED) {
-            mergeFiles(SpectrumAllocationApp.getDataDir(), "interSensor_" + fileAppendix,  // merging sensor related files
-                    SpectrumAllocationApp.getDataDir(), "dynamic_pus_" +
-                            numberInterpolatedSensors + "InterpolatedSensor_" + output_format);
-            System.out.println("File " + "dynamic_pus_" + numberInterpolatedSensors + "InterpolatedSensor_" +
-                    output_format + " saved at: " + SpectrumAllocationApp.getDataDir());
+        // waiting for all the workers to finish their jobs
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        progressReporter.close();
+        try {
+            if (writerPipeline != null) {
+                writerPipeline.close();         // waits for queued samples to be written
+                System.out.printf("Writer stage: %d samples written, max queue depth %d, workers blocked %d " +
+                                "times(%d ms)\n", writerPipeline.getWrittenSamples(),
+                        writerPipeline.getMaxQueueDepth(), writerPipeline.getProducerWaits(),
+                        writerPipeline.getProducerWaitMillis());
+            }
+            for (Future<?> worker : workers)    // a worker failing outside of a sample leaves its part out
+                try {
+                    worker.get();
+                }
+                catch (ExecutionException e) {
+                    throw new RuntimeException("A worker failed; outputs are not complete.", e.getCause());
+                }
         }
-        if (IS_SYNTHETIC){
-            mergeFiles(SpectrumAllocationApp.getDataDir(), "syntheticPu_" + fileAppendix,  // merging sensor related files
-                    SpectrumAllocationApp.getDataDir(), "dynamic_pus_synthetic"  + output_format);
-            System.out.println("File " + "dynamic_pus_synthetic_" + output_format
-                    + " saved at: " + SpectrumAllocationApp.getDataDir());
+        finally {       // preallocated files are closed even if writing failed
+            for (PreallocatedSampleFile preallocatedFile : preallocatedFiles.values())
+                preallocatedFile.close();
         }
 
-        mergeFiles(SpectrumAllocationApp.getDataDir(), "suMaxTotal_" + fileAppendix, // merging max information
-                SpectrumAllocationApp.getDataDir(), "dynamic_pus_maximum_total_sus" + output_format);
-        System.out.println("File " + "dynamic_pus_maximum_total_sus" + output_format + " saved at: " +
-                SpectrumAllocationApp.getDataDir());
-
+        // saving outputs: preallocated files are complete; result files generated by workers are merged into one
+        for (Map.Entry<String, String> output : outputFiles.entrySet()) {
+            if (!preallocatedFiles.containsKey(output.getKey()))
+                mergeFiles(SpectrumAllocationApp.getDataDir(), output.getKey() + "_" + fileAppendix,
+                        SpectrumAllocationApp.getDataDir(), output.getValue(),
+                        output_file_format != SampleWriter.Format.TEXT);
+            System.out.println("File " + output.getValue() + " saved at: " + SpectrumAllocationApp.getDataDir());
+        }
 
         // displaying statistics
-        int numSampleAccepted = 0;
-        for (HashMap<String, Double> threadInfo : resultDict.values()) {
-            if (threadInfo.containsKey("Accepted Number"))
-                numSampleAccepted += threadInfo.get("Accepted Number").intValue();
-        }
-        System.out.println("Number of accepted samples:" + numSampleAccepted);
+        System.out.println("Number of accepted samples:" + metrics.getCount(SampleMetrics.ACCEPTED_SAMPLES));
+        SampleMetrics.Histogram sampleTime = metrics.getHistogram(SampleMetrics.SAMPLE_TIME);
+        System.out.printf("Samples: %d (%d failed), %.1f samples/s, time per sample: mean %.2fms, p95 %.2fms\n",
+                metrics.getCount(SampleMetrics.SAMPLES), metrics.getCount(SampleMetrics.FAILED_SAMPLES),
+                metrics.getRate(SampleMetrics.SAMPLES), sampleTime.getMean(), sampleTime.getQuantile(0.95));
         // more for splat
         if (propagationModel.contains("splat")){
-            long fetchNum = 0;           // number of using hash map
-            long execNum = 0;            // number of executing splat command line
-            long fetchTime = 0;          // duration(milliseconds) of fetching
-            long execTime = 0;           // duration(milliseconds) of executing
-            for (HashMap<String, Double> threadInfo : resultDict.values()) {
-                if (threadInfo.containsKey("Fetch Number"))
-                    fetchNum += threadInfo.get("Fetch Number").longValue();
-                if (threadInfo.containsKey("Execution Number"))
-                    execNum += threadInfo.get("Execution Number").longValue();
-                if (threadInfo.containsKey("Fetch Time"))
-                    fetchTime += threadInfo.get("Fetch Time").longValue();
-                if (threadInfo.containsKey("Execution Time"))
-                    execTime += threadInfo.get("Execution Time").longValue();
-            }
+            long fetchNum = metrics.getCount(SampleMetrics.SPLAT_FETCH_NUM);    // number of using hash map
+            long execNum = metrics.getCount(SampleMetrics.SPLAT_EXEC_NUM);  // number of executing splat command line
+            long fetchTime = metrics.getCount(SampleMetrics.SPLAT_FETCH_TIME);  // duration(milliseconds) of fetching
+            long execTime = metrics.getCount(SampleMetrics.SPLAT_EXEC_TIME);    // duration(milliseconds) of executing
             System.out.printf("Fetching: %d times (%fms per each)\n" +
                             "Execution Time: %d times (%.2fms per each)%n",
                     fetchNum, (double) fetchTime / fetchNum, execNum, (double) execTime / execNum);
 
+            if (plCache != null)
+                System.out.printf("Path-loss cache: %,d hits, %,d shared misses, %,d misses, %,d evictions%n",
+                        plCache.getHits(), plCache.getWaits(), plCache.getMisses(), plCache.getEvictions());
             // saving new pl map
-            if (execNum > 10)
+            if (plStore != null) {
+                System.out.printf("Path-loss store: %,d hits, %,d misses, %,d new values%n", plStore.getHits(),
+                        plStore.getMisses(), plStore.getAppended());
+                plStore.close();
+                if (plStoreCompact && plStore.getAppended() > 0)
+                    System.out.printf("Path-loss store compacted to %,d values%n",
+                            PathLossStore.compact(plStore.getPath()));
+            }
+            else if (execNum > 10)
                 Splat.writePlDictToJson(SPLAT_DIR + "pl_map/" + splatFileName + ".new");
         }
         // calculating data rates
-        double totalDataRate = 0.0;
-        int numberOfThreads = 0;
-        for (HashMap<String, Double> threadInfo : resultDict.values()){
-            if (threadInfo.containsKey("Average Data Rate")){
-                totalDataRate += threadInfo.get("Average Data Rate");
-                numberOfThreads += 1;
-            }
-        }
-        System.out.printf("Average Data Rate is: %.2f Mbps\n", totalDataRate/numberOfThreads);
+        System.out.printf("Average Data Rate is: %.2f Mbps\n", metrics.getSum(SampleMetrics.SUS_DATA_RATE) /
+                (metrics.getCount(SampleMetrics.SUS) * 1e6));
 
         long duration = System.currentTimeMillis() - beginTime;
         System.out.println(String.format("Duration = %d:%02d:%02d", TimeUnit.MILLISECONDS.toHours(duration),
@@ -327,18 +433,21 @@ public class SpectrumAllocationMain {
     private static PU[] createPUs(int puNum, Shape shape, double puHeight, double minPuPower, double maxPuPower,
                                   PUR.InterferenceMethod purMetric, double purMetricValue,
                                   int purNum, double purMinDist, double purMaxDist,
-                                  double purHeight){
+                                  double purHeight, Long seed){
+        // PUs are drawn from stream -1 so they do not share draws with any sample
+        SplittableRandom rand = seed == null ? new SplittableRandom() : SampleRandom.forSample(seed, -1);
         PU[] pus = new PU[puNum];
         int puCnt = 0;
-        for (Point point : shape.points(puNum))
+        for (Point point : (seed == null ? shape.points(puNum) : SampleRandom.points(shape, puNum, rand)))
             pus[puCnt++] = new PU(new TX(new Element(point, puHeight),
-                    ThreadLocalRandom.current().nextDouble(minPuPower, maxPuPower + Double.MIN_VALUE)),
-                    purNum, purMetric, purMetricValue, purMinDist, purMaxDist, purHeight);
+                    rand.nextDouble(minPuPower, maxPuPower + Double.MIN_VALUE)),
+                    purNum, purMetric, purMetricValue, purMinDist, purMaxDist, purHeight, rand);
         return pus;
     }
 
     // merging results from multiple threads
-    private static void mergeFiles(String srcPath, String pattern, String destPath, String fileName){
+    private static void mergeFiles(String srcPath, String pattern, String destPath, String fileName,
+                                   boolean withHeader){
         Path path = Paths.get(destPath);// check if the director exists; if not, it try to create it.
         if (!Files.isDirectory(path)) {
             try {
@@ -360,20 +469,22 @@ public class SpectrumAllocationMain {
             return;
         }
         Arrays.sort(files); // sorting files to avid misplacement
-        // merging files
-        File outputFile = new File(destPath + fileName);
-        try(PrintWriter printWriter = new PrintWriter(outputFile)){
-            for (File file : files){
-                Scanner fileScanner = new Scanner(file);
-                while (fileScanner.hasNextLine())
-                    printWriter.println(fileScanner.nextLine());
-                fileScanner.close();
-                file.delete();
+        // merging files; bytes are copied channel to channel, files with a header(binary and quantized) keep the
+        // first header only. Compressed blocks are independent, so they are concatenated as they are.
+        try(FileChannel outputChannel = FileChannel.open(Paths.get(destPath, fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            for (int i = 0; i < files.length; i++){
+                try(FileChannel inputChannel = FileChannel.open(files[i].toPath(), StandardOpenOption.READ)){
+                    long position = withHeader && i > 0 ? BinarySampleWriter.headerLength(files[i].toPath()) : 0;
+                    long size = inputChannel.size();
+                    while (position < size)
+                        position += inputChannel.transferTo(position, size - position, outputChannel);
+                }
+                files[i].delete();
             }
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             Logger logger = Logger.getLogger(SpectrumSensor.class.getName());
-            logger.warning("Merging output failed due to I/O error creating the file: " +
-                    Arrays.toString(e.getStackTrace()));
+            logger.warning("Merging output failed due to I/O error: " + Arrays.toString(e.getStackTrace()));
         }
     }
 
@@ -3,7 +3,9 @@ package edu.stonybrook.cs.wingslab.spectrum_allocation;
 import edu.stonybrook.cs.wingslab.commons.*;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 
 /**SpectrumManger assign power value to a requested SU based on its current state (using PUs or SSs)
@@ -25,7 +27,33 @@ public class SpectrumManager {
                                                             // pair relation with requesting SU
     private final double noiseFloor;                        // noiseFloor
     private boolean purViolated = false;
-    private double[] susOptimalPower;
+    private double[] susOptimalPower;                       // SUs' powers of the last computeSUsTotalMaxPower
+    private final SUPowerOptimizer suPowerOptimizer =       // workspace of computeSUsTotalMaxPower; reused over
+            new SUPowerOptimizer();                         // samples as a SpectrumManager belongs to one thread
+    private final StringBuilder susTotalInfo = new StringBuilder();  // reused by computeSUsTotalMaxPower
+    private double[] sinrGains = new double[0];             // SU-to-SU linear gains [tx][rx] for SINR calculation
+    private double[] sinrSignal = new double[0];            // each SU's gain to its own rx
+    private double[] sinrInterference = new double[0];      // interference(mW) at each SU's rx
+    private double[] sinrPower = new double[0];             // SUs' powers(mW)
+    private double[] sinrLinear = new double[0];            // SINR(linear) of each SU's rx
+    private final PathLossMatrix pathLossMatrix;            // path-loss between PUs/SUs and PURs of current sample
+    private final SampleSnapshot snapshot;                  // PUs' ON flags and power, and PURs' capacity as arrays;
+                                                            // what max-power computations read
+    private boolean crossSamplePathLoss = false;            // keep PUs' path-loss values over samples(STATIC PUs)
+    private SU[] admittedSus = new SU[0];                   // SUs admitted incrementally(admitSU), indexed by slot
+    private int[] freeSlots = new int[0];                   // slots of released SUs to be reused
+    private int freeSlotNum = 0;                            // number of valid entries in freeSlots
+    private int usedSlotNum = 0;                            // slots handed out so far(admitted or freed)
+    private boolean admissionRows = false;                  // SU rows of the path-loss matrix hold admitted SUs'(by
+                                                            // slot) values instead of the SUs array's(by index)
+    private boolean parallelPUs = false;                    // compute PURs' power from PUs per PU in parallel
+    private PathLossLowerBound pathLossLowerBound = null;   // if set, PURs are scanned nearest-first with pruning
+    private ShadowingField shadowing = null;                // if set, the sample's correlated noise is added to the
+                                                            // model's(mean) path-loss
+    private PURGridIndex purIndex = null;                   // index over PURs of ON PUs; built lazily per sample
+    private static final double BOUND_MARGIN = 1e-6;        // dB; guards pruning against rounding of dB conversions
+    private static final double NEW_RX_POWER = 0.0;         // received power(dBm) of a new RX(RX's default); PUR's
+                                                            // power from its own PU is added on top of it
 
     /**Spectrum Manager's constructor
      * @param pus array of PU
@@ -45,6 +73,8 @@ public class SpectrumManager {
         this.shape = shape;
         this.cellSize = cellSize;
         this.noiseFloor = noiseFloor;
+        this.pathLossMatrix = pus == null ? null : new PathLossMatrix(pus, pus.length + 1);
+        this.snapshot = pus == null ? null : new SampleSnapshot();
 //        this.susOptimalPower = new double[5];
     }
 
@@ -94,13 +124,16 @@ public class SpectrumManager {
             return;
         for (PU pu : this.pus)
             pu.resetPurs();
+        this.snapshot.capture(this.pus);
         computePURsReceivedPowerFromPUs(this.pus);
         // check if any pur is violated by another PU
-        for (PU pu : this.pus)
-            if (pu.isON())
-                for (PUR pur : pu.getPurs())
-                    if (pur.getInterferenceCapacity() == Double.NEGATIVE_INFINITY)
-                        this.purViolated = true;
+        BitSet puOn = this.snapshot.getPuOn();
+        int[] purOffset = this.snapshot.getPurOffset();
+        double[] purCapacity = this.snapshot.getPurCapacity();
+        for (int puIdx = puOn.nextSetBit(0); puIdx >= 0; puIdx = puOn.nextSetBit(puIdx + 1))
+            for (int pur = purOffset[puIdx]; pur < purOffset[puIdx + 1]; pur++)
+                if (purCapacity[pur] == Double.NEGATIVE_INFINITY)
+                    this.purViolated = true;
         if (!this.purViolated)  // continues if there is no interference to a PUR by a PU
             computePURsReceivedPowerFromSUs();
         
@@ -108,23 +141,30 @@ public class SpectrumManager {
 
     // compute PUR received power from PUs
     private void computePURsReceivedPowerFromPUs(PU[] pus) {
-        for (PU pu : pus){
-            if (pu.isON())
-                for (PUR pur : pu.getPurs()) {
-                    // this is done because PUR location information is relative to its PU
-                    RX purRX = new RX(new Element(pu.getTx().getElement().getLocation().add(
-                            pur.getRx().getElement().getLocation()),
-                            pur.getRx().getElement().getHeight()));
-                    pur.getRx().setReceived_power(powerWithPathLoss(pu.getTx(), purRX)); // power from its own PU
-                    // now calculate power from other PUs(interference)
-                    for (PU npu : pus)
-                        if (npu.isON() && npu != pu) {
-                            double npuPurPathLoss = this.propagationModel.pathLoss(
-                                    npu.getTx().getElement().mul(this.cellSize), purRX.getElement().mul(this.cellSize));
-                            pur.addInterference(npu.getPuId(), npu.getTx().getPower() - npuPurPathLoss);
-                        }
-                }
-            }
+        if (this.parallelPUs)   // each PU's iteration only writes its own PURs and path-loss matrix columns
+            IntStream.range(0, pus.length).parallel().forEach(puIdx -> computePURsReceivedPowerFromPUs(pus, puIdx));
+        else
+            for (int puIdx = 0; puIdx < pus.length; puIdx++)
+                computePURsReceivedPowerFromPUs(pus, puIdx);
+    }
+
+    // compute received power of PURs of one PU from all PUs; ON flags and power come from the snapshot
+    private void computePURsReceivedPowerFromPUs(PU[] pus, int puIdx) {
+        if (!this.snapshot.isOn(puIdx))
+            return;
+        PU pu = pus[puIdx];
+        BitSet puOn = this.snapshot.getPuOn();
+        double[] puPower = this.snapshot.getPuPower();
+        for (int purIdx = 0; purIdx < pu.getPurs().length; purIdx++) {
+            PUR pur = pu.getPurs()[purIdx];
+            pur.getRx().setReceived_power(powerWithPathLoss(puPower[puIdx], puPurPathLoss(puIdx, puIdx, purIdx),
+                    NEW_RX_POWER)); // power from its own PU
+            // now calculate power from other PUs(interference)
+            for (int npuIdx = puOn.nextSetBit(0); npuIdx >= 0; npuIdx = puOn.nextSetBit(npuIdx + 1))
+                if (npuIdx != puIdx)
+                    pur.addInterference(npuIdx, puPower[npuIdx] - puPurPathLoss(npuIdx, puIdx, purIdx));
+            this.snapshot.setCapacity(this.pathLossMatrix.column(puIdx, purIdx), pur.getInterferenceCapacity());
+        }
     }
 
     // compute PUR received power from SUs. First, SUs power is calculated and then PURs are updated
@@ -133,31 +173,70 @@ public class SpectrumManager {
             return;
         for (int i = 0; i < this.sus.length - 1; i++) {  // all sus' max power except the last one is calculated
             SU su = this.sus[i];
-            su.getTx().setPower(computeSUMaxPower(su));
+            su.getTx().setPower(computeSUMaxPower(su, i));
             if (su.getTx().getPower() != Double.NEGATIVE_INFINITY) // update PURs received power from SUs
-                for (PU pu : this.pus)
-                    for (PUR pur : pu.getPurs()){
-                        // pur location is relational and it should be updated first
-                        Element purElement = new Element(pu.getTx().getElement().getLocation().add(
-                                pur.getRx().getElement().getLocation()), pur.getRx().getElement().getHeight());
-                        double suPurPathLoss = this.propagationModel.pathLoss(su.getTx().getElement().mul(this.cellSize),
-                                purElement.mul(this.cellSize));
-                        pur.addInterference(su.getSuId(), su.getTx().getPower() - suPurPathLoss);
-
-                    }
+                addSUInterference(this.pus.length + i, su);
+        }
+    }
+
+    // add an SU's interference(row of the path-loss matrix) to PURs of ON PUs and update their capacity; PURs of an
+    // OFF PU are never checked
+    private void addSUInterference(int row, SU su) {
+        BitSet puOn = this.snapshot.getPuOn();
+        double suPower = su.getTx().getPower();
+        for (int puIdx = puOn.nextSetBit(0); puIdx >= 0; puIdx = puOn.nextSetBit(puIdx + 1)) {
+            PU pu = this.pus[puIdx];
+            for (int purIdx = 0; purIdx < pu.getPurs().length; purIdx++) {
+                PUR pur = pu.getPurs()[purIdx];
+                pur.addInterference(row, suPower - purPathLoss(row, su.getTx().getElement(), pu, puIdx, purIdx));
+                this.snapshot.setCapacity(this.pathLossMatrix.column(puIdx, purIdx), pur.getInterferenceCapacity());
+            }
         }
     }
 
+    // path-loss between a PU(row txPuIdx of the matrix) and a PUR; the PU's element is only read on a miss
+    private double puPurPathLoss(int txPuIdx, int puIdx, int purIdx){
+        double loss = this.pathLossMatrix.get(txPuIdx, this.pathLossMatrix.column(puIdx, purIdx));
+        return Double.isNaN(loss) ?
+                purPathLoss(txPuIdx, this.pus[txPuIdx].getTx().getElement(), this.pus[puIdx], puIdx, purIdx) : loss;
+    }
+
+    // path-loss between a transmitter(PU or SU slot of the matrix) and a PUR; computed once per sample
+    private double purPathLoss(int txSlot, Element txElement, PU pu, int puIdx, int purIdx){
+        int column = this.pathLossMatrix.column(puIdx, purIdx);
+        double loss = this.pathLossMatrix.get(txSlot, column);
+        if (Double.isNaN(loss)) {
+            loss = pathLoss(txElement.mul(this.cellSize), pu.getScaledPurElement(purIdx, this.cellSize),
+                    this.cellSize);
+            this.pathLossMatrix.set(txSlot, column, loss);
+        }
+        return loss;
+    }
+
     // this method power value of receiver after transmitter effect. (return = rx_power + tx_power - path_loss)
     private double powerWithPathLoss(TX tx, RX rx){
         if (tx.getPower() == Double.NEGATIVE_INFINITY)
             return rx.getReceived_power();
-        double loss = this.propagationModel.pathLoss(tx.getElement().mul(this.cellSize),
-                rx.getElement().mul(this.cellSize));
+        double loss = pathLoss(tx.getElement().mul(this.cellSize), rx.getElement().mul(this.cellSize),
+                this.cellSize);
         return WirelessTools.getDB(WirelessTools.getDecimal(tx.getPower() - loss) +
                 WirelessTools.getDecimal(rx.getReceived_power()));
     }
 
+    // model's path-loss plus the pair's shadowing noise in the sample if there is a field; scale is meters of a cell
+    // in the elements' locations
+    private double pathLoss(Element tx, Element rx, int scale){
+        double loss = this.propagationModel.pathLoss(tx, rx);
+        return this.shadowing == null ? loss : loss + this.shadowing.noise(tx, rx, scale);
+    }
+
+    // same as powerWithPathLoss(TX, RX) when path-loss is already known
+    private static double powerWithPathLoss(double txPower, double loss, double rxPower){
+        if (txPower == Double.NEGATIVE_INFINITY)
+            return rxPower;
+        return WirelessTools.getDB(WirelessTools.getDecimal(txPower - loss) + WirelessTools.getDecimal(rxPower));
+    }
+
     /**Compute maximum power allowed for the requesting SU
      * @param existingComputeSkip use true when you do not want to recompute existing(PUs and non-requesting SUs)
      *                            to speedup
@@ -165,12 +244,23 @@ public class SpectrumManager {
      * @throws RuntimeException in case of Splat! propagation model
      * @since 1.0*/
     public double computeSUMAXPower(boolean existingComputeSkip){
+        existingComputeSkip &= this.shadowing == null;     // PUs' path-loss changes with the sample's field
         this.purViolated = false;
         this.suMaxPower = Double.NEGATIVE_INFINITY;
-        if (!existingComputeSkip)
+        if (this.pathLossMatrix != null) {
+            if (existingComputeSkip || (this.crossSamplePathLoss && this.shadowing == null))
+                this.pathLossMatrix.invalidateFrom(this.pus.length);   // only SUs are new
+            else
+                this.pathLossMatrix.invalidate();
+            this.admissionRows = false;
+        }
+        if (!existingComputeSkip) {
+            clearAdmission();
+            this.purIndex = null;   // PUs might have moved or turned ON/OFF
             computeReceivedPower();
+        }
         if (this.sus != null && !this.purViolated){
-            this.suMaxPower = computeSUMaxPower(this.sus[this.sus.length - 1]);
+            this.suMaxPower = computeSUMaxPower(this.sus[this.sus.length - 1], this.sus.length - 1);
             this.isAllowed = this.sus[this.sus.length - 1].getTx().getPower() <= this.suMaxPower;
             return this.suMaxPower;
         }
@@ -179,98 +269,200 @@ public class SpectrumManager {
     }
 
     /**Compute maximum total SU powers they can send all together. This method tries to maximize total SUs power, from
-     * all SUs, at the same time*/
+     * all SUs, at the same time(SUPowerOptimizer). Path-loss values between SUs and PURs come from the path-loss
+     * matrix, so it should be called after computeSUMAXPower.*/
     public String computeSUsTotalMaxPower() {
-        StringBuilder susTotalInfo = new StringBuilder("");
-        if (this.pus == null || this.purViolated) // if there is no PUs
+        if (!optimizeSUsTotalPower())
             return "-Infinity";
 
-        SU[] susTmp = new SU[this.sus.length];
+        StringBuilder susTotalInfo = this.susTotalInfo;
+        susTotalInfo.setLength(0);
+        susTotalInfo.append(sus.length).append(",");
         for (int i = 0; i < this.sus.length; i++){
-            susTmp[i] = new SU(this.sus[i]);
+            appendFixed3(susTotalInfo.append(this.sus[i].getTx().getElement().getLocation()).append(','),
+                    this.susOptimalPower[i]);    // same as SU.toString() with optimal power
+            if (i < this.sus.length - 1)
+                susTotalInfo.append(",");
         }
+        return susTotalInfo.toString();
+    }
 
-        double[] susLow = new double[this.sus.length];
-        double[] susHigh = new double[this.sus.length];
-        double diff = 0.1;  // a value that indicates when the binary search ends.
-        boolean allSatisfied = false;
-        Arrays.fill(susLow, this.noiseFloor);
-        Arrays.fill(susHigh, 100.0);  // 100 dB power as a max value
+    // append value as String.format("%.3f") would(half-up, 3 decimals) without a Formatter
+    static StringBuilder appendFixed3(StringBuilder builder, double value){
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e15)
+            return builder.append(String.format("%.3f", value));     // not on the path of sample values
+        if (Double.doubleToRawLongBits(value) < 0)      // "-0.000" for small negative values as well
+            builder.append('-');
+        long thousandths = Math.round(Math.abs(value) * 1000);
+        builder.append(thousandths / 1000).append('.');
+        long fraction = thousandths % 1000;
+        if (fraction < 100)
+            builder.append(fraction < 10 ? "00" : "0");
+        return builder.append(fraction);
+    }
 
+    /**Same as computeSUsTotalMaxPower() but values are added to record instead of being formatted.
+     * @param record record to be filled("-Infinity" becomes a single -inf value)*/
+    public void computeSUsTotalMaxPower(SampleRecord record) {
+        if (!optimizeSUsTotalPower()) {
+            record.add(Double.NEGATIVE_INFINITY);
+            return;
+        }
+        record.add(this.sus.length);
+        for (int i = 0; i < this.sus.length; i++)
+            record.add(this.sus[i].getTx().getElement().getLocation()).add(this.susOptimalPower[i]);
+    }
 
-        while (!allSatisfied){
-            PU[] pusTmp = new PU[this.pus.length];
-            for (int i = 0; i < this.pus.length; i++){
-                pusTmp[i] = new PU(this.pus[i]);
-                pusTmp[i].setON(this.pus[i].isON());
-            }
-            computePURsReceivedPowerFromPUs(pusTmp);
-
-            double[] mid = new double[this.sus.length];
-            System.arraycopy(susLow, 0, mid, 0, this.sus.length);
-            int targetIndex = -1;
-            double maxJump = Double.NEGATIVE_INFINITY;
-            for (int i = 0; i < this.sus.length; i++) {
-                if (susHigh[i] - susLow[i] > maxJump) {
-                    maxJump = susHigh[i] - susLow[i];
-                    targetIndex = i;
-                }
-            }
-            mid[targetIndex] = susLow[targetIndex] + (susHigh[targetIndex] - susLow[targetIndex])/2;
-            for (int i = 0; i < this.sus.length; i++){
-                susTmp[i].getTx().setPower(mid[i]);
-            }
-            if (isSUsCauseInterference(pusTmp, susTmp, this.propagationModel, this.cellSize)) {
-                susHigh[targetIndex] = mid[targetIndex];
-            }else {
-                susLow[targetIndex] = mid[targetIndex];
-            }
+    // run SUPowerOptimizer over ON PUs' PURs and keep the result in susOptimalPower; false if there are no PUs or
+    // a PUR is already violated
+    private boolean optimizeSUsTotalPower() {
+        if (this.pus == null || this.purViolated) // if there is no PUs
+            return false;
+        useBatchRows();
 
-            allSatisfied = true;
-            for (int i = 0; i < this.sus.length; i++){
-                if (susHigh[i] - susLow[i] > diff){
-                    allSatisfied = false;
-                    break;
-                }
+        // PURs of ON PUs, their capacity left by PUs only, and SU x PUR gains
+        int purNum = 0;
+        for (PU pu : this.pus)
+            if (pu.isON())
+                purNum += pu.getPurs().length;
+        this.suPowerOptimizer.reset(this.sus.length, purNum);
+        int suSlots = Math.max(this.sus.length, this.usedSlotNum);  // SUs whose interference PURs may hold
+        int column = 0;
+        for (int puIdx = 0; puIdx < this.pus.length; puIdx++) {
+            PU pu = this.pus[puIdx];
+            if (!pu.isON())
+                continue;
+            for (int purIdx = 0; purIdx < pu.getPurs().length; purIdx++, column++) {
+                PUR pur = pu.getPurs()[purIdx];
+                double capacity = pur.getInterferenceCapacityDecimal();
+                for (int slot = 0; slot < suSlots; slot++)    // give back what SUs have taken
+                    capacity += WirelessTools.getDecimal(pur.getInterferencePowerFrom(this.pus.length + slot));
+                this.suPowerOptimizer.setCapacity(column, capacity);
+                for (int suIdx = 0; suIdx < this.sus.length; suIdx++)
+                    this.suPowerOptimizer.setGain(suIdx, column, WirelessTools.getDecimal(-purPathLoss(
+                            this.pus.length + suIdx, this.sus[suIdx].getTx().getElement(), pu, puIdx, purIdx)));
             }
         }
-        this.susOptimalPower = new double[this.sus.length];
-        susTotalInfo.append(sus.length).append(",");
-        for (int i = 0; i < this.sus.length - 1; i++){
-            susTmp[i].getTx().setPower(susLow[i]);
-            susTotalInfo.append(susTmp[i]).append(",");
-            this.susOptimalPower[i] = susTmp[i].getTx().getPower();
+        // 100 dB power as a max value and 0.1 dB as a value that indicates when the binary search ends.
+        this.suPowerOptimizer.optimize(this.noiseFloor, 100.0, 0.1);
+        if (this.susOptimalPower == null || this.susOptimalPower.length < this.sus.length)
+            this.susOptimalPower = new double[this.sus.length];
+        for (int i = 0; i < this.sus.length; i++)
+            this.susOptimalPower[i] = this.suPowerOptimizer.getPower(i);
+        return true;
+    }
+
+    /**Start incremental admission mode. PURs' received power and interference are computed from ON PUs only and
+     * all previously admitted SUs are dropped. SUs are then added and removed one by one using admitSU and releaseSU.
+     * Spectrum sensors are not updated in this mode. Calling computeSUMAXPower(false) afterwards recomputes PURs from
+     * the SUs array and discards admitted SUs' contribution.
+     * @return false if a PUR is already violated by PUs; no SU can be admitted in that case
+     * @throws RuntimeException in case of Splat! propagation model
+     * @since 1.0*/
+    public boolean startAdmission(){
+        this.purViolated = false;
+        clearAdmission();
+        this.purIndex = null;
+        if (this.pathLossMatrix != null) {
+            if (this.crossSamplePathLoss && this.shadowing == null)
+                this.pathLossMatrix.invalidateFrom(this.pus.length);
+            else
+                this.pathLossMatrix.invalidate();
+            this.admissionRows = false;
         }
-        susTmp[susTmp.length - 1].getTx().setPower(susLow[susTmp.length - 1]);
-        susTotalInfo.append(susTmp[susTmp.length - 1]);
-        this.susOptimalPower[susOptimalPower.length - 1] = susTmp[susTmp.length - 1].getTx().getPower();
+        SU[] sus = this.sus;
+        this.sus = null;        // PURs only receive power from PUs
+        computePURsReceivedPower();
+        this.sus = sus;
+        return !this.purViolated;
+    }
 
-        return susTotalInfo.toString();
+    // drop all incrementally admitted SUs
+    private void clearAdmission(){
+        Arrays.fill(this.admittedSus, null);
+        this.freeSlotNum = 0;
+        this.usedSlotNum = 0;
     }
 
-    private static boolean isSUsCauseInterference(PU[] pus, SU[] sus, PropagationModel propagationModel, int cellSize){
-        if (sus == null) // no computations when there is no or one sensor
-            return false;
-        for (SU su : sus) {  // all sus' max power except the last one is calculated
-            if (su.getTx().getPower() != Double.NEGATIVE_INFINITY) // update PURs received power from SUs
-                for (PU pu : pus) {
-                    if (!pu.isON())
-                        continue;
-                    for (PUR pur : pu.getPurs()) {
-                        // pur location is relational and it should be updated first
-                        Element purElement = new Element(pu.getTx().getElement().getLocation().add(
-                                pur.getRx().getElement().getLocation()), pur.getRx().getElement().getHeight());
-                        double suPurPathLoss = propagationModel.pathLoss(su.getTx().getElement().mul(cellSize),
-                                purElement.mul(cellSize));
-                        pur.addInterference(su.getSuId(), su.getTx().getPower() - suPurPathLoss);
-                        if (pur.getInterferenceCapacity() == Double.NEGATIVE_INFINITY)
-                            return true;
-                    }
-                }
+    /**Admit an SU with the maximum power it can send without violating any PUR and add its interference to PURs.
+     * Only the new SU's contribution is computed, so each call costs O(#PURs). SU's power is set to the allocated
+     * value.
+     * @param su requesting SU
+     * @return admission handle to be passed to releaseSU, or -1 if SU could not be admitted(no ON PU, or its power
+     * is limited by a PUR with no capacity above the noise floor left)
+     * @throws RuntimeException in case of Splat! propagation model
+     * @since 1.0*/
+    public int admitSU(SU su){
+        if (this.pus == null || this.purViolated)
+            return -1;
+        int slot = this.freeSlotNum > 0 ? this.freeSlots[--this.freeSlotNum] : this.usedSlotNum++;
+        int row = this.pus.length + slot;
+        this.pathLossMatrix.invalidateRow(row);  // row may belong to a released SU or an SU of the SUs array
+        this.admissionRows = true;
+        double maxPower = computeSUMaxPower(su, slot);
+        if (maxPower == Double.POSITIVE_INFINITY || limitedByFullPUR(su, row, maxPower)) {  // no ON PU or no room
+            releaseSlot(slot);
+            return -1;
         }
+        su.getTx().setPower(maxPower);
+        addSUInterference(row, su);
+        if (slot >= this.admittedSus.length)
+            this.admittedSus = Arrays.copyOf(this.admittedSus, Math.max(slot + 1, this.admittedSus.length * 2));
+        this.admittedSus[slot] = su;
+        return slot;
+    }
+
+    /**Release an admitted SU and remove its interference from PURs; costs O(#PURs).
+     * @param handle value returned by admitSU
+     * @throws IllegalArgumentException if handle does not belong to an admitted SU
+     * @since 1.0*/
+    public void releaseSU(int handle){
+        if (handle < 0 || handle >= this.admittedSus.length || this.admittedSus[handle] == null)
+            throw new IllegalArgumentException(String.format("No SU is admitted with handle %1$d.", handle));
+        int row = this.pus.length + handle;
+        BitSet puOn = this.snapshot.getPuOn();
+        for (int puIdx = puOn.nextSetBit(0); puIdx >= 0; puIdx = puOn.nextSetBit(puIdx + 1))
+            for (int purIdx = 0; purIdx < this.pus[puIdx].getPurs().length; purIdx++) {
+                PUR pur = this.pus[puIdx].getPurs()[purIdx];
+                pur.deleteInterferencePowerFrom(row);
+                this.snapshot.setCapacity(this.pathLossMatrix.column(puIdx, purIdx), pur.getInterferenceCapacity());
+            }
+        this.admittedSus[handle] = null;
+        releaseSlot(handle);
+    }
+
+    // whether SU's max power is set by a PUR with no capacity above the noise floor left. Max power treats such
+    // capacities(including -inf and NaN of a violated PUR) as the noise floor, so it is never -inf; the SU would
+    // only fit because of that
+    private boolean limitedByFullPUR(SU su, int row, double maxPower){
+        BitSet puOn = this.snapshot.getPuOn();
+        int[] purOffset = this.snapshot.getPurOffset();
+        double[] purCapacity = this.snapshot.getPurCapacity();
+        for (int puIdx = puOn.nextSetBit(0); puIdx >= 0; puIdx = puOn.nextSetBit(puIdx + 1))
+            for (int pur = purOffset[puIdx]; pur < purOffset[puIdx + 1]; pur++)
+                if (!(purCapacity[pur] > this.noiseFloor) && this.noiseFloor + purPathLoss(row,
+                        su.getTx().getElement(), this.pus[puIdx], puIdx, pur - purOffset[puIdx]) <= maxPower +
+                        BOUND_MARGIN)
+                    return true;
         return false;
     }
 
+    // SU rows of the path-loss matrix are shared by admitted SUs(slot) and the SUs array(index); drop admitted SUs'
+    // values before a computation reads them by index
+    private void useBatchRows(){
+        if (this.admissionRows) {
+            this.pathLossMatrix.invalidateFrom(this.pus.length);
+            this.admissionRows = false;
+        }
+    }
+
+    // put slot back to the free list
+    private void releaseSlot(int slot){
+        if (this.freeSlotNum == this.freeSlots.length)
+            this.freeSlots = Arrays.copyOf(this.freeSlots, Math.max(4, this.freeSlots.length * 2));
+        this.freeSlots[this.freeSlotNum++] = slot;
+    }
+
     /**will be used in case where user provides power for the requesting SU(last one of the array)
      * @return if the request is accepted
      * @since 1.0*/
@@ -294,6 +486,24 @@ public class SpectrumManager {
                 this.sus.length, susInformation(), this.isAllowed ? "1":"0");
     }
 
+    /**
+     * Same as pusSample() but values are added to record instead of being formatted.
+     * @param record record to be filled
+     * @since 1.0*/
+    public void pusSample(SampleRecord record){
+        int puOnNum = 0;
+        for (PU pu : this.pus)
+            if (pu.isON())
+                puOnNum++;
+        record.add(puOnNum);
+        for (PU pu : this.pus)
+            if (pu.isON())
+                record.add(pu.getTx().getElement().getLocation()).add(pu.getTx().getPower());
+        record.add(this.sus.length);
+        susInformation(record);
+        record.add(this.isAllowed ? 1 : 0);
+    }
+
     /**
      * Generate information about Spectrum Sensors and SUs in format of "#Sensor1_power,Sensor2_power...#SUs,SU1Location..."
      * @return a string consist of SSs' and SUs' information
@@ -307,6 +517,15 @@ public class SpectrumManager {
         return suInformation.toString();
     }
 
+    /**
+     * Same as susInformation() but values(location and power of each SU) are added to record.
+     * @param record record to be filled
+     * @since 1.0*/
+    public void susInformation(SampleRecord record){
+        for (SU su : this.sus)
+            record.add(su.getTx().getElement().getLocation()).add(su.getTx().getPower());
+    }
+
     /**
      * Generate information about Spectrum Sensors and SUs in format of "#Sensor1_power,Sensor2_power...#SUs,SU1Location..."
      * @return a string consist of SSs' and SUs' information
@@ -321,6 +540,20 @@ public class SpectrumManager {
                 this.sus.length, susInformation(), this.isAllowed ? "1":"0");
     }
 
+    /**
+     * Same as sssSample() but values are added to record instead of being formatted.
+     * @param record record to be filled
+     * @since 1.0*/
+    public void sssSample(SampleRecord record){
+        record.add(this.sss.length);
+        if (this.suMaxPower != Double.NEGATIVE_INFINITY)
+            for (SpectrumSensor spectrumSensor : this.sss)
+                record.add(spectrumSensor.getRx().getReceived_power());
+        record.add(this.sus.length);
+        susInformation(record);
+        record.add(this.isAllowed ? 1 : 0);
+    }
+
     /**
      * Generate information about the requesting su(last one) "#SULocation,maxPowerAllocated"
      * @return a string consist of SUs' information
@@ -330,62 +563,154 @@ public class SpectrumManager {
                 this.suMaxPower);
     }
 
-    /**Calculate the maximum(based on minimum pur's interference capacity) power(dB) SU can send.
-     * @param su requesting su*/
-    private double computeSUMaxPower(SU su){
+    /**
+     * Same as maxPowerSample() but values are added to record instead of being formatted.
+     * @param record record to be filled
+     * @since 1.0*/
+    public void maxPowerSample(SampleRecord record){
+        record.add(this.sus[this.sus.length - 1].getTx().getElement().getLocation()).add(this.suMaxPower);
+    }
+
+    /**Calculate the maximum(based on minimum pur's interference capacity) power(dB) SU can send. It runs on the
+     * snapshot's arrays and the path-loss matrix(PUR k of the snapshot is column k); PU/SU objects are only read to
+     * compute a missing path-loss value.
+     * @param su requesting su
+     * @param suIdx index of su in the SUs array(or admission slot)*/
+    private double computeSUMaxPower(SU su, int suIdx){
+        if (this.pathLossLowerBound != null)
+            return computeSUMaxPowerNearestFirst(su, suIdx);
         double maxPower = Double.POSITIVE_INFINITY; // find the minimum possible without bringing any interference
-        this.mostRestrictivePuIdx = null;
+        int restrictivePuIdx = -1;
+        int row = this.pus.length + suIdx;
+        BitSet puOn = this.snapshot.getPuOn();
+        int[] purOffset = this.snapshot.getPurOffset();
+        double[] purCapacity = this.snapshot.getPurCapacity();
+        for (int puIdx = puOn.nextSetBit(0); puIdx >= 0; puIdx = puOn.nextSetBit(puIdx + 1))
+            for (int pur = purOffset[puIdx]; pur < purOffset[puIdx + 1]; pur++) {
+                double loss = this.pathLossMatrix.get(row, pur);
+                if (Double.isNaN(loss))
+                    loss = purPathLoss(row, su.getTx().getElement(), this.pus[puIdx], puIdx, pur - purOffset[puIdx]);
+                double power = Math.max(purCapacity[pur], noiseFloor) + loss;
+                                // interferences lower than noiseFloor is replaced by noiseFloor
+                if (power < maxPower) {
+                    maxPower = power;
+                    restrictivePuIdx = puIdx;
+                }
+            }
+        this.mostRestrictivePuIdx = restrictivePuIdx < 0 ? null : this.pus[restrictivePuIdx];
+        return maxPower;
+    }
+
+    // same as computeSUMaxPower but PURs are visited nearest-first(grid index) and the scan stops when the path-loss
+    // lower bound shows no remaining PUR can be more restrictive
+    private double computeSUMaxPowerNearestFirst(SU su, int suIdx){
+        if (this.purIndex == null)
+            this.purIndex = new PURGridIndex(this.pus);
+        // smallest capacity(no lower than noiseFloor) over all PURs bounds the capacity of the remaining PURs
+        double minCapacityDecimal = Double.POSITIVE_INFINITY;
         for (PU pu : this.pus)
             if (pu.isON())
                 for (PUR pur : pu.getPurs()) {
-                    // pur location is relational and it should be updated first
-                    Element purElement = new Element(pu.getTx().getElement().getLocation().add(
-                            pur.getRx().getElement().getLocation()), pur.getRx().getElement().getHeight());
-                    double suPowerAtPUR = Math.max(pur.getInterferenceCapacity(), noiseFloor);
-                                            // interferences lower than noiseFloor is replaced by noiseFloor
-                    double loss = this.propagationModel.pathLoss(su.getTx().getElement().mul(this.cellSize),
-                            purElement.mul(cellSize));
-                    if (suPowerAtPUR + loss < maxPower) {
-                        maxPower = suPowerAtPUR + loss;
-                        this.mostRestrictivePuIdx = pu;
-                    }
+                    double capacity = pur.getInterferenceCapacityDecimal();
+                    if (capacity >= 0 && capacity < minCapacityDecimal)  // negative(NaN in dB) PURs are skipped
+                        minCapacityDecimal = capacity;
                 }
+        double minSuPowerAtPUR = Math.max(WirelessTools.getDB(minCapacityDecimal), noiseFloor) - BOUND_MARGIN;
+
+        double maxPower = Double.POSITIVE_INFINITY;
+        this.mostRestrictivePuIdx = null;
+        double x = su.getTx().getElement().getLocation().getCartesian().getX();
+        double y = su.getTx().getElement().getLocation().getCartesian().getY();
+        int bx = this.purIndex.bucketX(x), by = this.purIndex.bucketY(y);
+        int columns = this.purIndex.getColumns(), rows = this.purIndex.getRows();
+        for (int ring = 0; ; ring++) {
+            for (int j = Math.max(0, by - ring); j <= Math.min(rows - 1, by + ring); j++) {
+                boolean fullRow = j == by - ring || j == by + ring;
+                int step = fullRow ? 1 : Math.max(2 * ring, 1);     // inner rows only have the two side buckets
+                for (int i = bx - ring; i <= bx + ring; i += step) {
+                    if (i < 0 || i >= columns)
+                        continue;
+                    for (int entry = this.purIndex.bucketStart(i, j); entry < this.purIndex.bucketEnd(i, j); entry++)
+                        maxPower = restrictSUMaxPower(maxPower, su, suIdx, this.purIndex.getPuIdx(entry),
+                                this.purIndex.getPurIdx(entry));
+                }
+            }
+            double distance = this.purIndex.distanceOutsideRing(x, y, bx, by, ring);
+            if (distance == Double.POSITIVE_INFINITY ||
+                    minSuPowerAtPUR + this.pathLossLowerBound.minPathLoss(distance * this.cellSize) >= maxPower)
+                break;
+        }
+        return maxPower;
+    }
+
+    // check one PUR against the SU and return the new maximum power
+    private double restrictSUMaxPower(double maxPower, SU su, int suIdx, int puIdx, int purIdx){
+        PU pu = this.pus[puIdx];
+        double suPowerAtPUR = Math.max(this.snapshot.getPurCapacity()[this.pathLossMatrix.column(puIdx, purIdx)],
+                noiseFloor);
+                                // interferences lower than noiseFloor is replaced by noiseFloor
+        double loss = purPathLoss(this.pus.length + suIdx, su.getTx().getElement(), pu, puIdx, purIdx);
+        if (suPowerAtPUR + loss < maxPower) {
+            this.mostRestrictivePuIdx = pu;
+            return suPowerAtPUR + loss;
+        }
         return maxPower;
     }
 
+    // Calculate SINR(linear) of each SU's rx into sinrLinear. Path-loss values are turned into linear gains once:
+    // interference from PUs is summed directly and SU-to-SU gains are kept in a [tx][rx] matrix with a zero
+    // diagonal, so interference from other SUs is one multiply-add pass per transmitting SU over primitive arrays.
     private void calculateSusSINR(){
         // ********** Calculate SINR for each SU's rx ********
         SU[] sus = this.sus;
-        double[] suPowers = new double[this.sus.length];
+        int n = sus.length;
+        if (this.sinrGains.length < n * n)
+            this.sinrGains = new double[n * n];
+        if (this.sinrLinear.length < n) {
+            this.sinrSignal = new double[n];
+            this.sinrInterference = new double[n];
+            this.sinrPower = new double[n];
+            this.sinrLinear = new double[n];
+        }
+        double[] gains = this.sinrGains, signal = this.sinrSignal, interference = this.sinrInterference;
+        double[] power = this.sinrPower;
         double error = 4.37/5;
-        for (int suIdx = 0; suIdx < this.sus.length; suIdx++){
-            suPowers[suIdx] = this.susOptimalPower[suIdx];// + ThreadLocalRandom.current().nextDouble(-error, 0);
+        for (int suIdx = 0; suIdx < n; suIdx++){
+            power[suIdx] = WirelessTools.getDecimal(this.susOptimalPower[suIdx]);
+                                                    // + ThreadLocalRandom.current().nextDouble(-error, 0);
         }
-        for (int suIdx = 0; suIdx < sus.length; suIdx++){
+        // path-loss values are computed in the same order as before; elements are not scaled by cell size here
+        for (int suIdx = 0; suIdx < n; suIdx++){
             SU su = sus[suIdx];
-            double pathLoss = propagationModel.pathLoss(su.getTx().getElement(), su.getRxElement());
-//            double signal = WirelessTools.getDecimal(sus[suIdx].getTx().getPower() - pathLoss);
-            double signal = WirelessTools.getDecimal(suPowers[suIdx] - pathLoss);
-            // calculate interference from PUs and other SUs
-            double totalInterference = 0.0;
+            double pathLoss = pathLoss(su.getTx().getElement(), su.getRxElement(), 1);
+            signal[suIdx] = WirelessTools.getDecimal(-pathLoss);        // gain to its own rx
+            double puInterference = 0.0;
             for (PU pu : pus){
                 if (pu.isON()){
-                    double puToSuPathLoss = propagationModel.pathLoss(pu.getTx().getElement(), su.getRxElement());
-                    totalInterference += WirelessTools.getDecimal(pu.getTx().getPower() - puToSuPathLoss);
+                    double puToSuPathLoss = pathLoss(pu.getTx().getElement(), su.getRxElement(), 1);
+                    puInterference += WirelessTools.getDecimal(pu.getTx().getPower() - puToSuPathLoss);
                 }
             }
-            // interference from other SUs
-            for (int otherSuIdx = 0; otherSuIdx < sus.length; otherSuIdx++){
+            interference[suIdx] = puInterference;
+            for (int otherSuIdx = 0; otherSuIdx < n; otherSuIdx++){
                 if (suIdx != otherSuIdx){
-                    double suToSuPathLoss = propagationModel.pathLoss(sus[otherSuIdx].getTx().getElement(),
-                            su.getRxElement());
-//                    totalInterference += WirelessTools.getDecimal(sus[otherSuIdx].getTx().getPower() -
-//                            suToSuPathLoss);
-                    totalInterference += WirelessTools.getDecimal(suPowers[otherSuIdx] -
-                            suToSuPathLoss);
+                    double suToSuPathLoss = pathLoss(sus[otherSuIdx].getTx().getElement(), su.getRxElement(), 1);
+                    gains[otherSuIdx * n + suIdx] = WirelessTools.getDecimal(-suToSuPathLoss);
                 }
+                else
+                    gains[otherSuIdx * n + suIdx] = 0.0;
             }
-            su.setRxSINR(WirelessTools.getDB(signal / totalInterference));
+        }
+        // interference from other SUs; contiguous inner loop that the JIT can vectorize
+        for (int tx = 0; tx < n; tx++){
+            double txPower = power[tx];
+            int row = tx * n;
+            for (int rx = 0; rx < n; rx++)
+                interference[rx] += gains[row + rx] * txPower;
+        }
+        for (int suIdx = 0; suIdx < n; suIdx++){
+            this.sinrLinear[suIdx] = signal[suIdx] * power[suIdx] / interference[suIdx];
+            sus[suIdx].setRxSINR(WirelessTools.getDB(this.sinrLinear[suIdx]));
         }
     }
 
@@ -396,17 +721,42 @@ public class SpectrumManager {
         SU[] sus = this.sus;
         double bandwidth = 1e6;  // in hertz
         double error = 3.4/5;//ThreadLocalRandom.current().nextDouble(-4.93, 4.93);  // in dB
+        double errorFactor = WirelessTools.getDecimal(-error);     // SINR(dB) - error in linear domain
+        double rateFactor = bandwidth / Math.log(2);
         double[] dataRate = new double[sus.length];
-        for (int suIdx = 0; suIdx < sus.length; suIdx++){
-            double tmp = 1 + WirelessTools.getDecimal(sus[suIdx].getRxSINR() - error);
-            dataRate[suIdx] = bandwidth * Math.log(tmp) / Math.log(2);
-        }
+        for (int suIdx = 0; suIdx < sus.length; suIdx++)
+            dataRate[suIdx] = rateFactor * Math.log(1 + this.sinrLinear[suIdx] * errorFactor);
         return dataRate;
     }
 
     // ****** Getter & Setter
     public void setSus(SU[] sus) { this.sus = sus; }
 
+    /**Keep path-loss values between PUs and PURs over samples. Use it only when PUs do not move(STATIC PUs).
+     * @param crossSamplePathLoss true to reuse PUs' path-loss values in the next samples*/
+    public void setCrossSamplePathLoss(boolean crossSamplePathLoss) { this.crossSamplePathLoss = crossSamplePathLoss; }
+
+    /**Compute PURs' received power from PUs in parallel(one task per PU, common fork-join pool). Each PU's task
+     * only writes its own PURs and its own columns of the path-loss matrix, and every PUR adds its interferers in the
+     * same order, so results are bit-identical to the sequential path as long as the propagation model is
+     * deterministic. The propagation model is called from several threads and must be thread-safe; LogDistancePM
+     * without noise is, Splat! and noisy models are not guaranteed to be.
+     * @param parallelPUs true to enable; false(default) is sequential*/
+    public void setParallelPUs(boolean parallelPUs) { this.parallelPUs = parallelPUs; }
+
+    /**Scan PURs nearest-first and stop when no remaining PUR can be more restrictive. Pruning is exact as long as
+     * the bound holds for the propagation model(e.g. not for a noisy model); null(default) scans all PURs.
+     * @param pathLossLowerBound path-loss lower bound of the propagation model or null*/
+    public void setPathLossLowerBound(PathLossLowerBound pathLossLowerBound) {
+        this.pathLossLowerBound = pathLossLowerBound;
+    }
+
+    /**Add spatially correlated shadowing noise of the sample to every path-loss; the propagation model should then
+     * give the mean path-loss(no noise of its own). The owner moves the field to a new sample(ShadowingField.next)
+     * before computing it. Path-loss values are not kept over samples and existing powers are always recomputed.
+     * @param shadowing field of this manager's thread or null(default) for the model's path-loss only*/
+    public void setShadowing(ShadowingField shadowing) { this.shadowing = shadowing; }
+
     public PU[] getPus() { return pus; }
 
     public SU[] getSus() { return sus; }
@@ -421,5 +771,14 @@ public class SpectrumManager {
 
     public PU getMostRestrictivePuIdx() { return mostRestrictivePuIdx; }
 
+    /**@return struct-of-arrays state of the current sample max-power computations run on; kept up to date by this
+     * manager and must not be modified; null if there are no PUs*/
+    public SampleSnapshot getSnapshot() { return snapshot; }
+
     public double getSuMaxPower() { return suMaxPower; }
+
+    /**@return SU admitted with handle or null if there is none*/
+    public SU getAdmittedSu(int handle) {
+        return handle >= 0 && handle < admittedSus.length ? admittedSus[handle] : null;
+    }
 }
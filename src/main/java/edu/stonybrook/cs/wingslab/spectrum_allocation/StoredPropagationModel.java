@@ -0,0 +1,62 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.Element;
+import edu.stonybrook.cs.wingslab.commons.PropagationModel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Propagation model answering from a PathLossStore and asking the wrapped model(e.g. Splat) only for values that are
+ * not stored yet; those are added to the store for all other workers and runs.
+ * Workers have their own wrapped model(see SharedGeometry) and share the store.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class StoredPropagationModel extends PropagationModel implements PropagationModelDecorator {
+    private final PropagationModel model;       // computes values missing from the store
+    private final PathLossStore store;          // shared by all workers
+
+    /**
+     * StoredPropagationModel constructor.
+     * @param model model computing values that are not stored
+     * @param store store of the values
+     * @since 1.0*/
+    public StoredPropagationModel(PropagationModel model, PathLossStore store){
+        super();
+        this.model = model;
+        this.store = store;
+    }
+
+    /**
+     * Path-loss between two elements; stored value if there is one.
+     * @param tx transmitter's element(location in meters)
+     * @param rx receiver's element(location in meters)
+     * @return path-loss(dB)
+     * @throws UncheckedIOException if the store cannot be read or written
+     * @since 1.0*/
+    @Override
+    public double pathLoss(Element tx, Element rx){
+        try {
+            double loss = this.store.get(tx, rx);
+            if (Double.isNaN(loss)) {
+                loss = this.model.pathLoss(tx, rx);
+                this.store.put(tx, rx, loss);
+            }
+            return loss;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Path-loss store failed.", e);
+        }
+    }
+
+    /**@return model computing values that are not stored*/
+    @Override
+    public PropagationModel getModel() { return model; }
+
+    @Override
+    public PropagationModel wrap(PropagationModel model) { return new StoredPropagationModel(model, this.store); }
+
+    public PathLossStore getStore() { return store; }
+}
@@ -1,6 +1,6 @@
 package edu.stonybrook.cs.wingslab.spectrum_allocation;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.SplittableRandom;
 
 /**
  * SyntheticPUs class creating new samples based on r_max and most restrictive PU.
@@ -18,6 +18,15 @@ public class SyntheticPUs {
      * @param pus array of existing pus
     */
     public SyntheticPUs(double rMax, PU[] pus, PU mostRestrictivePU, double minPowerAllowed, int cellSIze){
+        this(rMax, pus, mostRestrictivePU, minPowerAllowed, cellSIze, new SplittableRandom());
+    }
+
+    /**
+     * constructor drawing new powers from rand; reproducible version of the one above.
+     * @param rand random stream
+    */
+    public SyntheticPUs(double rMax, PU[] pus, PU mostRestrictivePU, double minPowerAllowed, int cellSIze,
+                        SplittableRandom rand){
         valid = false;
         int numberActivePus = 0;
         for (PU pu : pus)
@@ -31,7 +40,7 @@ public class SyntheticPUs {
                 newPus[puIdx] = new PU(pu);
                 if (pu.getTx().getElement().getLocation().distance(mostRestrictivePU.getTx().getElement().getLocation())
                 * cellSIze > rMax) {  // if distance > rMax, we can decrease the power
-                    newPus[puIdx].getTx().setPower(ThreadLocalRandom.current().nextDouble(minPowerAllowed,
+                    newPus[puIdx].getTx().setPower(rand.nextDouble(minPowerAllowed,
                             pu.getTx().getPower()));
                     valid = true;
                 }
@@ -47,6 +56,17 @@ public class SyntheticPUs {
         return valid;
     }
 
+    /**
+     * Same columns as toString(), without su information, added to record.
+     * @param record record to be filled
+     */
+    public void toRecord(SampleRecord record){
+        record.add(this.newPus.length);
+        for (PU pu : this.newPus)
+            if (pu.isON())
+                record.add(pu.getTx().getElement().getLocation()).add(pu.getTx().getPower());
+    }
+
     @Override
     public String toString(){
         StringBuilder puInformation = new StringBuilder(""); // better to use StringBuilder for concatenation
@@ -0,0 +1,69 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * SampleWriter writing comma-separated lines(the original format). Lines go through a PrintWriter or, when the file
+ * is compressed, a line at a time to a channel so compressed blocks hold whole lines.
+ * @author Mohammad Ghaderibaneh <mghaderibane@cs.stonybrook.edu>
+ * @version 1.0
+ * @since 1.0
+ * */
+public class TextSampleWriter implements SampleWriter {
+    private final PrintWriter writer;             // null if lines go to channel
+    private final WritableByteChannel channel;    // null if lines go to writer
+
+    /**
+     * TextSampleWriter constructor.
+     * @param file file to be created(overwritten)
+     * @throws FileNotFoundException if the file cannot be created
+     * @since 1.0*/
+    public TextSampleWriter(File file) throws FileNotFoundException {
+        super();
+        this.writer = new PrintWriter(file);
+        this.channel = null;
+    }
+
+    /**
+     * TextSampleWriter constructor writing each line as one write call to channel.
+     * @param channel channel of the file(e.g. a BlockGzipChannel); closed when the writer is closed
+     * @since 1.0*/
+    public TextSampleWriter(WritableByteChannel channel){
+        super();
+        this.writer = null;
+        this.channel = channel;
+    }
+
+    @Override
+    public void write(Supplier<String> line, Consumer<SampleRecord> record) throws IOException {
+        if (this.writer != null)
+            this.writer.println(line.get());
+        else {
+            ByteBuffer bytes = ByteBuffer.wrap((line.get() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining())
+                this.channel.write(bytes);
+        }
+    }
+
+    @Override
+    public Format getFormat() { return Format.TEXT; }
+
+    @Override
+    public void close() throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+            return;
+        }
+        this.writer.close();
+        if (this.writer.checkError())
+            throw new IOException("Writing text samples failed.");
+    }
+}
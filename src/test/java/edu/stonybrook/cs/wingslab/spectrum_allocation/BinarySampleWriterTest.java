@@ -0,0 +1,94 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+public class BinarySampleWriterTest extends TestCase {
+
+    // text line supplier of a binary writer; never called
+    private static String noTextLine() {
+        throw new AssertionError("text line of a binary writer");
+    }
+
+    public void testRecords() throws IOException {
+        Path path = Files.createTempFile("samples", ".bin");
+        try {
+            try (SampleWriter writer = SampleWriter.open(path.toFile(), SampleWriter.Format.BINARY, "x,y,power")) {
+                for (int sample = 0; sample < 5000; sample++) {    // more than one buffer
+                    final int value = sample;
+                    writer.write(BinarySampleWriterTest::noTextLine,
+                            record -> record.add(value).add(value / 3.0).add(-value));
+                }
+                writer.write(BinarySampleWriterTest::noTextLine, record -> record.add(Double.NEGATIVE_INFINITY));
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+            for (byte b : BinarySampleWriter.MAGIC)
+                assertEquals(b, buffer.get());
+            assertEquals(BinarySampleWriter.VERSION, buffer.getInt());
+            int headerLength = buffer.getInt();
+            assertEquals(headerLength, BinarySampleWriter.headerLength(path));
+            assertEquals(0, buffer.getInt());           // variable-length records
+            byte[] schema = new byte[buffer.getInt()];
+            buffer.get(schema);
+            assertEquals("x,y,power", new String(schema, StandardCharsets.UTF_8));
+            assertEquals(headerLength, buffer.position());
+            for (int sample = 0; sample < 5000; sample++) {
+                assertEquals(3, buffer.getInt());
+                assertEquals(sample, buffer.getDouble(), 0.0);
+                assertEquals(sample / 3.0, buffer.getDouble(), 0.0);
+                assertEquals(-sample, buffer.getDouble(), 0.0);
+            }
+            assertEquals(1, buffer.getInt());
+            assertEquals(Double.NEGATIVE_INFINITY, buffer.getDouble());
+            assertFalse(buffer.hasRemaining());
+        }
+        finally {
+            Files.delete(path);
+        }
+    }
+
+    public void testGzipRecords() throws IOException {
+        Path path = Files.createTempFile("samples", ".binz");
+        try {
+            try (SampleWriter writer = SampleWriter.open(path.toFile(), SampleWriter.Format.BINARY,
+                    SampleWriter.Compression.GZIP, 1000, "x")) {
+                for (int sample = 0; sample < 5000; sample++) {    // many members
+                    final int value = sample;
+                    writer.write(BinarySampleWriterTest::noTextLine, record -> record.add(value));
+                }
+            }
+            int headerLength = BinarySampleWriter.headerLength(path);    // header is not compressed
+            byte[] bytes = Files.readAllBytes(path);
+            int members = 0;
+            for (int i = headerLength; i + 2 < bytes.length; i++)
+                if (bytes[i] == 0x1f && bytes[i + 1] == (byte) 0x8b && bytes[i + 2] == 8)
+                    members++;
+            assertTrue(members > 1);
+            assertFalse(bytes[0] == 0x1f && bytes[1] == (byte) 0x8b);  // not a GZIP file, so it is not named ".gz"
+            assertEquals(".binz", SampleWriter.Format.BINARY.getExtension() +
+                    SampleWriter.Compression.GZIP.getExtension(SampleWriter.Format.BINARY));
+            assertEquals(".txt.gz", SampleWriter.Format.TEXT.getExtension() +
+                    SampleWriter.Compression.GZIP.getExtension(SampleWriter.Format.TEXT));
+            try (GZIPInputStream records = new GZIPInputStream(new ByteArrayInputStream(bytes, headerLength,
+                    bytes.length - headerLength))) {
+                ByteBuffer buffer = ByteBuffer.wrap(records.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN);
+                for (int sample = 0; sample < 5000; sample++) {
+                    assertEquals(1, buffer.getInt());
+                    assertEquals(sample, buffer.getDouble(), 0.0);
+                }
+                assertFalse(buffer.hasRemaining());
+            }
+        }
+        finally {
+            Files.delete(path);
+        }
+    }
+}
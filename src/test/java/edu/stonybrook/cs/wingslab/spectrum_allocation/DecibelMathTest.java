@@ -0,0 +1,21 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import junit.framework.TestCase;
+
+public class DecibelMathTest extends TestCase {
+
+    public void testFastGetDB() {
+        for (double value : new double[]{1e-15, 3.7e-9, 0.5, 1.0, 1.41, 2.0, 123.456, 8e12})
+            assertEquals(10 * Math.log10(value), DecibelMath.fastGetDB(value), 1e-6);
+        assertTrue(DecibelMath.fastGetDB(0.0) == Double.NEGATIVE_INFINITY);
+        assertTrue(Double.isNaN(DecibelMath.fastGetDB(-1.0)));
+    }
+
+    public void testFastGetDecimal() {
+        for (double value : new double[]{-150.0, -97.3, -3.01, 0.0, 0.7, 20.0, 301.5}) {
+            double expected = Math.pow(10, value / 10);
+            assertEquals(1.0, DecibelMath.fastGetDecimal(value) / expected, 1e-6);
+        }
+        assertEquals(0.0, DecibelMath.fastGetDecimal(Double.NEGATIVE_INFINITY), 0.0);
+    }
+}
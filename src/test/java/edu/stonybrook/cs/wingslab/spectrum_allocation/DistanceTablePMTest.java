@@ -0,0 +1,98 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.*;
+import junit.framework.TestCase;
+
+import java.util.SplittableRandom;
+
+public class DistanceTablePMTest extends TestCase {
+
+    public void testTableMatchesLogDistance() {
+        LogDistancePM logDistance = new LogDistancePM(4.9);
+        DistanceTablePM table = new DistanceTablePM(logDistance::pathLoss, 0, 1500, 0.01);
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < 10000; i++) {
+            Element tx = new Element(new Point(random.nextDouble(1000), random.nextDouble(1000)), 30);
+            Element rx = new Element(new Point(random.nextDouble(1000), random.nextDouble(1000)), 15);
+            assertEquals(logDistance.pathLoss(tx.getLocation().distance(rx.getLocation())), table.pathLoss(tx, rx),
+                    5e-4);
+            assertEquals(table.pathLoss(tx, rx), table.pathLoss(rx, tx), 0.0);     // symmetric
+        }
+        // grid distances are entries of the table
+        Element tx = new Element(new Point(100, 200), 30), rx = new Element(new Point(400, 600), 15);
+        assertEquals(logDistance.pathLoss(500.0), table.pathLoss(tx, rx), 1e-9);
+        // out of the table
+        assertEquals(logDistance.pathLoss(3000.0), table.minPathLoss(3000.0), 0.0);
+        assertEquals(1500.0, table.getMaxDistance(), 1e-9);
+    }
+
+    public void testLowerBoundIsMonotone() {
+        DistanceTablePM table = new DistanceTablePM(new LogDistancePM(3.0)::pathLoss, 0, 100, 0.5);
+        double previous = Double.NEGATIVE_INFINITY;
+        for (double distance = 0; distance < 200; distance += 0.13) {
+            double bound = table.minPathLoss(distance);
+            assertTrue(bound >= previous);
+            previous = bound;
+        }
+    }
+
+    public void testNoiseIsAddedToMean() {
+        DistanceTablePM table = new DistanceTablePM(new LogDistancePM(3.0)::pathLoss, 2.0, 1000, 0.01);
+        Element tx = new Element(new Point(0, 0), 30), rx = new Element(new Point(30, 40), 15);
+        double sum = 0, squares = 0;
+        int n = 20000;
+        for (int i = 0; i < n; i++) {
+            double noise = table.pathLoss(tx, rx) - table.minPathLoss(50);
+            sum += noise;
+            squares += noise * noise;
+        }
+        assertEquals(0.0, sum / n, 0.1);
+        assertEquals(2.0, Math.sqrt(squares / n), 0.1);
+    }
+
+    public void testSeededNoiseIsReproducible() {
+        DistanceTablePM table = new DistanceTablePM(new LogDistancePM(3.0)::pathLoss, 2.0, 1000, 0.01);
+        PropagationModel worker = SharedGeometry.workerPropagationModel(table);
+        assertTrue(worker instanceof DistanceTablePM);
+        assertNotSame(table, worker);
+        Element tx = new Element(new Point(0, 0), 30), rx = new Element(new Point(30, 40), 15);
+        table.setRandom(new SplittableRandom(5));
+        ((DistanceTablePM) worker).setRandom(new SplittableRandom(5));
+        for (int i = 0; i < 10; i++)
+            assertEquals(table.pathLoss(tx, rx), worker.pathLoss(tx, rx), 0.0);
+        assertEquals(table.minPathLoss(123.4), ((DistanceTablePM) worker).minPathLoss(123.4), 0.0);
+    }
+
+    public void testNoFiniteMeanAtZero() {
+        DistanceTablePM table = new DistanceTablePM(distance -> 30 * Math.log10(distance), 0, 100, 0.5);
+        assertEquals(30 * Math.log10(0.5), table.minPathLoss(0), 1e-12);
+        assertEquals(30 * Math.log10(0.5), table.minPathLoss(0.25), 1e-12);
+        Element element = new Element(new Point(3, 4), 30);
+        assertEquals(30 * Math.log10(0.5), table.pathLoss(element, element), 1e-12);
+        assertEquals(30 * Math.log10(10), table.minPathLoss(10), 1e-12);
+    }
+
+    public void testInvalidArguments() {
+        try {
+            new DistanceTablePM(new LogDistancePM(3.0)::pathLoss, 0, 100, 0);
+            fail("step should be positive");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new DistanceTablePM(new LogDistancePM(3.0)::pathLoss, -1, 100, 1);
+            fail("std should not be negative");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new DistanceTablePM(distance -> distance > 50 ? Double.NaN : distance, 0, 100, 1);
+            fail("mean should be finite in the table");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
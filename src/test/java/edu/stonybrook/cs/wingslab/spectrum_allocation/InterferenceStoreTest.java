@@ -0,0 +1,45 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import junit.framework.TestCase;
+
+public class InterferenceStoreTest extends TestCase {
+
+    public void testPutGet() {
+        InterferenceStore store = new InterferenceStore(2);
+        assertFalse(store.contains(0));
+        assertTrue(store.get(0) == Double.NEGATIVE_INFINITY);
+        store.put(0, -10.5);
+        store.put(17, -3.0);    // grows
+        assertTrue(store.contains(17));
+        assertEquals(-10.5, store.get(0), 0.0);
+        assertEquals(-3.0, store.get(17), 0.0);
+        assertEquals(2, store.size());
+        store.put(17, -4.0);    // overwrite
+        assertEquals(-4.0, store.get(17), 0.0);
+        assertEquals(2, store.size());
+    }
+
+    public void testRemove() {
+        InterferenceStore store = new InterferenceStore(4);
+        store.put(1, -1.0);
+        store.put(2, -2.0);
+        assertEquals(-1.0, store.remove(1), 0.0);
+        assertFalse(store.contains(1));
+        assertTrue(store.remove(1) == Double.NEGATIVE_INFINITY);
+        assertEquals(1, store.size());
+        assertTrue(store.contains(2));
+    }
+
+    public void testClear() {
+        InterferenceStore store = new InterferenceStore(4);
+        for (int id = 0; id < 10; id++)
+            store.put(id, -id);
+        store.clear();
+        assertEquals(0, store.size());
+        for (int id = 0; id < 10; id++)
+            assertFalse(store.contains(id));
+        store.put(5, -1.0);
+        assertEquals(1, store.size());
+        assertEquals(-1.0, store.get(5), 0.0);
+    }
+}
@@ -130,6 +130,24 @@ public class PURTest extends TestCase {
             System.out.println(pur);
     }
 
+    @Test
+    public void testIntegerIdInterference() {
+        PUR pur1 = new PUR("PU10", 2, new RX(new Element(new Point(10, 5), 15)),
+                PUR.InterferenceMethod.THRESHOLD, 1.2);
+        pur1.addInterference(3, -5);
+        pur1.addInterference(40, -5);
+        Assert.assertEquals(-5.0, pur1.getInterferencePowerFrom(3), 0.0);
+        Assert.assertTrue(pur1.getInterferencePowerFrom(4) == Double.NEGATIVE_INFINITY);
+        Assert.assertEquals(-5.0 + 10 * Math.log10(2), pur1.getInterferencePower(), 1e-9);
+        pur1.updateInterference(40, -7);
+        Assert.assertEquals(-7.0, pur1.getInterferencePowerFrom(40), 0.0);
+        pur1.deleteInterferencePowerFrom(40);
+        Assert.assertEquals(-5.0, pur1.getInterferencePower(), 1e-9);
+        pur1.reset();
+        Assert.assertTrue(pur1.getInterferencePowerFrom(3) == Double.NEGATIVE_INFINITY);
+        Assert.assertTrue(pur1.getInterferencePower() == Double.NEGATIVE_INFINITY);
+    }
+
     @Test
     public void testCopyConstructor(){
         PUR pur1 = new PUR("PU10", 2, new RX(new Element(new Point(10, 5), 15)),
@@ -46,4 +46,27 @@ public class PUTest {
         System.out.println(pu2);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testPurCoordinatesCache(){
+        PU pu = new PU(new TX(new Element(new Point(5, 6), 14), -5.5), 4,
+                PUR.InterferenceMethod.BETA, 2.0, 5, 10, 10);
+        double[] coordinates = pu.getPurCoordinates();
+        Assert.assertSame(coordinates, pu.getPurCoordinates());     // cached
+        Assert.assertSame(pu.getScaledPurElement(1, 10), pu.getScaledPurElement(1, 10));
+        Point purLocation = pu.getTx().getElement().getLocation().add(
+                pu.getPurs()[1].getRx().getElement().getLocation());
+        Assert.assertEquals(purLocation.getCartesian().getX(), coordinates[2], 1e-9);
+        Assert.assertEquals(purLocation.getCartesian().getY(), coordinates[3], 1e-9);
+
+        pu.setLocation(new Point(20, 30));
+        double[] moved = pu.getPurCoordinates();
+        Assert.assertNotSame(coordinates, moved);
+        Assert.assertEquals(coordinates[2] + 15, moved[2], 1e-9);
+        Assert.assertEquals(coordinates[3] + 24, moved[3], 1e-9);
+
+        pu.getTx().getElement().setLocation(new Point(5, 6)); // moved without PU knowing
+        Assert.assertEquals(coordinates[2], pu.getPurCoordinates()[2], 1e-9);
+        Assert.assertEquals(purLocation.mul(10).getCartesian().getX(),
+                pu.getScaledPurElement(1, 10).getLocation().getCartesian().getX(), 1e-9);
+    }
+}
@@ -0,0 +1,165 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.*;
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PathLossCacheTest extends TestCase {
+
+    // counts its calls; the first one waits for release
+    private static class SlowModel extends PropagationModel {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public double pathLoss(Element tx, Element rx) {
+            calls.incrementAndGet();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return tx.getLocation().distance(rx.getLocation());
+        }
+    }
+
+    private static Element element(double x, double y) {
+        return new Element(new Point(x, y), 10);
+    }
+
+    public void testConcurrentMissesComputeOnce() throws Exception {
+        PathLossCache cache = new PathLossCache(100);
+        SlowModel model = new SlowModel();
+        PropagationModel shared = new CachedPropagationModel(model, cache);
+        double[] results = new double[8];
+        Thread[] workers = new Thread[results.length];
+        for (int w = 0; w < workers.length; w++) {
+            final int worker = w;
+            PropagationModel workerModel = ((PropagationModelDecorator) shared).wrap(model);
+            workers[w] = new Thread(() -> results[worker] = workerModel.pathLoss(element(0, 0), element(3, 4)));
+            workers[w].start();
+        }
+        while (cache.getMisses() + cache.getWaits() < workers.length)
+            Thread.sleep(1);
+        model.release.countDown();
+        for (Thread worker : workers)
+            worker.join();
+        assertEquals(1, model.calls.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(workers.length - 1, cache.getWaits());
+        for (double result : results)
+            assertEquals(5.0, result, 0.0);
+        assertEquals(5.0, shared.pathLoss(element(0, 0), element(3, 4)), 0.0);
+        assertEquals(1, cache.getHits());
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() {
+        PathLossCache cache = new PathLossCache(2);
+        SlowModel model = new SlowModel();
+        model.release.countDown();
+        cache.pathLoss(element(0, 0), element(1, 0), model);
+        cache.pathLoss(element(0, 0), element(2, 0), model);
+        cache.pathLoss(element(0, 0), element(1, 0), model);     // (1, 0) is used more recently than (2, 0)
+        cache.pathLoss(element(0, 0), element(3, 0), model);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        cache.pathLoss(element(0, 0), element(1, 0), model);
+        assertEquals(3, model.calls.get());
+        cache.pathLoss(element(0, 0), element(2, 0), model);
+        assertEquals(4, model.calls.get());
+        assertSame(model, PropagationModelDecorator.unwrap(new CachedPropagationModel(model, cache)));
+    }
+
+    public void testFailureIsNotCached() {
+        PathLossCache cache = new PathLossCache(10);
+        AtomicInteger calls = new AtomicInteger();
+        PropagationModel failing = new PropagationModel() {
+            @Override
+            public double pathLoss(Element tx, Element rx) {
+                if (calls.incrementAndGet() == 1)
+                    throw new IllegalStateException("splat failed");
+                return 7.0;
+            }
+        };
+        try {
+            cache.pathLoss(element(0, 0), element(1, 1), failing);
+            fail("failure should be thrown");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("splat failed", e.getMessage());
+        }
+        assertEquals(7.0, cache.pathLoss(element(0, 0), element(1, 1), failing), 0.0);
+        assertEquals(2, calls.get());
+    }
+
+    public void testErrorReachesWaiters() throws Exception {
+        PathLossCache cache = new PathLossCache(10);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        PropagationModel failing = new PropagationModel() {
+            @Override
+            public double pathLoss(Element tx, Element rx) {
+                if (calls.incrementAndGet() > 1)
+                    return 7.0;
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                throw new AssertionError("splat crashed");
+            }
+        };
+        Throwable[] thrown = new Throwable[2];
+        Thread[] workers = new Thread[thrown.length];
+        for (int w = 0; w < workers.length; w++) {
+            final int worker = w;
+            workers[w] = new Thread(() -> {
+                try {
+                    cache.pathLoss(element(0, 0), element(1, 1), failing);
+                }
+                catch (Throwable e) {
+                    thrown[worker] = e;
+                }
+            });
+            workers[w].start();
+        }
+        while (cache.getMisses() + cache.getWaits() < workers.length)
+            Thread.sleep(1);
+        release.countDown();
+        for (Thread worker : workers) {
+            worker.join(10000);
+            if (worker.isAlive())
+                fail("a worker waits for a failed value");
+        }
+        for (Throwable e : thrown)
+            assertTrue(e instanceof AssertionError);
+        assertEquals(0, cache.size());
+        assertEquals(7.0, cache.pathLoss(element(0, 0), element(1, 1), failing), 0.0);
+    }
+
+    public void testPendingIsNotEvicted() throws Exception {
+        PathLossCache cache = new PathLossCache(1);
+        SlowModel model = new SlowModel();
+        Thread worker = new Thread(() -> cache.pathLoss(element(0, 0), element(1, 0), model));
+        worker.start();
+        while (cache.getMisses() < 1)
+            Thread.sleep(1);
+        PropagationModel fast = new LogDistancePM(2.0);
+        cache.pathLoss(element(0, 0), element(2, 0), fast);     // over capacity; only a computed one is evicted
+        cache.pathLoss(element(0, 0), element(3, 0), fast);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        Thread waiter = new Thread(() -> cache.pathLoss(element(0, 0), element(1, 0), model));
+        waiter.start();
+        while (cache.getWaits() < 1)
+            Thread.sleep(1);
+        model.release.countDown();
+        worker.join();
+        waiter.join();
+        assertEquals(1, model.calls.get());
+    }
+}
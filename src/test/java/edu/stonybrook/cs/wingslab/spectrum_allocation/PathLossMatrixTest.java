@@ -0,0 +1,48 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.Element;
+import edu.stonybrook.cs.wingslab.commons.Point;
+import edu.stonybrook.cs.wingslab.commons.TX;
+import junit.framework.TestCase;
+
+public class PathLossMatrixTest extends TestCase {
+    private PU[] createPus(int n, int purNum){
+        PU[] pus = new PU[n];
+        for (int i = 0; i < n; i++)
+            pus[i] = new PU(new TX(new Element(new Point(i, i), 15), 0.0), purNum,
+                    PUR.InterferenceMethod.BETA, 1.0, 1, 3, 15);
+        return pus;
+    }
+
+    public void testColumn() {
+        PathLossMatrix matrix = new PathLossMatrix(createPus(3, 4), 3);
+        assertEquals(12, matrix.getColumns());
+        assertEquals(0, matrix.column(0, 0));
+        assertEquals(5, matrix.column(1, 1));
+        assertEquals(11, matrix.column(2, 3));
+    }
+
+    public void testSetGet() {
+        PathLossMatrix matrix = new PathLossMatrix(createPus(2, 2), 2);
+        assertTrue(Double.isNaN(matrix.get(1, 3)));
+        matrix.set(1, 3, 95.5);
+        assertEquals(95.5, matrix.get(1, 3), 0.0);
+        // growing when a new transmitter slot is needed
+        matrix.set(10, 0, 80.0);
+        assertEquals(80.0, matrix.get(10, 0), 0.0);
+        assertEquals(95.5, matrix.get(1, 3), 0.0);
+        assertTrue(Double.isNaN(matrix.get(9, 0)));
+        assertTrue(Double.isNaN(matrix.get(100, 0)));
+    }
+
+    public void testInvalidateFrom() {
+        PathLossMatrix matrix = new PathLossMatrix(createPus(2, 2), 3);
+        matrix.set(0, 0, 70.0);
+        matrix.set(2, 1, 75.0);
+        matrix.invalidateFrom(2);
+        assertEquals(70.0, matrix.get(0, 0), 0.0);
+        assertTrue(Double.isNaN(matrix.get(2, 1)));
+        matrix.invalidate();
+        assertTrue(Double.isNaN(matrix.get(0, 0)));
+    }
+}
@@ -0,0 +1,90 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.*;
+import junit.framework.TestCase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class PathLossStoreTest extends TestCase {
+
+    private static Element element(double x, double y, double height) {
+        return new Element(new Point(x, y), height);
+    }
+
+    public void testValuesSurviveRunsAndCompaction() throws Exception {
+        Path path = Files.createTempDirectory("plstore").resolve("pl_map.pls");
+        try (PathLossStore store = PathLossStore.open(path)) {
+            assertTrue(Double.isNaN(store.get(element(100, 200, 30), element(300, 400, 15))));
+            store.put(element(100, 200, 30), element(300, 400, 15), 97.25);
+            store.put(element(100, 200, 30), element(300, 400, 15), 1.0);      // already stored; kept
+            assertEquals(97.25, store.get(element(100, 200, 30), element(300, 400, 15)), 0.0);
+            assertTrue(Double.isNaN(store.get(element(100, 200, 30), element(300, 400, 16))));  // other height
+            assertEquals(1, store.getAppended());
+            assertEquals(1, store.getHits());
+            assertEquals(2, store.getMisses());
+        }
+        try (PathLossStore store = PathLossStore.open(path)) {      // read from the log
+            assertEquals(97.25, store.get(element(100, 200, 30), element(300, 400, 15)), 0.0);
+            for (int i = 0; i < 100; i++)
+                store.put(element(i * 10, 0, 30), element(0, i * 10, 15), i + 0.5);
+        }
+        assertEquals(101, PathLossStore.compact(path));
+        assertEquals(0, Files.size(PathLossStore.logPath(path)));
+        try (PathLossStore store = PathLossStore.open(path)) {      // read from the table
+            assertEquals(101, store.size());
+            assertEquals(97.25, store.get(element(100, 200, 30), element(300, 400, 15)), 0.0);
+            for (int i = 0; i < 100; i++)
+                assertEquals(i + 0.5, store.get(element(i * 10, 0, 30), element(0, i * 10, 15)), 0.0);
+            assertTrue(Double.isNaN(store.get(element(-10, 0, 30), element(0, 0, 15))));
+        }
+    }
+
+    public void testCloseLocationsAreDistinct() throws Exception {
+        Path path = Files.createTempDirectory("plstore").resolve("pl_map.pls");
+        Element tx = element(100, 200, 30);
+        // same 10 meters cells, and fractional receivers(e.g. SUs) in the same meter
+        Element[] rxs = {element(12, 3, 15), element(14, 1, 15), element(12.2, 3.4, 15), element(12.4, 3.2, 15),
+                element(12.2, 3.4, 15.04)};
+        try (PathLossStore store = PathLossStore.open(path)) {
+            for (int i = 0; i < rxs.length; i++)
+                store.put(tx, rxs[i], 90.0 + i);
+            assertEquals(rxs.length, store.getAppended());
+            for (int i = 0; i < rxs.length; i++)
+                assertEquals(90.0 + i, store.get(tx, rxs[i]), 0.0);
+        }
+        PathLossStore.compact(path);
+        try (PathLossStore store = PathLossStore.open(path)) {
+            for (int i = 0; i < rxs.length; i++)
+                assertEquals(90.0 + i, store.get(tx, rxs[i]), 0.0);
+        }
+    }
+
+    public void testOtherRunsSeeNewValues() throws Exception {
+        Path path = Files.createTempDirectory("plstore").resolve("pl_map.pls");
+        try (PathLossStore first = PathLossStore.open(path);
+             PathLossStore second = PathLossStore.open(path)) {
+            first.put(element(1, 2, 3), element(4, 5, 6), 80.0);
+            assertEquals(80.0, second.get(element(1, 2, 3), element(4, 5, 6)), 0.0);
+            assertEquals(0, second.getMisses());
+        }
+    }
+
+    public void testStoredPropagationModel() throws Exception {
+        Path path = Files.createTempDirectory("plstore").resolve("pl_map.pls");
+        try (PathLossStore store = PathLossStore.open(path)) {
+            LogDistancePM logDistance = new LogDistancePM(3.0);
+            StoredPropagationModel model = new StoredPropagationModel(logDistance, store);
+            Element tx = element(0, 0, 30), rx = element(40, 30, 15);
+            double expected = logDistance.pathLoss(tx, rx);
+            assertEquals(expected, model.pathLoss(tx, rx), 0.0);
+            assertEquals(expected, model.pathLoss(tx, rx), 0.0);
+            assertEquals(1, store.getAppended());
+            assertEquals(1, store.getHits());
+            PropagationModel worker = SharedGeometry.workerPropagationModel(model);
+            assertTrue(worker instanceof StoredPropagationModel);
+            assertSame(store, ((StoredPropagationModel) worker).getStore());
+            assertNotSame(logDistance, ((StoredPropagationModel) worker).getModel());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.*;
+import junit.framework.TestCase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class PathLossWarmUpTest extends TestCase {
+
+    // fails for transmitters at x = 0; a decorator, so workers' copies fail too
+    private static class FailingAtX0 extends PropagationModel implements PropagationModelDecorator {
+        private final PropagationModel model;
+
+        FailingAtX0(PropagationModel model) { this.model = model; }
+
+        @Override
+        public double pathLoss(Element tx, Element rx) {
+            if (tx.getLocation().getCartesian().getX() == 0)
+                throw new IllegalStateException("splat failed");
+            return model.pathLoss(tx, rx);
+        }
+
+        @Override
+        public PropagationModel getModel() { return model; }
+
+        @Override
+        public PropagationModel wrap(PropagationModel model) { return new FailingAtX0(model); }
+    }
+
+    public void testWarmUpFillsStoreWithSamplingPairs() throws Exception {
+        PU pu = new PU(new TX(new Element(new Point(1, 1), 30), -5.5), 4,
+                PUR.InterferenceMethod.BETA, 2.0, 1, 2, 10);
+        SpectrumSensor[] sss = {new SpectrumSensor(new RX(new Element(new Point(0, 3), 15)), 0, 0),
+                new SpectrumSensor(new RX(new Element(new Point(2, 2), 15)), 0, 0)};
+        PathLossWarmUp warmUp = new PathLossWarmUp(new Square(4), 10, 30).addSensors(sss)
+                .addPurOffsets(new PU[]{pu});
+        assertEquals(16 * (2 + 4), warmUp.getPairs());
+
+        Path path = Files.createTempDirectory("warmup").resolve("pl_map.pls");
+        try (PathLossStore store = PathLossStore.open(path)) {
+            PropagationModel pm = new StoredPropagationModel(new LogDistancePM(3.0), store);
+            PathLossWarmUp.Coverage coverage = warmUp.run(pm, 3, null);
+            assertEquals(96, coverage.getComputed());
+            assertEquals(0, coverage.getStored());
+            assertEquals(0, coverage.getFailed());
+            assertEquals(1.0, coverage.getCoverage(), 0.0);
+            assertEquals(96, store.getAppended());
+
+            coverage = warmUp.run(pm, 2, null);
+            assertEquals(96, coverage.getStored());
+            assertEquals(0, coverage.getComputed());
+            assertEquals(96, store.getAppended());
+
+            // keys are the ones SpectrumManager asks for once the PU moves to a cell
+            pu.setLocation(new Point(2, 3));
+            Element tx = pu.getTx().getElement().mul(10);
+            for (int purIdx = 0; purIdx < pu.getPurs().length; purIdx++)
+                assertFalse(Double.isNaN(store.get(tx, pu.getScaledPurElement(purIdx, 10))));
+            assertFalse(Double.isNaN(store.get(new Element(new Point(3, 0), 30).mul(10),
+                    sss[1].getRx().getElement().mul(10))));
+        }
+    }
+
+    public void testStaticPurs() {
+        PU pu = new PU(new TX(new Element(new Point(1, 1), 30), -5.5), 3,
+                PUR.InterferenceMethod.BETA, 2.0, 1, 2, 10);
+        PathLossWarmUp warmUp = new PathLossWarmUp(new Rectangle(5, 2), 10, 30).addPurs(new PU[]{pu});
+        assertEquals(10 * 3, warmUp.getPairs());
+        try {
+            new PathLossWarmUp(null, 10, 30);
+            fail("only rectangles have cells");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testWarmUpSkipsCacheAndCountsFailures() throws Exception {
+        SpectrumSensor[] sss = {new SpectrumSensor(new RX(new Element(new Point(0, 3), 15)), 0, 0)};
+        PathLossWarmUp warmUp = new PathLossWarmUp(new Square(4), 10, 30).addSensors(sss);
+        Path path = Files.createTempDirectory("warmup").resolve("pl_map.pls");
+        try (PathLossStore store = PathLossStore.open(path)) {
+            PathLossCache cache = new PathLossCache(4);
+            PropagationModel failing = new FailingAtX0(new LogDistancePM(3.0));
+            PropagationModel pm = new CachedPropagationModel(new StoredPropagationModel(failing, store), cache);
+            PathLossWarmUp.Coverage coverage = warmUp.run(pm, 2, null);
+            assertEquals(4, coverage.getFailed());
+            assertEquals(12, coverage.getComputed());
+            assertEquals(12, store.getAppended());
+            assertEquals(0, cache.size());
+            assertEquals(0, cache.getMisses());
+        }
+    }
+}
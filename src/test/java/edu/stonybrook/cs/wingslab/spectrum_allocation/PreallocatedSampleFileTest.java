@@ -0,0 +1,68 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class PreallocatedSampleFileTest extends TestCase {
+
+    public void testSlots() throws IOException {
+        Path path = Files.createTempFile("samples", ".bin");
+        try {
+            int sampleCount = 3000;
+            try (PreallocatedSampleFile file = new PreallocatedSampleFile(path, "values", 4, sampleCount)) {
+                // second half is written first, by its own writer, as another worker would
+                try (SampleWriter second = file.writer(sampleCount / 2);
+                     SampleWriter first = file.writer(0)) {
+                    for (int sample = sampleCount / 2; sample < sampleCount; sample++)
+                        write(second, sample);
+                    for (int sample = 0; sample < sampleCount / 2; sample++)
+                        if (sample == 7)
+                            first.skip();
+                        else
+                            write(first, sample);
+                    try {
+                        second.skip();          // past the last sample
+                        fail("writing past the last sample should fail");
+                    }
+                    catch (IOException e) {
+                        // expected
+                    }
+                }
+                assertEquals(4 + 8 * 4, file.getRecordLength());
+                assertEquals(file.getHeaderLength() + (long) sampleCount * file.getRecordLength(), Files.size(path));
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(36, buffer.getInt(12));        // record length in the header
+            int headerLength = BinarySampleWriter.headerLength(path);
+            for (int sample = 0; sample < sampleCount; sample++) {
+                buffer.position(headerLength + sample * 36);
+                int values = buffer.getInt();
+                if (sample == 7) {
+                    assertEquals(0, values);            // empty slot
+                    continue;
+                }
+                assertEquals(1 + sample % 4, values);
+                for (int i = 0; i < values; i++)
+                    assertEquals(sample + i, buffer.getDouble(), 0.0);
+                for (int i = values; i < 4; i++)
+                    assertEquals(0.0, buffer.getDouble(), 0.0);     // padding
+            }
+        }
+        finally {
+            Files.delete(path);
+        }
+    }
+
+    // sample i has 1 + i % 4 values: i, i + 1, ...
+    private void write(SampleWriter writer, int sample) throws IOException {
+        writer.write(() -> { throw new AssertionError("text line of a binary writer"); }, record -> {
+            for (int i = 0; i <= sample % 4; i++)
+                record.add(sample + i);
+        });
+    }
+}
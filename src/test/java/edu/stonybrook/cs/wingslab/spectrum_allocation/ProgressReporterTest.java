@@ -0,0 +1,60 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ProgressReporterTest extends TestCase {
+
+    public void testAggregateProgress() throws IOException, InterruptedException {
+        List<ProgressReporter.Progress> reports = new CopyOnWriteArrayList<>();
+        ProgressReporter reporter = new ProgressReporter(3000, 10, reports::add);
+        ProgressReporter.Counter fast = reporter.register("fast");
+        ProgressReporter.Counter slow = reporter.register("slow");
+        Thread fastWorker = new Thread(() -> { for (int i = 0; i < 2000; i++) fast.increment(); });
+        Thread slowWorker = new Thread(() -> { for (int i = 0; i < 1000; i++) slow.increment(); });
+        fastWorker.start();
+        slowWorker.start();
+        fastWorker.join();
+        slowWorker.join();
+        Thread.sleep(50);                   // a few timer reports
+        reporter.close();
+        assertTrue(reports.size() >= 2);
+        ProgressReporter.Progress last = reports.get(reports.size() - 1);     // close() sends the last one
+        assertEquals(3000, last.getDone());
+        assertEquals(1.0, last.getFraction(), 0.0);
+        assertEquals(0, last.getEtaMillis());
+        assertEquals(2.0 / 3, last.getSkew(), 1e-9);     // (2000 - 1000) / 1500
+        assertEquals(2000, last.getWorkerDone()[0]);
+        assertFalse(Double.isNaN(last.getCurrentRate()));
+        for (int i = 1; i < reports.size(); i++)
+            assertTrue(reports.get(i).getDone() >= reports.get(i - 1).getDone());
+        int size = reports.size();
+        reporter.close();                   // closing twice reports nothing more
+        assertEquals(size, reports.size());
+    }
+
+    public void testJsonSink() throws IOException {
+        Path path = Files.createTempFile("progress", ".json");
+        try {
+            ProgressReporter reporter = new ProgressReporter(10, 60_000, ProgressSink.jsonLines(path));
+            ProgressReporter.Counter counter = reporter.register("worker-\"0\"");
+            for (int i = 0; i < 4; i++)
+                counter.increment();
+            assertEquals(4, reporter.progress().getDone());
+            reporter.close();
+            List<String> lines = Files.readAllLines(path);
+            assertEquals(1, lines.size());
+            assertTrue(lines.get(0), lines.get(0).startsWith("{\"elapsedMillis\":"));
+            assertTrue(lines.get(0), lines.get(0).contains("\"done\":4,\"total\":10,"));
+            assertTrue(lines.get(0), lines.get(0).endsWith("\"workers\":{\"worker-\\\"0\\\"\":4}}"));
+        }
+        finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class QuantizedSampleWriterTest extends TestCase {
+
+    public void testRoundTrip() throws IOException {
+        for (SampleWriter.Compression compression : SampleWriter.Compression.values()) {
+            Path path = Files.createTempFile("samples", ".qbin");
+            try {
+                try (SampleWriter writer = SampleWriter.open(path.toFile(), SampleWriter.Format.QUANTIZED,
+                        compression, 500, "x,y,power")) {
+                    assertEquals(SampleWriter.Format.QUANTIZED, writer.getFormat());
+                    for (int sample = 0; sample < 3000; sample++) {    // many blocks
+                        final int value = sample;
+                        writer.write(() -> { throw new AssertionError("text line of a quantized writer"); },
+                                record -> record.add(value * 10).add(value / 3.0).add(-value * 0.0125));
+                    }
+                    writer.write(() -> { throw new AssertionError("text line of a quantized writer"); },
+                            record -> record.add(Double.NEGATIVE_INFINITY).add(Double.NaN).add(1e300).add(-7.5));
+                }
+                assertEquals(28 + "x,y,power".length(), BinarySampleWriter.headerLength(path));
+                List<double[]> records = QuantizedSampleWriter.read(path);
+                assertEquals(3001, records.size());
+                for (int sample = 0; sample < 3000; sample++) {
+                    double[] values = records.get(sample);
+                    assertEquals(3, values.length);
+                    assertEquals(sample * 10, values[0], 1e-9);
+                    assertEquals(sample / 3.0, values[1], QuantizedSampleWriter.STEP / 2 + 1e-9);
+                    assertEquals(-sample * 0.0125, values[2], QuantizedSampleWriter.STEP / 2 + 1e-9);
+                }
+                double[] special = records.get(3000);
+                assertEquals(Double.NEGATIVE_INFINITY, special[0]);
+                assertTrue(Double.isNaN(special[1]));
+                assertEquals(1e300, special[2]);
+                assertEquals(-7.5, special[3], 1e-9);
+            }
+            finally {
+                Files.delete(path);
+            }
+        }
+    }
+
+    public void testSmallerThanBinary() throws IOException {
+        Path quantized = Files.createTempFile("samples", ".qbin");
+        Path binary = Files.createTempFile("samples", ".bin");
+        try {
+            try (SampleWriter q = SampleWriter.open(quantized.toFile(), SampleWriter.Format.QUANTIZED,
+                    SampleWriter.Compression.NONE, 1 << 16, "power");
+                 SampleWriter b = SampleWriter.open(binary.toFile(), SampleWriter.Format.BINARY, "power")) {
+                for (int sample = 0; sample < 1000; sample++) {
+                    final double value = -80 + (sample % 100) * 0.5;
+                    q.write(() -> { throw new AssertionError("text line"); }, record -> record.add(value).add(value));
+                    b.write(() -> { throw new AssertionError("text line"); }, record -> record.add(value).add(value));
+                }
+            }
+            assertTrue(Files.size(quantized) * 2 < Files.size(binary));
+        }
+        finally {
+            Files.delete(quantized);
+            Files.delete(binary);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import junit.framework.TestCase;
+
+public class SUPowerOptimizerTest extends TestCase {
+
+    public void testSingleSu() {
+        // one PUR with 1 mW capacity and a 30 dB path-loss; SU can send up to 30 dBm
+        double[] power = SUPowerOptimizer.optimize(new double[]{1e-3}, new double[]{1.0}, 1, 1,
+                -90.0, 100.0, 0.1);
+        assertEquals(30.0, power[0], 1e-6);
+    }
+
+    public void testCapacityIsShared() {
+        // two SUs and two PURs; each SU is close to one PUR
+        double[] gains = {1e-3, 1e-6,
+                          1e-6, 1e-3};
+        double[] capacities = {1.0, 1.0};
+        double[] power = SUPowerOptimizer.optimize(gains, capacities, 2, 2, -90.0, 100.0, 0.1);
+        assertTrue(feasible(gains, capacities, power));
+        assertEquals(power[0], power[1], 0.1);
+        for (int su = 0; su < 2; su++) {    // no SU can send more on its own
+            double[] more = power.clone();
+            more[su] += 0.01;
+            assertFalse(feasible(gains, capacities, more));
+        }
+    }
+
+    public void testWorkspaceReuse() {
+        SUPowerOptimizer optimizer = new SUPowerOptimizer();
+        optimizer.reset(2, 2);
+        double[] gains = {1e-3, 1e-6, 1e-6, 1e-3};
+        for (int i = 0; i < 4; i++)
+            optimizer.setGain(i / 2, i % 2, gains[i]);
+        optimizer.setCapacity(0, 1.0);
+        optimizer.setCapacity(1, 1.0);
+        optimizer.optimize(-90.0, 100.0, 0.1);
+        optimizer.reset(1, 1);      // smaller problem; nothing from the previous one is left
+        optimizer.setGain(0, 0, 1e-3);
+        optimizer.setCapacity(0, 1.0);
+        optimizer.optimize(-90.0, 100.0, 0.1);
+        assertEquals(30.0, optimizer.getPower(0), 1e-6);
+    }
+
+    private static boolean feasible(double[] gains, double[] capacities, double[] power) {
+        for (int pur = 0; pur < capacities.length; pur++) {
+            double interference = 0;
+            for (int su = 0; su < power.length; su++)
+                interference += gains[su * capacities.length + pur] * Math.pow(10, power[su] / 10);
+            if (interference >= capacities[pur])
+                return false;
+        }
+        return true;
+    }
+
+    public void testMaxPower() {
+        double[] power = SUPowerOptimizer.optimize(new double[]{1e-12}, new double[]{1.0}, 1, 1,
+                -90.0, 50.0, 0.1);
+        assertEquals(50.0, power[0], 0.0);
+    }
+}
@@ -0,0 +1,48 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class SampleChunksTest extends TestCase {
+
+    public void testChunksCoverAllSamplesOnce() throws InterruptedException {
+        int sampleCount = 1003;
+        SampleChunks chunks = new SampleChunks(sampleCount, 4, 5);
+        AtomicIntegerArray claimed = new AtomicIntegerArray(sampleCount);
+        ExecutorService pool = Executors.newWorkStealingPool(4);
+        for (int worker = 0; worker < 4; worker++)
+            pool.execute(() -> {
+                int[] chunk;
+                while ((chunk = chunks.nextChunk()) != null)
+                    for (int sample = chunk[0]; sample < chunk[1]; sample++) {
+                        claimed.incrementAndGet(sample);
+                        chunks.sampleDone();
+                    }
+            });
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+        for (int sample = 0; sample < sampleCount; sample++)
+            assertEquals(1, claimed.get(sample));
+        assertEquals(sampleCount, chunks.getDone());
+        assertNull(chunks.nextChunk());
+    }
+
+    public void testChunksShrink() {
+        SampleChunks chunks = new SampleChunks(1000, 2, 10);
+        int[] first = chunks.nextChunk();
+        assertEquals(0, first[0]);
+        assertEquals(250, first[1]);        // a quarter of what is left for 2 workers
+        int last = 0;
+        int[] chunk;
+        while ((chunk = chunks.nextChunk()) != null) {
+            assertTrue(chunk[1] - chunk[0] >= 10 || chunk[1] == 1000);
+            last = chunk[1] - chunk[0];
+        }
+        assertTrue(last <= 10);
+        assertTrue(SampleChunks.chunkName(9).compareTo(SampleChunks.chunkName(10)) < 0);
+    }
+}
@@ -0,0 +1,56 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import junit.framework.TestCase;
+
+import java.util.Map;
+
+public class SampleMetricsTest extends TestCase {
+
+    public void testConcurrentUpdates() throws InterruptedException {
+        SampleMetrics metrics = new SampleMetrics();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int sample = 0; sample < 10000; sample++) {
+                    metrics.counter(SampleMetrics.SAMPLES).increment();
+                    metrics.sum(SampleMetrics.SUS_DATA_RATE).add(0.5);
+                    metrics.histogram(SampleMetrics.SAMPLE_TIME).record(sample % 10);
+                }
+            });
+            threads[i].start();
+        }
+        Map<String, Double> live = metrics.snapshot();      // readable while workers run
+        assertTrue(live.getOrDefault(SampleMetrics.SAMPLES, 0.0) <= 80000);
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(80000, metrics.getCount(SampleMetrics.SAMPLES));
+        assertEquals(40000.0, metrics.getSum(SampleMetrics.SUS_DATA_RATE), 1e-6);
+        assertEquals(0, metrics.getCount("never used"));
+        SampleMetrics.Histogram histogram = metrics.getHistogram(SampleMetrics.SAMPLE_TIME);
+        assertEquals(80000, histogram.getCount());
+        assertEquals(4.5, histogram.getMean(), 1e-9);
+        assertEquals(9.0, histogram.getMax(), 0.0);
+        Map<String, Double> snapshot = metrics.snapshot();
+        assertEquals(80000.0, snapshot.get(SampleMetrics.SAMPLES));
+        assertEquals(80000.0, snapshot.get(SampleMetrics.SAMPLE_TIME + ".count"));
+        assertTrue(metrics.getRate(SampleMetrics.SAMPLES) > 0);
+    }
+
+    public void testHistogramQuantiles() {
+        SampleMetrics.Histogram histogram = new SampleMetrics.Histogram(new double[]{1, 2, 5, 10});
+        assertTrue(Double.isNaN(histogram.getQuantile(0.5)));
+        for (int value = 1; value <= 100; value++)
+            histogram.record(value / 10.0);     // 0.1 .. 10
+        assertEquals(1.0, histogram.getQuantile(0.1), 0.0);
+        assertEquals(5.0, histogram.getQuantile(0.5), 0.0);
+        assertEquals(10.0, histogram.getQuantile(1.0), 0.0);
+        histogram.record(50);
+        assertEquals(50.0, histogram.getQuantile(1.0), 0.0);    // last bucket: largest value
+        try {
+            new SampleMetrics.Histogram(new double[]{2, 1});
+            fail("bounds are not increasing");
+        }
+        catch (IllegalArgumentException ignored) {
+        }
+    }
+}
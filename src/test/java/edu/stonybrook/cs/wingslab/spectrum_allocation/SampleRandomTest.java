@@ -0,0 +1,40 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.Point;
+import edu.stonybrook.cs.wingslab.commons.Square;
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+
+public class SampleRandomTest extends TestCase {
+
+    public void testForSampleIsReproducible() {
+        assertEquals(SampleRandom.forSample(7, 12).nextLong(), SampleRandom.forSample(7, 12).nextLong());
+        assertFalse(SampleRandom.forSample(7, 12).nextLong() == SampleRandom.forSample(7, 13).nextLong());
+        assertFalse(SampleRandom.forSample(7, 12).nextLong() == SampleRandom.forSample(8, 12).nextLong());
+    }
+
+    public void testPoints() {
+        Square square = new Square(10);
+        Point[] points = SampleRandom.points(square, 100, SampleRandom.forSample(1, 0));
+        HashSet<String> cells = new HashSet<>();
+        for (Point point : points) {
+            double x = point.getCartesian().getX(), y = point.getCartesian().getY();
+            assertTrue(x >= 0 && x < 10 && y >= 0 && y < 10);
+            assertTrue(cells.add(x + "," + y));                 // distinct
+        }
+        Point[] again = SampleRandom.points(square, 100, SampleRandom.forSample(1, 0));
+        for (int i = 0; i < points.length; i++)
+            assertEquals(0.0, points[i].distance(again[i]), 0.0);
+    }
+
+    public void testSeededPURs() {
+        PUR[] purs1 = PUR.createPURs("PU1", 5, PUR.InterferenceMethod.BETA, 1.0, 1, 3, 15,
+                SampleRandom.forSample(3, -1));
+        PUR[] purs2 = PUR.createPURs("PU1", 5, PUR.InterferenceMethod.BETA, 1.0, 1, 3, 15,
+                SampleRandom.forSample(3, -1));
+        for (int i = 0; i < purs1.length; i++)
+            assertEquals(0.0, purs1[i].getRx().getElement().getLocation().distance(
+                    purs2[i].getRx().getElement().getLocation()), 0.0);
+    }
+}
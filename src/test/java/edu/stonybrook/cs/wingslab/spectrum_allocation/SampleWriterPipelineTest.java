@@ -0,0 +1,100 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class SampleWriterPipelineTest extends TestCase {
+
+    public void testSamplesKeepTheirOrder() throws Exception {
+        Path dir = Files.createTempDirectory("pipeline");
+        SampleWriterPipeline pipeline = new SampleWriterPipeline(2, 4);     // small queues; workers will block
+        Thread[] workers = new Thread[4];
+        for (int w = 0; w < workers.length; w++) {
+            final File file = dir.resolve("worker" + w + ".txt").toFile();
+            workers[w] = new Thread(() -> {
+                try (SampleWriter writer = pipeline.wrap(new TextSampleWriter(file))) {
+                    for (int sample = 0; sample < 2000; sample++) {
+                        final int value = sample;
+                        writer.write(() -> Integer.toString(value), record -> fail("record of a text writer"));
+                    }
+                }
+                catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            workers[w].start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        pipeline.close();
+        assertEquals(8000, pipeline.getWrittenSamples());
+        assertEquals(0, pipeline.getQueueDepth());
+        assertTrue(pipeline.getMaxQueueDepth() <= 4);
+        for (int w = 0; w < workers.length; w++) {
+            Path file = dir.resolve("worker" + w + ".txt");
+            List<String> lines = Files.readAllLines(file);
+            assertEquals(2000, lines.size());
+            for (int sample = 0; sample < lines.size(); sample++)
+                assertEquals(Integer.toString(sample), lines.get(sample));
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    public void testFailureIsReported() throws Exception {
+        SampleWriterPipeline pipeline = new SampleWriterPipeline(1, 2);
+        AtomicInteger closed = new AtomicInteger(0);
+        SampleWriter failing = new SampleWriter() {
+            @Override
+            public void write(Supplier<String> line, Consumer<SampleRecord> record) throws IOException {
+                throw new IOException("disk is full");
+            }
+
+            @Override
+            public Format getFormat() { return Format.BINARY; }
+
+            @Override
+            public void close() { closed.incrementAndGet(); }
+        };
+        SampleWriter writer = pipeline.wrap(failing);
+        File file = File.createTempFile("pipeline", ".txt");
+        file.deleteOnExit();
+        pipeline.wrap(new TextSampleWriter(file) {     // its wrapped writer is never closed
+            @Override
+            public void close() throws IOException {
+                super.close();
+                closed.incrementAndGet();
+            }
+        });
+        try {
+            while (true)        // until the writer thread's failure reaches the worker
+                writer.write(() -> "", record -> record.add(1.0));
+        }
+        catch (IOException e) {
+            assertEquals("disk is full", e.getCause().getMessage());
+        }
+        try {
+            writer.close();
+            fail("closing a failed writer should report the failure");
+        }
+        catch (IOException e) {
+            // expected; target is closed anyway
+        }
+        try {
+            pipeline.close();
+            fail("close should report the failure");
+        }
+        catch (IOException e) {
+            assertEquals("disk is full", e.getMessage());
+        }
+        assertEquals(2, closed.get());  // failed target and the one whose wrapped writer was not closed
+    }
+}
@@ -0,0 +1,99 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.*;
+import junit.framework.TestCase;
+
+import java.util.SplittableRandom;
+
+public class ShadowingFieldTest extends TestCase {
+
+    public void testFFTMatchesDFT() {
+        int n = 8;
+        SplittableRandom random = new SplittableRandom(3);
+        double[] re = new double[n + 2], im = new double[n + 2];
+        for (int i = 0; i < re.length; i++) {
+            re[i] = random.nextDouble();
+            im[i] = random.nextDouble();
+        }
+        double[] expectedRe = new double[n], expectedIm = new double[n];
+        for (int k = 0; k < n; k++)
+            for (int t = 0; t < n; t++) {
+                double angle = -2 * Math.PI * k * t / n;
+                expectedRe[k] += re[t + 2] * Math.cos(angle) - im[t + 2] * Math.sin(angle);
+                expectedIm[k] += re[t + 2] * Math.sin(angle) + im[t + 2] * Math.cos(angle);
+            }
+        ShadowingField.fft(re, im, 2, n);
+        for (int k = 0; k < n; k++) {
+            assertEquals(expectedRe[k], re[k + 2], 1e-9);
+            assertEquals(expectedIm[k], im[k + 2], 1e-9);
+        }
+    }
+
+    public void testStdAndCorrelation() {
+        ShadowingField field = new ShadowingField(40, 30, 2.0, 5.0);
+        SplittableRandom random = new SplittableRandom(11);
+        double squares = 0, lagProduct = 0, sum = 0;
+        int n = 0, lagN = 0;
+        for (int sample = 0; sample < 200; sample++) {
+            field.next(random);
+            for (int x = 0; x < 40; x++)
+                for (int y = 0; y < 30; y++) {
+                    double value = field.at(x, y);
+                    sum += value;
+                    squares += value * value;
+                    n++;
+                    if (x + 5 < 40) {
+                        lagProduct += value * field.at(x + 5, y);
+                        lagN++;
+                    }
+                }
+        }
+        assertEquals(0.0, sum / n, 0.1);
+        double variance = squares / n;
+        assertEquals(4.0, variance, 0.2);
+        assertEquals(Math.exp(-1), lagProduct / lagN / variance, 0.05);
+    }
+
+    public void testPairNoiseIsConsistentInSample() {
+        ShadowingField field = new ShadowingField(10, 10, 1.0, 3.0);
+        field.next(new SplittableRandom(5));
+        Element tx = new Element(new Point(20, 30), 30), rx = new Element(new Point(70, 40), 15);
+        double noise = field.noise(tx, rx, 10);
+        assertEquals(noise, field.noise(tx, rx, 10), 0.0);
+        assertEquals(noise, field.noise(rx, tx, 10), 0.0);     // symmetric
+        assertEquals((field.at(2, 3) + field.at(7, 4)) / Math.sqrt(2), noise, 1e-12);
+        assertEquals(noise, field.noise(tx.mul(0.1), rx.mul(0.1), 1), 1e-12);
+    }
+
+    public void testSeededFieldIsReproducible() {
+        ShadowingField field = new ShadowingField(16, 8, 1.0, 2.0);
+        ShadowingField copy = new ShadowingField(field);
+        field.next(new SplittableRandom(9));
+        double value = field.at(3, 4);
+        field.next(new SplittableRandom(1));        // spare of the first generation
+        assertFalse(value == field.at(3, 4));
+        field.discardSpare();
+        field.next(new SplittableRandom(9));
+        assertEquals(value, field.at(3, 4), 0.0);
+        copy.next(new SplittableRandom(9));         // copies share the spectrum
+        assertEquals(value, copy.at(3, 4), 0.0);
+        assertEquals(value, copy.at(3 + 32, 4 - 16), 0.0);     // wraps around the torus
+    }
+
+    public void testInvalidArguments() {
+        try {
+            new ShadowingField(10, 10, 1.0, 0);
+            fail("correlation distance should be positive");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new ShadowingField(0, 10, 1.0, 1.0);
+            fail("field should have cells");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package edu.stonybrook.cs.wingslab.spectrum_allocation;
+
+import edu.stonybrook.cs.wingslab.commons.*;
+import junit.framework.TestCase;
+
+public class SharedGeometryTest extends TestCase {
+
+    public void testWorkerPUs() {
+        PU pu = new PU(new TX(new Element(new Point(5, 6), 14), -5.5), 4,
+                PUR.InterferenceMethod.BETA, 2.0, 5, 10, 10);
+        SharedGeometry geometry = new SharedGeometry(new Square(100), new PU[]{pu}, null);
+        PU[] first = geometry.workerPUs();
+        PU[] second = geometry.workerPUs();
+        assertNotSame(first[0], second[0]);
+        assertNotSame(first[0].getTx().getElement(), second[0].getTx().getElement());   // moves per sample
+        for (int purIdx = 0; purIdx < pu.getPurs().length; purIdx++) {
+            assertSame(pu.getPurs()[purIdx].getRx().getElement(), first[0].getPurs()[purIdx].getRx().getElement());
+            assertSame(pu.getPurs()[purIdx].getRx().getElement(), second[0].getPurs()[purIdx].getRx().getElement());
+            assertNotSame(first[0].getPurs()[purIdx].getRx(), second[0].getPurs()[purIdx].getRx());
+        }
+        first[0].setLocation(new Point(50, 60));
+        first[0].getTx().setPower(3.0);
+        first[0].getPurs()[0].addInterference(7, -20.0);
+        assertEquals(5.0, second[0].getTx().getElement().getLocation().getCartesian().getX(), 0.0);
+        assertEquals(-5.5, second[0].getTx().getPower(), 0.0);
+        assertEquals(Double.NEGATIVE_INFINITY, second[0].getPurs()[0].getInterferencePowerFrom(7));
+        assertEquals(pu.getPuId(), second[0].getPuId());
+    }
+
+    public void testWorkerSensors() {
+        SpectrumSensor[] sss = {new SpectrumSensor(new RX(new Element(new Point(1, 2), 15)), 0, 0),
+                new SpectrumSensor(new RX(new Element(new Point(3, 4), 15)), 0, 0)};
+        Shape shape = new Square(100);
+        SharedGeometry geometry = new SharedGeometry(shape, new PU[0], sss);
+        SpectrumSensor[] first = geometry.workerSensors();
+        SpectrumSensor[] second = geometry.workerSensors();
+        for (int ssIdx = 0; ssIdx < sss.length; ssIdx++) {
+            assertSame(sss[ssIdx].getRx().getElement(), first[ssIdx].getRx().getElement());
+            assertNotSame(first[ssIdx].getRx(), second[ssIdx].getRx());
+        }
+        first[0].getRx().setReceived_power(-40.0);
+        second[0].getRx().setReceived_power(-60.0);
+        assertEquals(-40.0, first[0].getRx().getReceived_power(), 0.0);
+        assertSame(shape, geometry.getShape());
+        assertNull(new SharedGeometry(shape, new PU[0], null).workerSensors());
+    }
+}
@@ -3,6 +3,7 @@ package edu.stonybrook.cs.wingslab.spectrum_allocation;
 import edu.stonybrook.cs.wingslab.commons.*;
 import junit.framework.TestCase;
 
+import java.util.SplittableRandom;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class SpectrumManagerTest extends TestCase {
@@ -21,6 +22,24 @@ public class SpectrumManagerTest extends TestCase {
         return pus;
     }
 
+    // PUs on a grid 250 cells apart with fixed power; PURs(1-3 cells away) only get negligible interference from
+    // other PUs, so no PUR is violated by PUs
+    private PU[] createSeparatedPus(int n, double power){
+        PU[] pus = new PU[n];
+        for (int i = 0; i < n; i++)
+            pus[i] = new PU(new TX(new Element(new Point(125 + 250 * (i % 4), 125 + 250 * (i / 4)), 15), power), 10,
+                    PUR.InterferenceMethod.BETA, 1.0, 1, 3, 15);
+        return pus;
+    }
+
+    // SUs next to the first and last PU of createSeparatedPus(16 PUs), and one in the middle. An admitted SU takes
+    // all capacity left of its nearest PUR; with alpha 4.9 the other corner is far enough to still have room
+    private SU[] createSeparatedSUs(){
+        return new SU[]{new SU(new TX(new Element(new Point(126, 125), 15), -10)),
+                new SU(new TX(new Element(new Point(874, 875), 15), -10)),
+                new SU(new TX(new Element(new Point(500, 500), 15), -10))};
+    }
+
     private SpectrumSensor[] createSS(Shape shape, int n){
         SpectrumSensor[] sss = new SpectrumSensor[n];
         int i = 0;
@@ -84,4 +103,214 @@ public class SpectrumManagerTest extends TestCase {
         System.out.println(spectrumManager.pusSample());
         System.out.println(spectrumManager.maxPowerSample());
     }
-}
\ No newline at end of file
+
+    public void testAdmitReleaseSU() {
+        Shape shape = new Square(1000);
+        PU[] pus = createSeparatedPus(16, 20);
+        SU[] sus = createSeparatedSUs();
+        SpectrumManager spectrumManager = new SpectrumManager(pus, sus, null,
+                new LogDistancePM(4.9), shape, 1, -90.0);
+        assertTrue(spectrumManager.startAdmission());
+        double[] capacities = new double[pus.length];
+        for (int i = 0; i < pus.length; i++)
+            capacities[i] = pus[i].getPurs()[0].getInterferenceCapacity();
+        int first = spectrumManager.admitSU(sus[0]);
+        int second = spectrumManager.admitSU(sus[1]);
+        assertTrue(first >= 0 && second >= 0 && first != second);
+        assertSame(sus[1], spectrumManager.getAdmittedSu(second));
+        spectrumManager.releaseSU(first);
+        spectrumManager.releaseSU(second);
+        assertNull(spectrumManager.getAdmittedSu(first));
+        for (int i = 0; i < pus.length; i++)
+            assertEquals(capacities[i], pus[i].getPurs()[0].getInterferenceCapacity(), 1e-6);
+        assertEquals(first < second ? second : first, spectrumManager.admitSU(sus[2])); // freed slot is reused
+        try {
+            spectrumManager.releaseSU(first < second ? first : second);
+            fail("released SU should not be released again");
+        } catch (IllegalArgumentException ignored) {}
+    }
+
+    public void testAdmitSUWithoutCapacity() {
+        Shape shape = new Square(1000);
+        // PURs can only take interference below the noise floor
+        PU[] pus = {new PU(new TX(new Element(new Point(500, 500), 15), 20), 10,
+                PUR.InterferenceMethod.THRESHOLD, -100, 1, 3, 15)};
+        SU su = new SU(new TX(new Element(new Point(520, 500), 15), 0));
+        SpectrumManager spectrumManager = new SpectrumManager(pus, new SU[]{su}, null,
+                new LogDistancePM(3), shape, 1, -90.0);
+        assertTrue(spectrumManager.startAdmission());
+        assertEquals(-1, spectrumManager.admitSU(su));
+        assertEquals(Double.NEGATIVE_INFINITY, pus[0].getPurs()[0].getInterferencePowerFrom(1), 0.0);
+    }
+
+    public void testAdmissionAndSUsArrayRows() {
+        Shape shape = new Square(1000);
+        PU[] pus = createSeparatedPus(16, 20);
+        SU[] sus = createSeparatedSUs();
+        SpectrumManager spectrumManager = new SpectrumManager(pus, sus, null,
+                new LogDistancePM(4.9), shape, 1, -90.0);
+        assertTrue(spectrumManager.startAdmission());
+        String[] expected = spectrumManager.computeSUsTotalMaxPower().split(",");
+        assertEquals(0, spectrumManager.admitSU(sus[2]));   // slot 0 shares its row with sus[0]
+        String[] total = spectrumManager.computeSUsTotalMaxPower().split(",");
+        assertEquals(expected.length, total.length);
+        for (int i = 3; i < total.length; i += 3)       // admitted SU's interference is given back to PURs
+            assertEquals(Double.parseDouble(expected[i]), Double.parseDouble(total[i]), 0.01);
+    }
+
+    public void testPathLossLowerBound() {
+        Shape shape = new Square(1000);
+        PU[] pus = createPus(shape, 50);
+        for (int i = 0; i < 10; i++) {
+            SU[] sus = createSUs(shape, 2);
+            SpectrumManager scanAll = new SpectrumManager(pus, sus, null, new LogDistancePM(3), shape, 1, -90.0);
+            double expected = scanAll.computeSUMAXPower(false);
+            SpectrumManager pruned = new SpectrumManager(pus, sus, null, new LogDistancePM(3), shape, 1, -90.0);
+            pruned.setPathLossLowerBound(new LogDistancePM(3)::pathLoss);
+            assertEquals(expected, pruned.computeSUMAXPower(false), 1e-9);
+            assertSame(scanAll.getMostRestrictivePuIdx(), pruned.getMostRestrictivePuIdx());
+        }
+    }
+
+    public void testSusDataRate() {
+        Shape shape = new Square(1000);
+        PU[] pus = createSeparatedPus(10, 20);
+        SU[] sus = new SU[4];
+        for (int i = 0; i < sus.length; i++) {
+            Point point = new Point(250 + 250 * (i % 3), 250 + 250 * (i / 3));
+            sus[i] = new SU(new TX(new Element(point, 15), -10), new Element(point.add(new Point(3, 4)), 15));
+        }
+        PropagationModel pm = new LogDistancePM(3);
+        SpectrumManager spectrumManager = new SpectrumManager(pus, sus, null, pm, shape, 1, -90.0);
+        spectrumManager.computeSUMAXPower(false);
+        String[] total = spectrumManager.computeSUsTotalMaxPower().split(",");
+        double[] dataRate = spectrumManager.susDataRate();
+        assertEquals(sus.length, dataRate.length);
+        for (int i = 0; i < sus.length; i++) {
+            double power = Double.parseDouble(total[3 * i + 3]);
+            double signal = Math.pow(10, (power - pm.pathLoss(sus[i].getTx().getElement(),
+                    sus[i].getRxElement())) / 10);
+            double interference = 0;
+            for (PU pu : pus)
+                if (pu.isON())
+                    interference += Math.pow(10, (pu.getTx().getPower() -
+                            pm.pathLoss(pu.getTx().getElement(), sus[i].getRxElement())) / 10);
+            for (int j = 0; j < sus.length; j++)
+                if (j != i)
+                    interference += Math.pow(10, (Double.parseDouble(total[3 * j + 3]) -
+                            pm.pathLoss(sus[j].getTx().getElement(), sus[i].getRxElement())) / 10);
+            double expected = 1e6 * Math.log(1 + Math.pow(10, (10 * Math.log10(signal / interference) - 0.68) / 10))
+                    / Math.log(2);
+            assertEquals(1.0, dataRate[i] / expected, 1e-3);    // powers in the output are rounded to 0.001 dB
+        }
+    }
+
+    public void testParallelPUs() {
+        Shape shape = new Square(1000);
+        PU[] pus = createPus(shape, 40);
+        SU[] sus = createSUs(shape, 3);
+        SpectrumManager sequential = new SpectrumManager(pus, sus, null, new LogDistancePM(3), shape, 1, -90.0);
+        double expected = sequential.computeSUMAXPower(false);
+        double[] capacities = new double[pus.length];
+        for (int i = 0; i < pus.length; i++)
+            capacities[i] = pus[i].getPurs()[0].getInterferenceCapacity();
+        SpectrumManager parallel = new SpectrumManager(pus, sus, null, new LogDistancePM(3), shape, 1, -90.0);
+        parallel.setParallelPUs(true);
+        assertEquals(expected, parallel.computeSUMAXPower(false), 0.0);
+        for (int i = 0; i < pus.length; i++)
+            assertEquals(capacities[i], pus[i].getPurs()[0].getInterferenceCapacity(), 0.0);
+    }
+
+    // max power of su over ON PUs' PURs read from the objects, as the scan did before the snapshot; PURs with a NaN
+    // capacity(violated) are skipped
+    private static double objectScanMaxPower(PU[] pus, SU su, PropagationModel pm, double noiseFloor){
+        double maxPower = Double.POSITIVE_INFINITY;
+        for (PU pu : pus)
+            if (pu.isON())
+                for (int purIdx = 0; purIdx < pu.getPurs().length; purIdx++) {
+                    double power = Math.max(pu.getPurs()[purIdx].getInterferenceCapacity(), noiseFloor) +
+                            pm.pathLoss(su.getTx().getElement(), pu.getScaledPurElement(purIdx, 1));
+                    if (power < maxPower)
+                        maxPower = power;
+                }
+        return maxPower;
+    }
+
+    // snapshot's flags, power and capacities are the objects' current ones
+    private static void assertSnapshotMatches(PU[] pus, SampleSnapshot snapshot){
+        assertEquals(pus.length, snapshot.getPuNum());
+        for (int puIdx = 0; puIdx < pus.length; puIdx++) {
+            assertEquals(pus[puIdx].isON(), snapshot.isOn(puIdx));
+            assertEquals(pus[puIdx].getTx().getPower(), snapshot.getPuPower()[puIdx], 0.0);
+            if (pus[puIdx].isON())
+                for (int purIdx = 0; purIdx < pus[puIdx].getPurs().length; purIdx++)
+                    assertEquals(pus[puIdx].getPurs()[purIdx].getInterferenceCapacity(),
+                            snapshot.getPurCapacity()[snapshot.getPurOffset()[puIdx] + purIdx], 0.0);
+        }
+    }
+
+    public void testSnapshotMaxPower() {
+        Shape shape = new Square(1000);
+        PU[] pus = createSeparatedPus(16, 20);
+        pus[3].setON(false);
+        SU[] sus = createSeparatedSUs();
+        PropagationModel pm = new LogDistancePM(4.9);
+        SpectrumManager spectrumManager = new SpectrumManager(pus, sus, null, pm, shape, 1, -90.0);
+        double maxPower = spectrumManager.computeSUMAXPower(false);
+        SampleSnapshot snapshot = spectrumManager.getSnapshot();
+        assertSnapshotMatches(pus, snapshot);       // includes the first two SUs' interference
+        assertEquals(10 * 3, snapshot.getPurOffset()[3]);
+        assertEquals(objectScanMaxPower(pus, sus[2], pm, -90.0), maxPower, 1e-9);
+        assertTrue(maxPower > -90.0 && maxPower < Double.POSITIVE_INFINITY);
+
+        assertTrue(spectrumManager.startAdmission());
+        assertSnapshotMatches(pus, snapshot);
+        double admitted = objectScanMaxPower(pus, sus[0], pm, -90.0);
+        int handle = spectrumManager.admitSU(sus[0]);
+        assertEquals(admitted, sus[0].getTx().getPower(), 1e-9);
+        assertSnapshotMatches(pus, snapshot);
+        spectrumManager.releaseSU(handle);
+        assertSnapshotMatches(pus, snapshot);
+    }
+
+    public void testSampleRecords() {
+        Shape shape = new Square(1000);
+        SpectrumManager spectrumManager = new SpectrumManager(
+                createPus(shape,15), createSUs(shape, 3), createSS(shape, 400),
+                new LogDistancePM(3, 1), shape, 1, -90.0);
+        spectrumManager.computeSUMAXPower(false);
+        SampleRecord record = new SampleRecord();
+        spectrumManager.pusSample(record.clear());
+        assertSameValues(spectrumManager.pusSample(), record);
+        spectrumManager.sssSample(record.clear());
+        assertSameValues(spectrumManager.sssSample(), record);
+        spectrumManager.maxPowerSample(record.clear());
+        assertSameValues(spectrumManager.maxPowerSample(), record);
+        String total = spectrumManager.computeSUsTotalMaxPower();
+        spectrumManager.computeSUsTotalMaxPower(record.clear());
+        assertSameValues(total, record);
+    }
+
+    public void testAppendFixed3() {
+        SplittableRandom random = new SplittableRandom(17);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(-4, 6));
+            builder.setLength(0);
+            assertEquals(String.format("%.3f", value), SpectrumManager.appendFixed3(builder, value).toString());
+        }
+        for (double value : new double[]{0.0, -0.0, -0.0004, 99.9996, -12.5, Double.NEGATIVE_INFINITY}) {
+            builder.setLength(0);
+            assertEquals(String.format("%.3f", value), SpectrumManager.appendFixed3(builder, value).toString());
+        }
+    }
+
+    // text line and record have the same columns; text is rounded
+    private void assertSameValues(String line, SampleRecord record) {
+        SampleRecord parsed = new SampleRecord().addCsv(line);
+        assertEquals(parsed.size(), record.size());
+        for (int i = 0; i < record.size(); i++)
+            if (parsed.get(i) != record.get(i))     // infinities are only equal to themselves
+                assertEquals(parsed.get(i), record.get(i), 0.05);
+    }
+}